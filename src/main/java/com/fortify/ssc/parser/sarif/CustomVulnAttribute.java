@@ -37,6 +37,7 @@ public enum CustomVulnAttribute implements com.fortify.plugin.spi.VulnerabilityA
 
 	toolName(AttrType.STRING), 
 	categoryAndSubCategory(AttrType.STRING),
+	dataFlow(AttrType.STRING),
     ;
 
     private final AttrType attributeType;
@@ -10,7 +10,10 @@ import com.fortify.plugin.api.ScanData;
 import com.fortify.plugin.api.ScanParsingException;
 import com.fortify.plugin.api.VulnerabilityHandler;
 import com.fortify.plugin.spi.ParserPlugin;
+import com.fortify.ssc.parser.sarif.parser.MappingProfiles;
+import com.fortify.ssc.parser.sarif.parser.ScanIndexCache;
 import com.fortify.ssc.parser.sarif.parser.ScanParser;
+import com.fortify.ssc.parser.sarif.parser.TempStorageManager;
 import com.fortify.ssc.parser.sarif.parser.VulnerabilitiesParser;
 
 /**
@@ -25,15 +28,22 @@ import com.fortify.ssc.parser.sarif.parser.VulnerabilitiesParser;
  */
 public class SARIFParserPlugin implements ParserPlugin<CustomVulnAttribute> {
     private static final Logger LOG = LoggerFactory.getLogger(SARIFParserPlugin.class);
+    private final ScanIndexCache scanIndexCache = new ScanIndexCache();
+    private final TempStorageManager tempStorageManager = new TempStorageManager();
+    private final MappingProfiles mappingProfiles = new MappingProfiles();
 
     @Override
     public void start() throws Exception {
         LOG.info("SARIF parser plugin is starting");
+        tempStorageManager.start();
+        mappingProfiles.start();
     }
 
     @Override
     public void stop() throws Exception {
         LOG.info("SARIF parser plugin is stopping");
+        scanIndexCache.clear();
+        tempStorageManager.stop();
     }
 
     @Override
@@ -43,11 +53,11 @@ public class SARIFParserPlugin implements ParserPlugin<CustomVulnAttribute> {
 
     @Override
     public void parseScan(final ScanData scanData, final ScanBuilder scanBuilder) throws ScanParsingException, IOException {
-        new ScanParser(scanData, scanBuilder).parse();
+        new ScanParser(scanData, scanBuilder, scanIndexCache).parse();
     }
 
 	@Override
 	public void parseVulnerabilities(final ScanData scanData, final VulnerabilityHandler vulnerabilityHandler) throws ScanParsingException, IOException {
-		new VulnerabilitiesParser(scanData, vulnerabilityHandler).parse();
+		new VulnerabilitiesParser(scanData, vulnerabilityHandler, scanIndexCache, tempStorageManager, mappingProfiles).parse();
 	}
 }
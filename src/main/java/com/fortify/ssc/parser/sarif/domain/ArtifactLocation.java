@@ -30,9 +30,11 @@ import java.nio.file.Paths;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
-@Getter
+@Getter @Setter(AccessLevel.PACKAGE)
 public final class ArtifactLocation implements Serializable {
 	private static final long serialVersionUID = 1L;
 	@JsonProperty private URI uri;
@@ -40,19 +42,20 @@ public final class ArtifactLocation implements Serializable {
 	@JsonProperty private Integer index;
 	// @JsonProperty private Message description;
 	
-	private URI resolveURI(RunData runData) {
-		URI result = this.uri;
-		ArtifactLocation baseLocation = runData.getBaseLocation(uriBaseId);
-		if (baseLocation!=null) {
-			URI baseUri = baseLocation.resolveURI(runData);
-			if ( baseUri != null ) {
-				result = baseUri.resolve(result);
-			}
-		}
-		return result;
+	/**
+	 * Get the full file name for this location, resolving the URI against 
+	 * <code>originalUriBaseIds</code>. Any artifact referenced by index is 
+	 * ignored; see {@link PhysicalLocation#getFullFileName(RunData)} for 
+	 * resolving artifact references. Resolved file names are memoized
+	 * by the given {@link RunData}.
+	 * @param runData
+	 * @return Full file name, or <code>null</code> if no URI is available
+	 */
+	public String getFullFileName(RunData runData) {
+		return runData.getFullFileName(this);
 	}
 	
-	public String getFullFileName(RunData runData) {
+	final String computeFullFileName(RunData runData) {
 		URI resolvedURI = resolveURI(runData);
 		if ( resolvedURI==null ) { return null; }
 		try {
@@ -64,4 +67,9 @@ public final class ArtifactLocation implements Serializable {
 			return resolvedURI.toString();
 		}
 	}
+	
+	private URI resolveURI(RunData runData) {
+		URI baseUri = runData.resolveBaseUri(uriBaseId);
+		return baseUri==null ? this.uri : baseUri.resolve(this.uri);
+	}
 }
\ No newline at end of file
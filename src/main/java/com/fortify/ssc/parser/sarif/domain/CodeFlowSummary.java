@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * This class holds a bounded summary of the <code>codeFlows</code> of a SARIF 
+ * result, as extracted by {@link ResultDecoder} while reading the token stream.
+ * Code flows may contain thousands of thread flow locations per result, so rather 
+ * than materializing the full code flow object graph, only the first thread flow 
+ * that contains any locations is summarized: the total number of locations, the
+ * first {@value #MAX_TRACE_STEPS} locations (the first one being the taint source), 
+ * and the last location (the taint sink). Other thread flows and code flows are 
+ * skipped. 
+ * 
+ * Thread flow locations may reference an entry in the run-level 
+ * <code>threadFlowLocations</code> array by index instead of specifying a location;
+ * such steps are resolved through {@link RunData#getThreadFlowLocation(int)} when
+ * accessed through {@link Step#resolve(RunData)}.
+ * 
+ * @author Ruud Senden
+ */
+@Getter @Setter(AccessLevel.PACKAGE)
+public final class CodeFlowSummary implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** Maximum number of leading locations kept for the trace summary */
+	public static final int MAX_TRACE_STEPS = 10;
+	@JsonProperty private int locationCount;
+	@JsonProperty private Step[] trace;
+	@JsonProperty private Step sink;
+	
+	/**
+	 * @return First thread flow location, representing the taint source; this 
+	 *         step may need to be resolved through {@link Step#resolve(RunData)}
+	 */
+	public Step getSource() {
+		return trace[0];
+	}
+	
+	/**
+	 * Get a single-line summary of the thread flow, listing the steps that were 
+	 * kept for the trace summary and the sink, for example
+	 * <code>A.java:12 -&gt; B.java:34 -&gt; ... (15 more) -&gt; C.java:56</code>.
+	 * @param runData
+	 * @return Trace summary
+	 */
+	public String getTraceSummary(RunData runData) {
+		StringBuilder sb = new StringBuilder();
+		for ( Step step : trace ) {
+			if ( sb.length()>0 ) { sb.append(" -> "); }
+			sb.append(getLabel(step, runData));
+		}
+		int omitted = locationCount-trace.length-1;
+		if ( omitted>0 ) {
+			sb.append(" -> ... (").append(omitted).append(" more)");
+		}
+		if ( omitted>=0 ) {
+			sb.append(" -> ").append(getLabel(sink, runData));
+		}
+		return sb.toString();
+	}
+	
+	private static final String getLabel(Step step, RunData runData) {
+		Step resolved = step.resolve(runData);
+		return resolved==null ? "?" : resolved.getLabel(runData);
+	}
+	
+	/**
+	 * This class holds the data extracted from a single thread flow location.
+	 */
+	@Getter @Setter(AccessLevel.PACKAGE)
+	public static final class Step implements Serializable {
+		private static final long serialVersionUID = 1L;
+		@JsonProperty private ArtifactLocation artifactLocation;
+		@JsonProperty private Integer startLine;
+		/** Fully qualified name (or name) of the first logical location */
+		@JsonProperty private String logicalLocation;
+		@JsonProperty private String message;
+		/** Index into the run-level <code>threadFlowLocations</code> array, if specified */
+		@JsonProperty private Integer index;
+		
+		/**
+		 * Resolve this step against the run-level <code>threadFlowLocations</code> array.
+		 * @param runData
+		 * @return This step if it specifies any location information or doesn't reference 
+		 *         a run-level thread flow location, otherwise the referenced run-level thread 
+		 *         flow location, or <code>null</code> if that location is not available
+		 */
+		public Step resolve(RunData runData) {
+			if ( index==null || artifactLocation!=null || startLine!=null || logicalLocation!=null || message!=null ) {
+				return this;
+			}
+			return runData.getThreadFlowLocation(index);
+		}
+		
+		/**
+		 * @param runData
+		 * @return Full file name for this step, or <code>null</code> if not available
+		 */
+		public String getFullFileName(RunData runData) {
+			return runData.resolveFullFileName(artifactLocation);
+		}
+		
+		/**
+		 * @return Function or other logical location for this step if available, 
+		 *         otherwise the location message, or <code>null</code> if neither
+		 *         is available
+		 */
+		public String getFunction() {
+			return StringUtils.isNotBlank(logicalLocation) ? logicalLocation : message;
+		}
+		
+		private String getLabel(RunData runData) {
+			String fileName = getFullFileName(runData);
+			String label = fileName==null ? getFunction() : (startLine==null ? fileName : fileName+":"+startLine);
+			return label==null ? "?" : label;
+		}
+	}
+	
+	/**
+	 * Jackson deserializer that extracts a {@link CodeFlowSummary} from a
+	 * SARIF <code>codeFlows</code> array, using the same logic as {@link ResultDecoder}.
+	 */
+	static final class Deserializer extends JsonDeserializer<CodeFlowSummary> {
+		@Override
+		public CodeFlowSummary deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+			return new ResultDecoder().readCodeFlows(jp);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Size-bounded cache for decoded objects identified by an index, like rules and 
+ * artifacts. This cache uses a segmented LRU eviction policy: newly loaded entries 
+ * are stored in a probation segment, and are only promoted to the (larger) protected 
+ * segment once they are accessed again. As such, a small set of frequently used
+ * entries is not evicted by a large number of entries that are used only once. 
+ * Entries evicted from the protected segment are moved back to the probation segment.
+ * 
+ * This class is thread-safe; objects are loaded outside of any locks, so the
+ * same object may occasionally be loaded concurrently by multiple threads.
+ * 
+ * @author Ruud Senden
+ */
+final class DecodedObjectCache<V> {
+	private final String name;
+	private final int probationCapacity;
+	private final int protectedCapacity;
+	private final LinkedHashMap<Integer, V> probation = new LinkedHashMap<>(16, 0.75f, true);
+	private final LinkedHashMap<Integer, V> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	
+	/**
+	 * @param name used in {@link #toString()}
+	 * @param capacity maximum number of cached objects
+	 */
+	DecodedObjectCache(String name, int capacity) {
+		this.name = name;
+		this.probationCapacity = Math.max(1, capacity/5);
+		this.protectedCapacity = Math.max(1, capacity-probationCapacity);
+	}
+	
+	/**
+	 * Get the object with the given index from this cache, loading it
+	 * using the given loader if not yet cached. <code>null</code> values
+	 * returned by the loader are not cached.
+	 * @param index
+	 * @param loader
+	 * @return Cached or loaded object
+	 */
+	final V get(int index, IntFunction<V> loader) {
+		synchronized (this) {
+			V value = protectedSegment.get(index);
+			if ( value==null && (value = probation.remove(index))!=null ) {
+				protectedSegment.put(index, value);
+				if ( protectedSegment.size()>protectedCapacity ) {
+					Map.Entry<Integer, V> demoted = removeEldest(protectedSegment);
+					addToProbation(demoted.getKey(), demoted.getValue());
+				}
+			}
+			if ( value!=null ) {
+				hits.increment();
+				return value;
+			}
+		}
+		misses.increment();
+		V value = loader.apply(index);
+		if ( value!=null ) {
+			synchronized (this) {
+				if ( !protectedSegment.containsKey(index) ) {
+					addToProbation(index, value);
+				}
+			}
+		}
+		return value;
+	}
+	
+	final long getHits() {
+		return hits.sum();
+	}
+	
+	final long getMisses() {
+		return misses.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s cache: %d hits, %d misses", name, getHits(), getMisses());
+	}
+	
+	private final void addToProbation(Integer index, V value) {
+		probation.put(index, value);
+		if ( probation.size()>probationCapacity ) {
+			removeEldest(probation);
+		}
+	}
+	
+	private final Map.Entry<Integer, V> removeEldest(LinkedHashMap<Integer, V> map) {
+		Iterator<Map.Entry<Integer, V>> iterator = map.entrySet().iterator();
+		Map.Entry<Integer, V> eldest = iterator.next();
+		Map.Entry<Integer, V> result = new AbstractMap.SimpleImmutableEntry<>(eldest);
+		iterator.remove();
+		return result;
+	}
+}
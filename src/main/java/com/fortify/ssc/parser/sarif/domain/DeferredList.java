@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortify.ssc.parser.sarif.domain.RunData.ElementReader;
+
+/**
+ * Read-only {@link java.util.List} implementation that only stores the input 
+ * document offsets of each entry, similar to the DeferredList class provided 
+ * by the SARIF .NET SDK. Entries are read through the configured {@link ElementReader} 
+ * and deserialized on every call to {@link #get(int)}; callers are expected to cache 
+ * frequently used entries (see {@link DecodedObjectCache}). 
+ * 
+ * This class supports concurrent reads, but entries must be added by a single 
+ * thread before any entries are read. 
+ * 
+ * @author Ruud Senden
+ */
+final class DeferredList<T> extends AbstractList<T> {
+	private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	private final Class<T> type;
+	private final ElementReader elementReader;
+	private long[] offsets = new long[128];
+	private int size = 0;
+	
+	DeferredList(Class<T> type, ElementReader elementReader) {
+		this.type = type;
+		this.elementReader = elementReader;
+	}
+	
+	/**
+	 * Add an entry located between the given input document offsets
+	 * @param start
+	 * @param end
+	 */
+	final void addEntry(long start, long end) {
+		if ( size*2==offsets.length ) {
+			offsets = Arrays.copyOf(offsets, offsets.length*2);
+		}
+		offsets[size*2] = start;
+		offsets[size*2+1] = end;
+		size++;
+	}
+	
+	@Override
+	public T get(int index) {
+		if ( index<0 || index>=size ) { throw new IndexOutOfBoundsException("Index: "+index+", Size: "+size); }
+		try {
+			return MAPPER.readValue(elementReader.read(offsets[index*2], offsets[index*2+1]), type);
+		} catch ( IOException e ) {
+			throw new UncheckedIOException("Error reading "+type.getSimpleName()+" at index "+index, e);
+		}
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.net.URI;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class resolves and memoizes the full file names for the artifact locations
+ * of a single run, both by artifact index and by (uri, uriBaseId) pair, such that
+ * results referencing the same artifact don't need to resolve the same location 
+ * against <code>originalUriBaseIds</code> over and over again. Resolved base URI's 
+ * are memoized as well; cycles in <code>originalUriBaseIds</code> are detected and
+ * reported, and the base id that closes a cycle is ignored.
+ * 
+ * To limit memory usage for runs with many artifacts, no more than 
+ * {@value #MAX_MEMOIZED_FILE_NAMES} file names are memoized per type of key; 
+ * any further file names are resolved on every call.
+ * 
+ * This class is thread-safe.
+ * 
+ * @author Ruud Senden
+ */
+final class FileNameTable {
+	private static final Logger LOG = LoggerFactory.getLogger(FileNameTable.class);
+	private static final int MAX_MEMOIZED_FILE_NAMES = 100000;
+	// ConcurrentHashMap doesn't support null values
+	private static final String NULL_FILE_NAME = new String();
+	private final RunData runData;
+	private final Map<Integer, String> fileNamesByArtifactIndex = new ConcurrentHashMap<>();
+	private final Map<SimpleImmutableEntry<URI, String>, String> fileNamesByLocation = new ConcurrentHashMap<>();
+	private final Map<String, Optional<URI>> baseUris = new ConcurrentHashMap<>();
+	
+	FileNameTable(RunData runData) {
+		this.runData = runData;
+	}
+	
+	/**
+	 * Get the full file name for the given {@link ArtifactLocation}. If the given location 
+	 * references an artifact by index, and that artifact exists, the file name is based on
+	 * the artifact location. Otherwise, the file name is based on the given location.
+	 * @param artifactLocation
+	 * @return Full file name, or <code>null</code> if the location doesn't specify a URI
+	 */
+	final String getFullFileName(ArtifactLocation artifactLocation) {
+		Integer index = artifactLocation.getIndex();
+		if ( index!=null ) {
+			String fileName = fileNamesByArtifactIndex.get(index);
+			if ( fileName==null ) {
+				Artifact artifact = runData.getArtifactByIndex(index);
+				if ( artifact!=null && artifact.getLocation()!=null ) {
+					fileName = wrap(getFullFileNameByLocation(artifact.getLocation()));
+					putIfSpace(fileNamesByArtifactIndex, index, fileName);
+				}
+			}
+			if ( fileName!=null ) { return unwrap(fileName); }
+		}
+		return getFullFileNameByLocation(artifactLocation);
+	}
+	
+	/**
+	 * Get the full file name for the given {@link ArtifactLocation}, based on its
+	 * uri and uriBaseId only.
+	 * @param artifactLocation
+	 * @return Full file name, or <code>null</code> if the location doesn't specify a URI
+	 */
+	final String getFullFileNameByLocation(ArtifactLocation artifactLocation) {
+		SimpleImmutableEntry<URI, String> key = new SimpleImmutableEntry<>(artifactLocation.getUri(), artifactLocation.getUriBaseId());
+		String fileName = fileNamesByLocation.get(key);
+		if ( fileName==null ) {
+			fileName = wrap(artifactLocation.computeFullFileName(runData));
+			putIfSpace(fileNamesByLocation, key, fileName);
+		}
+		return unwrap(fileName);
+	}
+	
+	/**
+	 * Resolve the URI for the given uriBaseId against <code>originalUriBaseIds</code>.
+	 * @param uriBaseId
+	 * @return Resolved base URI, or <code>null</code> if the given uriBaseId is <code>null</code> 
+	 *         or not defined in <code>originalUriBaseIds</code>
+	 */
+	final URI resolveBaseUri(String uriBaseId) {
+		if ( uriBaseId==null ) { return null; }
+		Optional<URI> result = baseUris.get(uriBaseId);
+		if ( result==null ) {
+			result = Optional.ofNullable(resolveBaseUri(uriBaseId, new LinkedHashSet<>()));
+			baseUris.put(uriBaseId, result);
+		}
+		return result.orElse(null);
+	}
+	
+	private final URI resolveBaseUri(String uriBaseId, Set<String> visitedUriBaseIds) {
+		ArtifactLocation baseLocation = runData.getBaseLocation(uriBaseId);
+		if ( baseLocation==null ) { return null; }
+		if ( !visitedUriBaseIds.add(uriBaseId) ) {
+			LOG.warn("Ignoring cyclic originalUriBaseIds reference: {} -> {}", String.join(" -> ", visitedUriBaseIds), uriBaseId);
+			return null;
+		}
+		URI result = baseLocation.getUri();
+		URI baseUri = baseLocation.getUriBaseId()==null ? null : resolveBaseUri(baseLocation.getUriBaseId(), visitedUriBaseIds);
+		return baseUri==null ? result : baseUri.resolve(result);
+	}
+	
+	private static final <K> void putIfSpace(Map<K, String> map, K key, String value) {
+		if ( map.size()<MAX_MEMOIZED_FILE_NAMES ) {
+			map.put(key, value);
+		}
+	}
+	
+	private static final String wrap(String fileName) {
+		return fileName==null ? NULL_FILE_NAME : fileName;
+	}
+	
+	private static final String unwrap(String fileName) {
+		return fileName==NULL_FILE_NAME ? null : fileName;
+	}
+}
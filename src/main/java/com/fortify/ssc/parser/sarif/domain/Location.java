@@ -24,12 +24,17 @@
  ******************************************************************************/
 package com.fortify.ssc.parser.sarif.domain;
 
+import java.io.Serializable;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
-@Getter
-public final class Location {
+@Getter @Setter(AccessLevel.PACKAGE)
+public final class Location implements Serializable {
+	private static final long serialVersionUID = 1L;
 	@JsonProperty private int id = -1;
 	@JsonProperty PhysicalLocation physicalLocation;
 	//@JsonProperty LogicalLocation[] logicalLocations;
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+/**
+ * This class renders SARIF message strings, substituting <code>{n}</code> 
+ * placeholders with the corresponding message arguments, and rendering 
+ * embedded links by their link text, in a single pass over the message 
+ * text (or two passes if the message contains placeholders). Output is 
+ * written to reusable, thread-local {@link StringBuilder} instances.
+ * 
+ * Rendering is equivalent to the following (former) implementation:
+ * <ol>
+ *   <li>Replace each <code>{n}</code> placeholder for which a non-null argument
+ *       exists with that argument using {@link org.apache.commons.lang3.StringUtils#replaceEach(String, String[], String[])};
+ *       replaced arguments are not searched for placeholders.</li>
+ *   <li>Replace all matches of the regular expression <code>(?&lt;!\\)\[(.*?)(?&lt;!\\)\]\(.*?\)</code>
+ *       with the link text (first group).</li>
+ *   <li>Replace all occurrences of <code>\[</code>, <code>\]</code> and 
+ *       <code>\\</code> with <code>[</code>, <code>]</code> and <code>\</code>
+ *       respectively, in that order.</li>
+ * </ol>
+ * 
+ * Applying these unescape replacements sequentially gives the same result as 
+ * unescaping in a single left-to-right pass. Also, link text never ends with a 
+ * backslash, and a link is never preceded by a backslash, so link removal and
+ * unescaping can be combined into a single pass.
+ * 
+ * @author Ruud Senden
+ */
+final class MessageRenderer {
+	private static final int MAX_RETAINED_CAPACITY = 64*1024;
+	private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+	
+	private MessageRenderer() {}
+	
+	/**
+	 * Render the given message text, substituting the given arguments
+	 * and rendering embedded links by their link text.
+	 * @param text
+	 * @param args
+	 * @return Rendered text
+	 */
+	static final String render(String text, String[] args) {
+		Buffers buffers = BUFFERS.get();
+		CharSequence substituted = substituteArgs(text, args, buffers.args);
+		String result = renderMarkup(substituted, buffers.markup);
+		if ( result==null ) {
+			result = substituted==text ? text : substituted.toString();
+		}
+		buffers.trim();
+		return result;
+	}
+	
+	/**
+	 * Substitute <code>{n}</code> placeholders in the given text with the corresponding arguments.
+	 * @param text
+	 * @param args
+	 * @return Text with substituted arguments
+	 */
+	static final String substituteArgs(String text, String[] args) {
+		Buffers buffers = BUFFERS.get();
+		CharSequence result = substituteArgs(text, args, buffers.args);
+		String resultString = result==text ? text : result.toString();
+		buffers.trim();
+		return resultString;
+	}
+	
+	/**
+	 * Render embedded links in the given text by their link text, 
+	 * and unescape any escaped brackets and backslashes.
+	 * @param text
+	 * @return Rendered text
+	 */
+	static final String renderMarkup(String text) {
+		Buffers buffers = BUFFERS.get();
+		String result = renderMarkup(text, buffers.markup);
+		buffers.trim();
+		return result==null ? text : result;
+	}
+	
+	/**
+	 * Substitute arguments into the given builder. 
+	 * @return The given text if it doesn't contain any placeholders that need to be 
+	 *         substituted, or the given (cleared and re-populated) builder otherwise 
+	 */
+	private static final CharSequence substituteArgs(String text, String[] args, StringBuilder sb) {
+		if ( text==null || args==null || args.length==0 ) { return text; }
+		int length = text.length();
+		int copied = 0;
+		int pos = text.indexOf('{');
+		while ( pos>=0 && pos<length ) {
+			int end = pos+1;
+			long index = 0;
+			while ( end<length && end-pos<=10 && isDigit(text.charAt(end)) ) {
+				index = index*10 + (text.charAt(end)-'0');
+				end++;
+			}
+			int digits = end-pos-1;
+			if ( digits>0 && end<length && text.charAt(end)=='}' 
+					&& (digits==1 || text.charAt(pos+1)!='0') 
+					&& index<args.length && args[(int)index]!=null ) {
+				if ( copied==0 ) { sb.setLength(0); }
+				sb.append(text, copied, pos).append(args[(int)index]);
+				copied = end+1;
+				pos = text.indexOf('{', copied);
+			} else {
+				pos = text.indexOf('{', pos+1);
+			}
+		}
+		if ( copied==0 ) { return text; }
+		return sb.append(text, copied, length);
+	}
+	
+	/**
+	 * Render the given text into the given builder.
+	 * @return Rendered text, or null if the given text doesn't contain any markup
+	 */
+	private static final String renderMarkup(CharSequence text, StringBuilder sb) {
+		if ( text==null ) { return null; }
+		int length = text.length();
+		int pos = 0;
+		while ( pos<length && !isMarkupChar(text.charAt(pos)) ) { pos++; }
+		if ( pos==length ) { return null; }
+		sb.setLength(0);
+		sb.append(text, 0, pos);
+		while ( pos<length ) {
+			char c = text.charAt(pos);
+			if ( c=='[' && (pos==0 || text.charAt(pos-1)!='\\') ) {
+				int linkTextEnd = findLinkTextEnd(text, pos);
+				if ( linkTextEnd>=0 ) {
+					unescape(text, pos+1, linkTextEnd, sb);
+					pos = findDestinationEnd(text, linkTextEnd+2)+1;
+					continue;
+				}
+			}
+			if ( c=='\\' && pos+1<length ) {
+				char next = text.charAt(pos+1);
+				if ( next=='\\' || next=='[' || next==']' ) {
+					sb.append(next);
+					pos += 2;
+					continue;
+				}
+			}
+			sb.append(c);
+			pos++;
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * For a link starting with the '[' at the given position, return the position 
+	 * of the ']' that ends the link text, or -1 if this is not a link; this is 
+	 * the first non-escaped ']' on the same line that is directly followed by 
+	 * '(', and a ')' on the same line.
+	 */
+	private static final int findLinkTextEnd(CharSequence text, int start) {
+		int length = text.length();
+		for ( int pos = start+1 ; pos<length ; pos++ ) {
+			char c = text.charAt(pos);
+			if ( isLineTerminator(c) ) {
+				return -1;
+			} else if ( c==']' && text.charAt(pos-1)!='\\' && pos+1<length && text.charAt(pos+1)=='(' ) {
+				// If there's no ')' on the same line, there won't be any for subsequent ']' either 
+				return findDestinationEnd(text, pos+2)>=0 ? pos : -1;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return Position of the first ')' on the same line, starting from the given position, or -1 if not found
+	 */
+	private static final int findDestinationEnd(CharSequence text, int start) {
+		int length = text.length();
+		for ( int pos = start ; pos<length ; pos++ ) {
+			char c = text.charAt(pos);
+			if ( c==')' ) {
+				return pos;
+			} else if ( isLineTerminator(c) ) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+	
+	private static final void unescape(CharSequence text, int start, int end, StringBuilder sb) {
+		for ( int pos = start ; pos<end ; pos++ ) {
+			char c = text.charAt(pos);
+			if ( c=='\\' && pos+1<end ) {
+				char next = text.charAt(pos+1);
+				if ( next=='\\' || next=='[' || next==']' ) {
+					c = next;
+					pos++;
+				}
+			}
+			sb.append(c);
+		}
+	}
+	
+	/**
+	 * Check whether the given non-null text is plain text, i.e., it is not empty and 
+	 * doesn't contain any characters that are significant for rendering markup. 
+	 * Substituting any plain text for any other plain text in a message never 
+	 * changes how markup in that message is rendered.
+	 * @param text
+	 * @return true if the given text is plain text, false otherwise
+	 */
+	static final boolean isPlainText(String text) {
+		int length = text.length();
+		if ( length==0 ) { return false; }
+		for ( int pos = 0 ; pos<length ; pos++ ) {
+			char c = text.charAt(pos);
+			if ( isMarkupChar(c) || c=='(' || c==')' || isLineTerminator(c) ) { return false; }
+		}
+		return true;
+	}
+	
+	private static final boolean isDigit(char c) {
+		return c>='0' && c<='9';
+	}
+	
+	private static final boolean isMarkupChar(char c) {
+		return c=='[' || c==']' || c=='\\';
+	}
+	
+	// Line terminators as recognized by the regex '.' character class
+	private static final boolean isLineTerminator(char c) {
+		return c=='\n' || c=='\r' || c=='\u0085' || c=='\u2028' || c=='\u2029';
+	}
+	
+	/**
+	 * Reusable builders for the current thread
+	 */
+	private static final class Buffers {
+		private StringBuilder args = new StringBuilder();
+		private StringBuilder markup = new StringBuilder();
+		
+		// Avoid retaining large builders after rendering an unusually long message
+		private final void trim() {
+			if ( args.capacity()>MAX_RETAINED_CAPACITY ) { args = new StringBuilder(); }
+			if ( markup.capacity()>MAX_RETAINED_CAPACITY ) { markup = new StringBuilder(); }
+		}
+	}
+}
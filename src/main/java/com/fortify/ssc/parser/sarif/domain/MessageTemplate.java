@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class represents a compiled message template, i.e., the text of a 
+ * {@link MultiformatMessageString} that is referenced by results through
+ * {@link Message#getId()}. Compiling a template substitutes each placeholder 
+ * with a sentinel character and renders the markup once; the rendered text 
+ * is then split into a list of literal segments and argument slots. Rendering 
+ * a message for a result simply concatenates these segments with the result's 
+ * arguments.
+ * 
+ * Output is identical to {@link MessageRenderer#render(String, String[])}.
+ * This holds as long as all arguments that are substituted into the template 
+ * are plain text (see {@link MessageRenderer#isPlainText(String)}), as such 
+ * arguments cannot affect how the template markup is rendered. Messages with 
+ * any other arguments, and templates that cannot be compiled, are rendered 
+ * through {@link MessageRenderer#render(String, String[])}.
+ * 
+ * Instances of this class are immutable and thread-safe.
+ * 
+ * @author Ruud Senden
+ */
+final class MessageTemplate {
+	// Sentinels are taken from the Unicode private use area
+	private static final char FIRST_SENTINEL = '\uE000';
+	private static final int MAX_SLOTS = 0x1000;
+	private static final String[] SENTINELS = new String[MAX_SLOTS];
+	static {
+		for ( int i = 0 ; i < MAX_SLOTS ; i++ ) {
+			SENTINELS[i] = String.valueOf((char)(FIRST_SENTINEL+i));
+		}
+	}
+	private final String text;
+	private final boolean compiled;
+	private final int[] referencedArgs;
+	private final String[] literals;
+	private final int[] slots;
+	
+	private MessageTemplate(String text, boolean compiled, int[] referencedArgs, String[] literals, int[] slots) {
+		this.text = text;
+		this.compiled = compiled;
+		this.referencedArgs = referencedArgs;
+		this.literals = literals;
+		this.slots = slots;
+	}
+	
+	/**
+	 * Compile the given template text.
+	 * @param text
+	 * @return Compiled {@link MessageTemplate} instance
+	 */
+	static final MessageTemplate compile(String text) {
+		for ( int pos = 0 ; pos<text.length() ; pos++ ) {
+			if ( isSentinel(text.charAt(pos)) ) {
+				// Template already contains sentinel characters, so cannot be compiled
+				return new MessageTemplate(text, false, null, null, null);
+			}
+		}
+		String substituted = MessageRenderer.substituteArgs(text, SENTINELS);
+		// Any placeholder that is dropped while rendering markup (i.e., because it's
+		// part of a link destination) is still referenced, as the argument value
+		// may affect where the link destination ends.
+		int[] referencedArgs = substituted.chars().filter(c->isSentinel((char)c)).map(c->c-FIRST_SENTINEL).distinct().toArray();
+		String rendered = MessageRenderer.renderMarkup(substituted);
+		List<String> literals = new ArrayList<>();
+		List<Integer> slots = new ArrayList<>();
+		int start = 0;
+		for ( int pos = 0 ; pos<rendered.length() ; pos++ ) {
+			char c = rendered.charAt(pos);
+			if ( isSentinel(c) ) {
+				literals.add(rendered.substring(start, pos));
+				slots.add(c-FIRST_SENTINEL);
+				start = pos+1;
+			}
+		}
+		literals.add(rendered.substring(start));
+		return new MessageTemplate(text, true, referencedArgs, 
+				literals.toArray(new String[literals.size()]), slots.stream().mapToInt(Integer::intValue).toArray());
+	}
+	
+	/**
+	 * Render this template with the given arguments.
+	 * @param args
+	 * @return Rendered text
+	 */
+	final String render(String[] args) {
+		if ( !canRender(args) ) {
+			return MessageRenderer.render(text, args);
+		} else if ( slots.length==0 ) {
+			return literals[0];
+		} else {
+			StringBuilder sb = new StringBuilder(text.length());
+			sb.append(literals[0]);
+			for ( int i = 0 ; i < slots.length ; i++ ) {
+				int index = slots[i];
+				String arg = getArg(args, index);
+				if ( arg!=null ) {
+					sb.append(arg);
+				} else {
+					sb.append('{').append(index).append('}');
+				}
+				sb.append(literals[i+1]);
+			}
+			return sb.toString();
+		}
+	}
+	
+	/**
+	 * @return true if this template can be rendered from the compiled segments
+	 *         with the given arguments, false otherwise
+	 */
+	private final boolean canRender(String[] args) {
+		if ( !compiled || (args!=null && args.length>MAX_SLOTS) ) { return false; }
+		for ( int index : referencedArgs ) {
+			String arg = getArg(args, index);
+			// Placeholders without argument are not substituted, so are plain text
+			if ( arg!=null && !MessageRenderer.isPlainText(arg) ) { return false; }
+		}
+		return true;
+	}
+	
+	private static final String getArg(String[] args, int index) {
+		return args==null || index>=args.length ? null : args[index];
+	}
+	
+	private static final boolean isSentinel(char c) {
+		return c>=FIRST_SENTINEL && c<FIRST_SENTINEL+MAX_SLOTS;
+	}
+	
+	@Override
+	public String toString() {
+		return compiled 
+				? String.format("MessageTemplate[literals=%s, slots=%s]", Arrays.toString(literals), Arrays.toString(slots))
+				: "MessageTemplate[not compiled]";
+	}
+}
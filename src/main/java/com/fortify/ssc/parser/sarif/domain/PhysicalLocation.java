@@ -24,12 +24,17 @@
  ******************************************************************************/
 package com.fortify.ssc.parser.sarif.domain;
 
+import java.io.Serializable;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
-@Getter
-public final class PhysicalLocation {
+@Getter @Setter(AccessLevel.PACKAGE)
+public final class PhysicalLocation implements Serializable {
+	private static final long serialVersionUID = 1L;
 	@JsonProperty private ArtifactLocation artifactLocation;
 	// @JsonProperty private Region region;
 	// @JsonProperty private Region contextRegion;
@@ -42,4 +47,8 @@ public final class PhysicalLocation {
 		}
 		return artifactLocation;
 	}
+	
+	public String getFullFileName(RunData runData) {
+		return runData.resolveFullFileName(artifactLocation);
+	}
 }
\ No newline at end of file
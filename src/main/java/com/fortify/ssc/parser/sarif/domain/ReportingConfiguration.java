@@ -28,9 +28,11 @@ import java.io.Serializable;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
-@Getter
+@Getter @Setter(AccessLevel.PACKAGE)
 public final class ReportingConfiguration implements Serializable {
 	private static final long serialVersionUID = 1L;
 	@JsonProperty private Level level = Level.warning;
@@ -29,18 +29,18 @@ import java.net.URI;
 import java.util.Map;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fortify.util.mapdb.CustomSerializerElsa;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
 /**
  * This data class holds all relevant rule-related information.
  * 
  * @author Ruud Senden
  */
-@Getter
+@Getter @Setter(AccessLevel.PACKAGE)
 public final class ReportingDescriptor implements Serializable {
-	public static final CustomSerializerElsa<ReportingDescriptor> SERIALIZER = new CustomSerializerElsa<>(ReportingDescriptor.class);
 	private static final long serialVersionUID = 1L;
 	
 	@JsonProperty private String id;
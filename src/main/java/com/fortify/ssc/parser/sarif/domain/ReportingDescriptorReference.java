@@ -27,18 +27,18 @@ package com.fortify.ssc.parser.sarif.domain;
 import java.io.Serializable;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fortify.util.mapdb.CustomSerializerElsa;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
 /**
  * This data class holds all relevant rule-related information.
  * 
  * @author Ruud Senden
  */
-@Getter
+@Getter @Setter(AccessLevel.PACKAGE)
 public final class ReportingDescriptorReference implements Serializable {
-	public static final CustomSerializerElsa<ReportingDescriptorReference> SERIALIZER = new CustomSerializerElsa<>(ReportingDescriptorReference.class);
 	private static final long serialVersionUID = 1L;
 	
 	@JsonProperty private String id;
@@ -24,17 +24,29 @@
  ******************************************************************************/
 package com.fortify.ssc.parser.sarif.domain;
 
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.stream.IntStream;
+import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
-@Getter
-public final class Result {
+@Getter @Setter(AccessLevel.PACKAGE)
+public final class Result implements Serializable {
+	private static final long serialVersionUID = 1L;
+	/** Names of the property bag entries used for producing vulnerabilities; {@link RunData} doesn't decode any other entries */
+	public static final Set<String> MAPPED_PROPERTY_NAMES = Collections.unmodifiableSet(new HashSet<>(
+			Arrays.asList("kingdom", "InstanceSeverity", "Confidence", "priority", "fortifyRuleId")));
+	
 	@JsonProperty private String guid;
 	@JsonProperty private String correlationGuid;
 	@JsonProperty private String ruleId;
@@ -50,7 +62,9 @@ public final class Result {
 	// @JsonProperty private WebResponse webResponse;
 	@JsonProperty private Map<String,String> fingerprints;
 	@JsonProperty private Map<String,String> partialFingerprints;
-	// @JsonProperty private CodeFlow codeFlow;
+	/** Bounded summary of the <code>codeFlows</code> array; code flows are never fully materialized */
+	@JsonProperty("codeFlows") @JsonDeserialize(using=CodeFlowSummary.Deserializer.class) 
+	private CodeFlowSummary codeFlowSummary;
 	// @JsonProperty private Graph[] graphs;
 	// @JsonProperty private GraphTraversal[] graphTraversals;
 	// @JsonProperty private Stack[] stacks;
@@ -65,13 +79,14 @@ public final class Result {
 	// @JsonProperty private Fix[] fixes;
 	@JsonProperty private Map<String, Object> properties;
 	
-	private volatile ReportingDescriptor resolvedRule;
+	@Setter(AccessLevel.NONE) private transient volatile ReportingDescriptor resolvedRule;
+	@Setter(AccessLevel.NONE) private transient volatile RuleAttributes resolvedRuleAttributes;
 	
 	public String resolveFullFileName(RunData runData, final String defaultValue) {
 		String value = defaultValue;
 		Location[] locations = getLocations();
 		if ( locations!=null && locations.length>0 && locations[0].getPhysicalLocation()!=null ) {
-			value = locations[0].getPhysicalLocation().resolveArtifactLocation(runData).getFullFileName(runData);
+			value = locations[0].getPhysicalLocation().getFullFileName(runData);
 		} else if ( getAnalysisTarget()!=null ) {
 			value = getAnalysisTarget().getFullFileName(runData);
 		}
@@ -94,6 +109,30 @@ public final class Result {
 		return this.resolvedRule;
 	}
 	
+	/**
+	 * Resolve the {@link RuleAttributes} for the rule referenced by this result, using the 
+	 * same lookup order as {@link #resolveRule(RunData)}, but without deserializing the rule
+	 * if its attributes are already known.
+	 * @param runData
+	 * @return {@link RuleAttributes} for the referenced rule, or {@link RuleAttributes#EMPTY}
+	 *         if this result doesn't reference any known rule
+	 */
+	public RuleAttributes resolveRuleAttributes(RunData runData) {
+		if ( this.resolvedRuleAttributes == null ) {
+			RuleAttributes attributes = runData.getRuleAttributesByIndex(resolveRuleIndex());
+			if ( attributes == null ) {
+				String ruleId = resolveRuleId(runData);
+				attributes = ruleId==null ? null : runData.getRuleAttributesByIndex(runData.getRuleIndexById(ruleId));
+				if ( attributes == null ) {
+					String ruleGuid = resolveRuleGuid(runData);
+					attributes = ruleGuid==null ? null : runData.getRuleAttributesByIndex(runData.getRuleIndexByGuid(ruleGuid));
+				}
+			}
+			this.resolvedRuleAttributes = attributes==null ? RuleAttributes.EMPTY : attributes;
+		}
+		return this.resolvedRuleAttributes;
+	}
+	
 	private ReportingDescriptor resolveRuleByIndex(RunData runData) {
 		Integer ruleIndex = resolveRuleIndex();
 		return ruleIndex==null ? null : runData.getRuleByIndex(ruleIndex);
@@ -149,9 +188,9 @@ public final class Result {
 		// TODO Currently we don't check for level overrides;
 		//      See https://docs.oasis-open.org/sarif/sarif/v2.1.0/os/sarif-v2.1.0-os.html#_Toc34317648
 		if ( level == null ) {
-			ReportingDescriptor resolvedRule = resolveRule(runData);
-			if ( resolvedRule!=null ) {
-				level = resolvedRule.getDefaultLevel();
+			RuleAttributes ruleAttributes = resolveRuleAttributes(runData);
+			if ( ruleAttributes!=null ) {
+				level = ruleAttributes.getDefaultLevel();
 			} else if ( getKind()==Kind.fail || getKind()==null ) {
 				level = Level.warning;
 			} else {
@@ -164,43 +203,42 @@ public final class Result {
 	public String getResultMessage(RunData runData) {
 		Message msg = getMessage();
 		String text = msg.getText();
+		boolean isTemplate = false;
 		if ( StringUtils.isBlank(text) && msg.getId()!=null ) {
 			MultiformatMessageString msgString = getMultiformatMessageStringForId(runData, msg.getId());
 			// TODO Should we throw an exception if msgString==null, instead of just returning null?
 			text = msgString==null ? null : msgString.getText();
+			isTemplate = true;
 		} 
 		if ( StringUtils.isNotBlank(text) ) {
 			// TODO SARIF specification doesn't clearly state whether args should be resolved before replacing links, or vice versa
 			//      (i.e. can args contain links, do link characters need to be escaped in args?)
-			text = resolveArgs(text, msg.getArguments());
-			text = replaceLinks(text, runData);
+			// Templates are shared by many results, so these are compiled once per run
+			text = isTemplate 
+					? runData.renderMessageTemplate(text, msg.getArguments())
+					: MessageRenderer.render(text, msg.getArguments());
 		}
 		return text;
 	}
 	
+	/**
+	 * Replace <code>{n}</code> placeholders in the given text with the corresponding 
+	 * arguments. Contrary to Java's MessageFormat, no other characters are interpreted.
+	 * @see MessageRenderer
+	 */
 	protected static final String resolveArgs(String text, String[] args) {
-		// Based on the length of the args array, we produce another array containing placeholders "{0}", "{1}", "{2}", ...
-		// Then we do a simple search and replace for each of these placeholders using StringUtils#replaceEach.
-		// This works better than something like Java's MessageFormat as this has many other characteristics that we don't want.
-		String[] placeholders = args==null ? null 
-				: IntStream.rangeClosed(0, args.length-1).mapToObj(i->String.format("{%d}", i)).toArray(String[]::new);
-		return StringUtils.replaceEach(text, placeholders, args);
+		return MessageRenderer.substituteArgs(text, args);
 	}
 	
-	// For now we simply render the link text; future versions may add extra info from the actual link
-	// as per the example in https://docs.oasis-open.org/sarif/sarif/v2.1.0/os/sarif-v2.1.0-os.html#_Toc34317467
+	/**
+	 * Render embedded links by their link text, and unescape escaped brackets 
+	 * and backslashes. For now we simply render the link text; future versions 
+	 * may add extra info from the actual link as per the example in 
+	 * https://docs.oasis-open.org/sarif/sarif/v2.1.0/os/sarif-v2.1.0-os.html#_Toc34317467
+	 * @see MessageRenderer
+	 */
 	protected static final String replaceLinks(String text, RunData runData) {
-		// Use regex (?<!\\)\[(.*?)(?<!\\)\]\(.*?\) to find link texts:
-		// - Find any non-escaped '[':   (?<!\\)\[
-		// - Find link text:             (.*?)
-		// - Find next non-escaped ']':  (?<!\\)\]
-		// - Find link destination:      \(.*?\)
-		text = text.replaceAll("(?<!\\\\)\\[(.*?)(?<!\\\\)\\]\\(.*?\\)", "$1");
-		// Replace all escaped '[', ']' and '\' with non-escaped version
-		text = text.replaceAll("\\\\\\[", "[");
-		text = text.replaceAll("\\\\\\]", "]");
-		text = text.replaceAll("\\\\\\\\", "\\\\");
-		return text;
+		return MessageRenderer.renderMarkup(text);
 	}
 
 	private MultiformatMessageString getMultiformatMessageStringForId(RunData runData, String id) {
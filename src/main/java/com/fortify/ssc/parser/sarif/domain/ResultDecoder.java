@@ -0,0 +1,551 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+
+/**
+ * This class decodes SARIF <code>result</code> objects into {@link Result}
+ * instances directly from the JSON token stream, without going through
+ * Jackson databind. Only the properties that are mapped by {@link Result}
+ * and its referenced domain classes are decoded; any other properties are
+ * skipped without materializing their contents. For the same reason, only
+ * the first entry of the <code>locations</code> array is decoded, as this 
+ * is the only location being used for producing vulnerabilities, and the 
+ * result property bag can be restricted to a given set of property names.
+ * Similarly, <code>codeFlows</code> are summarized into a {@link CodeFlowSummary} 
+ * while tokenizing, keeping only the first and last thread flow locations and a 
+ * limited number of trace steps, so memory usage doesn't depend on the length 
+ * of the code flows.
+ * 
+ * Any property value that doesn't have the expected JSON type is passed
+ * to Jackson databind instead, so type coercion and error reporting are 
+ * the same as when deserializing the full {@link Result} using databind.
+ * 
+ * Instances of this class are not thread-safe, as they cache decoded artifact
+ * URI's; usually a single instance is used for all results in a run.
+ * 
+ * @author Ruud Senden
+ */
+public final class ResultDecoder {
+	private static final TypeReference<Map<String, String>> STRING_MAP_TYPE = new TypeReference<Map<String, String>>() {};
+	private static final TypeReference<Map<String, Object>> PROPERTY_BAG_TYPE = new TypeReference<Map<String, Object>>() {};
+	private static final Kind[] KINDS = Kind.values();
+	private static final Level[] LEVELS = Level.values();
+	private static final int MAX_CACHED_URIS = 4096;
+	// Many results refer to the same artifact URI's; URI's are immutable so can be shared
+	private final Map<String, URI> uriCache = new HashMap<>();
+	private final Set<String> propertyNames;
+	
+	/**
+	 * Create a {@link ResultDecoder} instance that decodes all entries
+	 * in the result property bag.
+	 */
+	public ResultDecoder() {
+		this(null);
+	}
+	
+	/**
+	 * Create a {@link ResultDecoder} instance that only decodes the given
+	 * entries from the result property bag, or all entries if the given
+	 * set is <code>null</code>.
+	 * @param propertyNames
+	 */
+	public ResultDecoder(Set<String> propertyNames) {
+		this.propertyNames = propertyNames;
+	}
+	
+	/**
+	 * Decode the SARIF <code>result</code> object at the current token of the
+	 * given {@link JsonParser}. On return, the current token of the given 
+	 * {@link JsonParser} is the last token of the decoded value.
+	 * 
+	 * @param jp pointing at the start of a SARIF <code>result</code> object
+	 * @return Decoded {@link Result} instance, or <code>null</code> for JSON null values
+	 * @throws IOException
+	 */
+	public final Result decode(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			return jp.readValueAs(Result.class);
+		}
+		Result result = new Result();
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			switch ( name ) {
+			case "guid": result.setGuid(readString(jp)); break;
+			case "correlationGuid": result.setCorrelationGuid(readString(jp)); break;
+			case "ruleId": result.setRuleId(readString(jp)); break;
+			case "ruleIndex": result.setRuleIndex(readInteger(jp)); break;
+			case "rule": result.setRule(readReportingDescriptorReference(jp)); break;
+			case "kind": result.setKind(readEnum(jp, Kind.class, KINDS)); break;
+			case "level": result.setLevel(readEnum(jp, Level.class, LEVELS)); break;
+			case "message": result.setMessage(readMessage(jp)); break;
+			case "locations": result.setLocations(readLocations(jp)); break;
+			case "analysisTarget": result.setAnalysisTarget(readArtifactLocation(jp)); break;
+			case "fingerprints": result.setFingerprints(readStringMap(jp)); break;
+			case "partialFingerprints": result.setPartialFingerprints(readStringMap(jp)); break;
+			case "codeFlows": result.setCodeFlowSummary(readCodeFlows(jp)); break;
+			case "properties": result.setProperties(readPropertyBag(jp, propertyNames)); break;
+			default: jp.skipChildren();
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Summarize the SARIF <code>codeFlows</code> array at the current token of the 
+	 * given {@link JsonParser}, based on the first thread flow that contains any 
+	 * locations; see {@link CodeFlowSummary}. Code flows only provide supplementary 
+	 * data, so unexpected container types are skipped rather than reported as errors.
+	 * On return, the current token of the given {@link JsonParser} is the last token 
+	 * of the code flows array.
+	 * 
+	 * @param jp pointing at the start of a SARIF <code>codeFlows</code> array
+	 * @return {@link CodeFlowSummary} instance, or <code>null</code> if there are no thread flow locations
+	 * @throws IOException
+	 */
+	final CodeFlowSummary readCodeFlows(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_ARRAY ) {
+			jp.skipChildren();
+			return null;
+		}
+		CodeFlowSummary summary = null;
+		while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+			if ( summary==null && jp.currentToken()==JsonToken.START_OBJECT ) {
+				summary = readCodeFlow(jp);
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return summary;
+	}
+	
+	private final CodeFlowSummary readCodeFlow(JsonParser jp) throws IOException {
+		CodeFlowSummary summary = null;
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			if ( summary==null && "threadFlows".equals(name) && jp.currentToken()==JsonToken.START_ARRAY ) {
+				while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+					if ( summary==null && jp.currentToken()==JsonToken.START_OBJECT ) {
+						summary = readThreadFlow(jp);
+					} else {
+						jp.skipChildren();
+					}
+				}
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return summary;
+	}
+	
+	private final CodeFlowSummary readThreadFlow(JsonParser jp) throws IOException {
+		CodeFlowSummary summary = null;
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			if ( summary==null && "locations".equals(name) && jp.currentToken()==JsonToken.START_ARRAY ) {
+				summary = readThreadFlowLocations(jp);
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return summary;
+	}
+	
+	// Only the leading trace steps and the last location are retained
+	private final CodeFlowSummary readThreadFlowLocations(JsonParser jp) throws IOException {
+		List<CodeFlowSummary.Step> trace = new ArrayList<>();
+		CodeFlowSummary.Step last = null;
+		int count = 0;
+		while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+			if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+				jp.skipChildren();
+				continue;
+			}
+			last = readThreadFlowLocation(jp);
+			if ( trace.size()<CodeFlowSummary.MAX_TRACE_STEPS ) {
+				trace.add(last);
+			}
+			count++;
+		}
+		if ( count==0 ) { return null; }
+		CodeFlowSummary summary = new CodeFlowSummary();
+		summary.setLocationCount(count);
+		summary.setTrace(trace.toArray(new CodeFlowSummary.Step[trace.size()]));
+		summary.setSink(last);
+		return summary;
+	}
+	
+	/**
+	 * Read the SARIF <code>threadFlowLocation</code> object at the current token of the 
+	 * given {@link JsonParser} into a {@link CodeFlowSummary.Step}. This is used both for
+	 * thread flow locations in results, and for entries in the run-level 
+	 * <code>threadFlowLocations</code> array. If the current token is not the start of
+	 * an object, the value is skipped and an empty step is returned.
+	 * @param jp pointing at the start of a SARIF <code>threadFlowLocation</code> object
+	 * @return {@link CodeFlowSummary.Step} instance
+	 * @throws IOException
+	 */
+	final CodeFlowSummary.Step readThreadFlowLocation(JsonParser jp) throws IOException {
+		CodeFlowSummary.Step step = new CodeFlowSummary.Step();
+		if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			jp.skipChildren();
+			return step;
+		}
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			if ( "location".equals(name) && jp.currentToken()==JsonToken.START_OBJECT ) {
+				readStepLocation(jp, step);
+			} else if ( "index".equals(name) ) {
+				step.setIndex(readInteger(jp));
+			} else {
+				// Nested stacks, states and other properties are skipped without materializing
+				jp.skipChildren();
+			}
+		}
+		return step;
+	}
+	
+	private final void readStepLocation(JsonParser jp, CodeFlowSummary.Step step) throws IOException {
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			switch ( name ) {
+			case "physicalLocation": readStepPhysicalLocation(jp, step); break;
+			case "logicalLocations": step.setLogicalLocation(readFirstLogicalLocationName(jp)); break;
+			case "message": 
+				Message message = readMessage(jp);
+				step.setMessage(message==null ? null : message.getText());
+				break;
+			default: jp.skipChildren();
+			}
+		}
+	}
+	
+	private final void readStepPhysicalLocation(JsonParser jp, CodeFlowSummary.Step step) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			jp.skipChildren();
+			return;
+		}
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			if ( "artifactLocation".equals(name) ) {
+				step.setArtifactLocation(readArtifactLocation(jp));
+			} else if ( "region".equals(name) && jp.currentToken()==JsonToken.START_OBJECT ) {
+				while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+					String regionName = jp.getCurrentName();
+					jp.nextToken();
+					if ( "startLine".equals(regionName) ) {
+						step.setStartLine(readInteger(jp));
+					} else {
+						jp.skipChildren();
+					}
+				}
+			} else {
+				jp.skipChildren();
+			}
+		}
+	}
+	
+	// Returns the fully qualified name, or the name, of the first logical location
+	private static final String readFirstLogicalLocationName(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_ARRAY ) {
+			jp.skipChildren();
+			return null;
+		}
+		String fullyQualifiedName = null;
+		String name = null;
+		boolean first = true;
+		while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+			if ( first && jp.currentToken()==JsonToken.START_OBJECT ) {
+				while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+					String fieldName = jp.getCurrentName();
+					jp.nextToken();
+					switch ( fieldName ) {
+					case "fullyQualifiedName": fullyQualifiedName = readString(jp); break;
+					case "name": name = readString(jp); break;
+					default: jp.skipChildren();
+					}
+				}
+			} else {
+				jp.skipChildren();
+			}
+			first = false;
+		}
+		return fullyQualifiedName!=null ? fullyQualifiedName : name;
+	}
+	
+	private final ReportingDescriptorReference readReportingDescriptorReference(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			return jp.readValueAs(ReportingDescriptorReference.class);
+		}
+		ReportingDescriptorReference reference = new ReportingDescriptorReference();
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			switch ( name ) {
+			case "id": reference.setId(readString(jp)); break;
+			case "index": reference.setIndex(readInteger(jp)); break;
+			case "guid": reference.setGuid(readString(jp)); break;
+			default: jp.skipChildren();
+			}
+		}
+		return reference;
+	}
+	
+	private final Message readMessage(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			return jp.readValueAs(Message.class);
+		}
+		Message message = new Message();
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			switch ( name ) {
+			case "id": message.setId(readString(jp)); break;
+			case "text": message.setText(readString(jp)); break;
+			case "arguments": message.setArguments(readStringArray(jp)); break;
+			default: jp.skipChildren();
+			}
+		}
+		return message;
+	}
+	
+	private final Location[] readLocations(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_ARRAY ) {
+			return jp.readValueAs(Location[].class);
+		}
+		if ( jp.nextToken()==JsonToken.END_ARRAY ) {
+			return new Location[0];
+		}
+		Location first = readLocation(jp);
+		while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+			jp.skipChildren();
+		}
+		return new Location[] { first };
+	}
+	
+	private final Location readLocation(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			return jp.readValueAs(Location.class);
+		}
+		Location location = new Location();
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			switch ( name ) {
+			case "id": location.setId(jp.currentToken()==JsonToken.VALUE_NUMBER_INT ? jp.getIntValue() : jp.readValueAs(int.class)); break;
+			case "physicalLocation": location.setPhysicalLocation(readPhysicalLocation(jp)); break;
+			default: jp.skipChildren();
+			}
+		}
+		return location;
+	}
+	
+	private final PhysicalLocation readPhysicalLocation(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			return jp.readValueAs(PhysicalLocation.class);
+		}
+		PhysicalLocation physicalLocation = new PhysicalLocation();
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			if ( "artifactLocation".equals(name) ) {
+				physicalLocation.setArtifactLocation(readArtifactLocation(jp));
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return physicalLocation;
+	}
+	
+	private final ArtifactLocation readArtifactLocation(JsonParser jp) throws IOException {
+		if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			return jp.readValueAs(ArtifactLocation.class);
+		}
+		ArtifactLocation artifactLocation = new ArtifactLocation();
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			switch ( name ) {
+			case "uri": artifactLocation.setUri(readURI(jp)); break;
+			case "uriBaseId": artifactLocation.setUriBaseId(readString(jp)); break;
+			case "index": artifactLocation.setIndex(readInteger(jp)); break;
+			default: jp.skipChildren();
+			}
+		}
+		return artifactLocation;
+	}
+	
+	private final URI readURI(JsonParser jp) throws IOException {
+		if ( jp.currentToken()==JsonToken.VALUE_STRING ) {
+			String text = jp.getText();
+			URI uri = uriCache.get(text);
+			if ( uri==null && !text.isEmpty() ) {
+				try {
+					uri = new URI(text);
+					if ( uriCache.size()>=MAX_CACHED_URIS ) { uriCache.clear(); }
+					uriCache.put(text, uri);
+				} catch ( URISyntaxException e ) {
+					// Let databind handle the error below
+				}
+			}
+			if ( uri!=null ) { return uri; }
+		}
+		return jp.readValueAs(URI.class);
+	}
+	
+	private static final String readString(JsonParser jp) throws IOException {
+		switch ( jp.currentToken() ) {
+		case VALUE_STRING: return jp.getText();
+		case VALUE_NULL: return null;
+		default: return jp.readValueAs(String.class);
+		}
+	}
+	
+	private static final Integer readInteger(JsonParser jp) throws IOException {
+		switch ( jp.currentToken() ) {
+		case VALUE_NUMBER_INT: 
+			if ( jp.getNumberType()==JsonParser.NumberType.INT ) { return jp.getIntValue(); }
+			return jp.readValueAs(Integer.class);
+		case VALUE_NULL: return null;
+		default: return jp.readValueAs(Integer.class);
+		}
+	}
+	
+	private static final <E extends Enum<E>> E readEnum(JsonParser jp, Class<E> type, E[] values) throws IOException {
+		if ( jp.currentToken()==JsonToken.VALUE_STRING ) {
+			// Compare against the parser's character buffer to avoid creating a String instance
+			char[] chars = jp.getTextCharacters();
+			int offset = jp.getTextOffset();
+			int length = jp.getTextLength();
+			for ( E value : values ) {
+				if ( equals(value.name(), chars, offset, length) ) { return value; }
+			}
+		} else if ( jp.currentToken()==JsonToken.VALUE_NULL ) {
+			return null;
+		}
+		return jp.readValueAs(type);
+	}
+	
+	private static final boolean equals(String s, char[] chars, int offset, int length) {
+		if ( s.length()!=length ) { return false; }
+		for ( int i = 0 ; i < length ; i++ ) {
+			if ( s.charAt(i)!=chars[offset+i] ) { return false; }
+		}
+		return true;
+	}
+	
+	private static final String[] readStringArray(JsonParser jp) throws IOException {
+		if ( jp.currentToken()==JsonToken.VALUE_NULL ) {
+			return null;
+		} else if ( jp.currentToken()!=JsonToken.START_ARRAY ) {
+			return jp.readValueAs(String[].class);
+		}
+		List<String> result = new ArrayList<>();
+		while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+			result.add(readString(jp));
+		}
+		return result.toArray(new String[result.size()]);
+	}
+	
+	private static final Map<String, String> readStringMap(JsonParser jp) throws IOException {
+		if ( jp.currentToken()==JsonToken.VALUE_NULL ) {
+			return null;
+		} else if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			return jp.readValueAs(STRING_MAP_TYPE);
+		}
+		Map<String, String> result = new LinkedHashMap<>();
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			result.put(name, readString(jp));
+		}
+		return result;
+	}
+	
+	private static final Map<String, Object> readPropertyBag(JsonParser jp, Set<String> propertyNames) throws IOException {
+		if ( jp.currentToken()==JsonToken.VALUE_NULL ) {
+			return null;
+		} else if ( jp.currentToken()!=JsonToken.START_OBJECT ) {
+			return jp.readValueAs(PROPERTY_BAG_TYPE);
+		}
+		Map<String, Object> result = new LinkedHashMap<>();
+		while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+			String name = jp.getCurrentName();
+			jp.nextToken();
+			if ( propertyNames==null || propertyNames.contains(name) ) {
+				result.put(name, readUntyped(jp));
+			} else {
+				jp.skipChildren();
+			}
+		}
+		return result;
+	}
+	
+	// Equivalent to Jackson's default untyped value handling
+	private static final Object readUntyped(JsonParser jp) throws IOException {
+		switch ( jp.currentToken() ) {
+		case VALUE_STRING: return jp.getText();
+		case VALUE_NUMBER_INT: 
+		case VALUE_NUMBER_FLOAT: return jp.getNumberValue();
+		case VALUE_TRUE: return Boolean.TRUE;
+		case VALUE_FALSE: return Boolean.FALSE;
+		case VALUE_NULL: return null;
+		case START_ARRAY:
+			List<Object> list = new ArrayList<>();
+			while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+				list.add(readUntyped(jp));
+			}
+			return list;
+		case START_OBJECT:
+			Map<String, Object> map = new LinkedHashMap<>();
+			while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+				String name = jp.getCurrentName();
+				jp.nextToken();
+				map.put(name, readUntyped(jp));
+			}
+			return map;
+		default: return jp.readValueAs(Object.class);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import lombok.Getter;
+
+/**
+ * This class holds the rule-specific attributes used for producing vulnerabilities, 
+ * computed once per rule rather than for every result that references the rule. 
+ * Instances are immutable, and can be obtained through {@link Result#resolveRuleAttributes(RunData)}.
+ * 
+ * @author Ruud Senden
+ */
+@Getter
+public final class RuleAttributes {
+	private static final Logger LOG = LoggerFactory.getLogger(RuleAttributes.class);
+	/** Attributes for results that don't reference any known rule */
+	public static final RuleAttributes EMPTY = new RuleAttributes(new ReportingDescriptor());
+	/** Category based on rule name or <code>Type</code> property, may be <code>null</code> */
+	private final String category;
+	/** Sub-category based on the <code>Subtype</code> property, may be <code>null</code> */
+	private final String subCategory;
+	/** Kingdom based on the <code>Kingdom</code> property, may be <code>null</code> */
+	private final String kingdom;
+	private final float accuracy;
+	private final float probability;
+	private final float impact;
+	private final Level defaultLevel;
+	
+	RuleAttributes(ReportingDescriptor rule) {
+		Map<String, Object> properties = rule.getProperties();
+		this.category = getCategory(rule);
+		this.subCategory = getStringProperty(properties, "Subtype");
+		this.kingdom = getStringProperty(properties, "Kingdom");
+		this.accuracy = getFloatProperty(properties, "Accuracy", 5.0f);
+		this.probability = getFloatProperty(properties, "Probability", 2.5f);
+		this.impact = getFloatProperty(properties, "Impact", 2.5f);
+		this.defaultLevel = rule.getDefaultLevel();
+	}
+	
+	private static final String getCategory(ReportingDescriptor rule) {
+		String category = null;
+		if ( StringUtils.isNotBlank(rule.getName()) ) {
+			category = StringUtils.capitalize(StringUtils.join(StringUtils.splitByCharacterTypeCamelCase(rule.getName()), StringUtils.SPACE));
+		}
+		if ( StringUtils.isBlank(category) ) {
+			category = getStringProperty(rule.getProperties(), "Type");
+		}
+		return StringUtils.isBlank(category) ? null : category;
+	}
+	
+	private static final float getFloatProperty(Map<String, Object> properties, String key, float defaultValue) {
+		String valueString = getStringProperty(properties, key);
+		if ( StringUtils.isNotBlank(valueString) ) {
+			try {
+				return Float.parseFloat(valueString);
+			} catch (NumberFormatException nfe) {
+				LOG.warn("Error converting {} string '{}' to float: {}", key, valueString, nfe.getMessage());
+			}
+		}
+		return defaultValue;
+	}
+	
+	private static final String getStringProperty(Map<String, Object> properties, String key) {
+		if ( properties!=null && properties.containsKey(key) ) {
+			return properties.get(key).toString();
+		}
+		return null;
+	}
+}
@@ -25,17 +25,30 @@
 package com.fortify.ssc.parser.sarif.domain;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
-import org.mapdb.DB;
-import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.fortify.util.io.Region;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fortify.util.collection.OffHeapStringIntMap;
+import com.fortify.util.json.AbstractStreamingJsonParser;
 import com.fortify.util.json.ExtendedJsonParser;
 import com.fortify.util.json.StreamingJsonParser;
+import com.fortify.util.json.handler.JsonParserHandler;
 import com.fortify.util.ssc.parser.EngineTypeHelper;
 
 import lombok.Getter;
@@ -44,57 +57,323 @@ import lombok.Getter;
  * This class stores auxiliary data for a <code>run</code> entry in the SARIF 
  * <code>runs</code> array, like base URI's and rules.
  * 
+ * While parsing a run, results are passed to the configured result handler
+ * as soon as possible. If all auxiliary run properties (<code>tool</code>, 
+ * <code>artifacts</code>, <code>originalUriBaseIds</code> and 
+ * <code>threadFlowLocations</code>, or only the
+ * ones known to be present in the run if the caller provides this information) 
+ * have been parsed before the <code>results</code> array is encountered, results 
+ * are handled inline while reading the input. Otherwise, results are spilled to 
+ * a {@link RunDataStore} list (which may be disk-backed) and handled once the full run has been parsed, to guarantee 
+ * that all auxiliary data is available when converting results. 
+ * 
+ * If an {@link ElementReader} is provided, rules and artifacts are not deserialized
+ * and stored while parsing the run; instead, only the input document offsets of 
+ * each rule and artifact are recorded (together with the rule id and guid), and 
+ * rules and artifacts are read from the input document on demand through the 
+ * {@link ElementReader}; see {@link DeferredList}.
+ * 
+ * Rule indexes by rule id and guid are always kept in an {@link OffHeapStringIntMap},
+ * which is read without locking once the rules have been parsed.
+ * 
+ * Parsing methods must be invoked by a single thread. Once all auxiliary run data 
+ * has been parsed, results may be converted concurrently, including results of 
+ * the same run, so all methods used for converting results are thread-safe: 
+ * lazily computed run-level state is kept either in concurrent maps or in 
+ * thread-safe caches, or consists of immutable objects that may benignly be 
+ * computed more than once. A single {@link Result} instance must not be 
+ * converted by multiple threads concurrently.
+ * 
  * @author Ruud Senden
  *
  */
 public final class RunData {
+	private static final Logger LOG = LoggerFactory.getLogger(RunData.class);
+	public static final Set<String> AUXILIARY_PROPERTY_NAMES = 
+			Collections.unmodifiableSet(new HashSet<>(Arrays.asList("tool", "artifacts", "originalUriBaseIds", "threadFlowLocations")));
+	private static final int DECODED_OBJECT_CACHE_SIZE = 1000;
+	private static final int MAX_MESSAGE_TEMPLATES = 10000;
+	private final BiConsumer<RunData, Result> resultHandler;
+	private final Set<String> pendingAuxiliaryPropertyNames;
 	private final Map<String, ArtifactLocation> originalUriBaseIds;
 	private final List<Artifact> artifactsByIndex;
-	private final Map<String, Integer> ruleIndexesById;
-	private final Map<String, Integer> ruleIndexesByGuid;
+	private final OffHeapStringIntMap ruleIndexesById = new OffHeapStringIntMap();
+	private final OffHeapStringIntMap ruleIndexesByGuid = new OffHeapStringIntMap();
 	private final List<ReportingDescriptor> rulesByIndex;
-	@Getter private Region resultsRegion = null;
+	private final List<CodeFlowSummary.Step> threadFlowLocationsByIndex;
+	private final DeferredList<Artifact> deferredArtifacts;
+	private final DeferredList<ReportingDescriptor> deferredRules;
+	private final RunDataStore store;
+	private volatile RuleAttributes[] ruleAttributes = new RuleAttributes[16];
+	private final DecodedObjectCache<Artifact> artifactCache = new DecodedObjectCache<>("Artifact", DECODED_OBJECT_CACHE_SIZE);
+	private final DecodedObjectCache<ReportingDescriptor> ruleCache = new DecodedObjectCache<>("Rule", DECODED_OBJECT_CACHE_SIZE);
+	private final DecodedObjectCache<CodeFlowSummary.Step> threadFlowLocationCache = new DecodedObjectCache<>("ThreadFlowLocation", DECODED_OBJECT_CACHE_SIZE);
+	private final FileNameTable fileNameTable = new FileNameTable(this);
+	private final Map<String, MessageTemplate> messageTemplates = new ConcurrentHashMap<>();
+	private final Map<Class<?>, Object> runAttributes = new ConcurrentHashMap<>();
+	private final List<Result> spilledResults;
+	private final ResultDecoder resultDecoder = new ResultDecoder(Result.MAPPED_PROPERTY_NAMES);
 	@Getter private String toolName;
 	
 	/**
-	 * Private constructor; instances can be created through the {@link #parseRunData(DB, ExtendedJsonParser)}
-	 * method.
+	 * Private constructor; instances can be created through the 
+	 * {@link #parseRunData(RunDataStore, ExtendedJsonParser, BiConsumer)} and
+	 * {@link #parseRunData(RunDataStore, Set, BiConsumer, RunDataParser)} methods.
 	 * 
-	 * @param db
+	 * @param store
+	 * @param auxiliaryPropertyNames
+	 * @param resultHandler
+	 * @param elementReader
 	 */
-	private RunData(final DB db) {
+	private RunData(final RunDataStore store, final Set<String> auxiliaryPropertyNames, final BiConsumer<RunData, Result> resultHandler, final ElementReader elementReader) {
+		this.resultHandler = resultHandler;
+		this.store = store;
+		this.pendingAuxiliaryPropertyNames = new HashSet<>(auxiliaryPropertyNames);
 		// We assume there's only a limited set of URI base id's, so store in memory
 		this.originalUriBaseIds = new HashMap<>();
-		// We assume large scans may include a lot of artifacts and rules, so we use disk-backed collections.
-		// Note that alternatively we could use a hash & position-based approach like the SARIF .NET SDK
-		// (see DeferredDictionary and DeferredList) to avoid serializing entries to disk, but for now
-		// disk-backed collections seem to perform well and the implementation is much easier to understand.
-		this.artifactsByIndex = db.indexTreeList("artifactsByIndex", Artifact.SERIALIZER).create();
-		this.ruleIndexesById = db.hashMap("ruleIndexesById", Serializer.STRING, Serializer.INTEGER).create();
-		this.ruleIndexesByGuid = db.hashMap("ruleIndexesByGuid", Serializer.STRING, Serializer.INTEGER).create();
-		this.rulesByIndex = db.indexTreeList("rulesByIndex", ReportingDescriptor.SERIALIZER).create();
+		// Large scans may include a lot of artifacts and rules. If the input document can be re-read
+		// through an ElementReader, we only record the document offsets of these entries and decode
+		// them on demand (similar to DeferredList in the SARIF .NET SDK). Otherwise, entries are kept
+		// in store-backed lists, which are moved to disk once the run exceeds a configurable size.
+		// Entries in disk-backed collections are serialized using a compact per-run codec.
+		RunDataCodec codec = new RunDataCodec();
+		this.deferredArtifacts = elementReader==null ? null : new DeferredList<>(Artifact.class, elementReader);
+		this.deferredRules = elementReader==null ? null : new DeferredList<>(ReportingDescriptor.class, elementReader);
+		this.artifactsByIndex = deferredArtifacts!=null ? deferredArtifacts : store.createList("artifactsByIndex", codec.getArtifactSerializer());
+		this.rulesByIndex = deferredRules!=null ? deferredRules : store.createList("rulesByIndex", codec.getRuleSerializer());
+		this.threadFlowLocationsByIndex = store.createList("threadFlowLocationsByIndex", codec.getThreadFlowLocationSerializer());
+		// Only used if results appear before other run data; see class description
+		this.spilledResults = store.createList("spilledResults", codec.getResultSerializer());
 	}
 	
 	/**
 	 * This method parses auxiliary data from a SARIF <code>run</code> object;
 	 * the returned {@link RunData} object provides access to this auxiliary data.
+	 * Every entry in the <code>results</code> array is passed to the given
+	 * result handler, either while parsing the run or after all other run data
+	 * has been parsed; see class description for details. 
 	 * 
-	 * @param db used to temporarily store some data in disk-backed collections
+	 * @param store used to temporarily store some data, potentially in disk-backed collections
 	 * @param jsonParser pointing at a <code>run</code> entry in the SARIF <code>runs</code> array
+	 * @param resultHandler invoked for every entry in the <code>results</code> array
 	 * @return {@link RunData} instance
 	 * @throws IOException
 	 */
-	public static final RunData parseRunData(final DB db, final ExtendedJsonParser jsonParser) throws IOException {
-		RunData runData = new RunData(db);
-		new StreamingJsonParser()
-			.handler("/originalUriBaseIds/*", runData::addOriginalUriBaseId)
-			.handler("/artifacts/*", Artifact.class, runData::addArtifact)
-			.handler("/tool/driver/rules/*", ReportingDescriptor.class, runData::addRule)
-			.handler("/tool/driver/name", String.class, runData::setToolName)
-			.handler("/results", runData::setResultsRegion)
-			.parseObjectProperties(jsonParser, "/");
+	public static final RunData parseRunData(final RunDataStore store, final ExtendedJsonParser jsonParser, final BiConsumer<RunData, Result> resultHandler) throws IOException {
+		return parseRunData(store, AUXILIARY_PROPERTY_NAMES, resultHandler, 
+				runData->runData.addHandlers(new StreamingJsonParser()).parseObjectProperties(jsonParser, "/"));
+	}
+	
+	/**
+	 * This method creates a new {@link RunData} instance, and invokes the given
+	 * {@link RunDataParser} to parse the contents of a SARIF <code>run</code> 
+	 * object into this instance, usually by invoking {@link #addHandlers(AbstractStreamingJsonParser)} 
+	 * on some streaming JSON parser. This allows callers that have prior knowledge 
+	 * about the structure of the run to pass the set of auxiliary properties that 
+	 * are actually present in the run, so results can be handled inline whenever
+	 * possible. Spilled results are handled once the given {@link RunDataParser} 
+	 * has completed.
+	 * 
+	 * @param store used to temporarily store some data, potentially in disk-backed collections
+	 * @param auxiliaryPropertyNames subset of {@link #AUXILIARY_PROPERTY_NAMES} present in the run
+	 * @param resultHandler invoked for every entry in the <code>results</code> array
+	 * @param runDataParser invoked to parse the run contents into the new {@link RunData} instance 
+	 * @return {@link RunData} instance
+	 * @throws IOException
+	 */
+	public static final RunData parseRunData(final RunDataStore store, final Set<String> auxiliaryPropertyNames, final BiConsumer<RunData, Result> resultHandler, final RunDataParser runDataParser) throws IOException {
+		return parseRunData(store, auxiliaryPropertyNames, resultHandler, runDataParser, null);
+	}
+	
+	/**
+	 * This method is similar to {@link #parseRunData(RunDataStore, Set, BiConsumer, RunDataParser)}, 
+	 * but if the given {@link ElementReader} is not <code>null</code>, rules and artifacts are 
+	 * read from the input document on demand instead of being stored in the {@link RunDataStore}.
+	 * Input document offsets passed to the {@link ElementReader} are the offsets reported by 
+	 * the JSON parser used by the given {@link RunDataParser}, so callers must make sure 
+	 * that these offsets can be mapped to the actual input document. 
+	 * 
+	 * @param store used to temporarily store some data, potentially in disk-backed collections
+	 * @param auxiliaryPropertyNames subset of {@link #AUXILIARY_PROPERTY_NAMES} present in the run
+	 * @param resultHandler invoked for every entry in the <code>results</code> array
+	 * @param runDataParser invoked to parse the run contents into the new {@link RunData} instance 
+	 * @param elementReader used to read rules and artifacts on demand, may be <code>null</code>
+	 * @return {@link RunData} instance
+	 * @throws IOException
+	 */
+	public static final RunData parseRunData(final RunDataStore store, final Set<String> auxiliaryPropertyNames, final BiConsumer<RunData, Result> resultHandler, final RunDataParser runDataParser, final ElementReader elementReader) throws IOException {
+		RunData runData = new RunData(store, auxiliaryPropertyNames, resultHandler, elementReader);
+		runDataParser.parse(runData);
+		runData.handleSpilledResults();
 		return runData;
 	}
+	
+	/**
+	 * Add the handlers for parsing the properties of a SARIF <code>run</code> object
+	 * to the given streaming JSON parser. 
+	 * 
+	 * @param parser to which to add the handlers
+	 * @return the given parser, for chaining
+	 */
+	public final <P extends AbstractStreamingJsonParser<P>> P addHandlers(P parser) {
+		return parser
+			.handler("/originalUriBaseIds", this::parseOriginalUriBaseIds)
+			.handler("/artifacts", this::parseArtifacts)
+			.handler("/threadFlowLocations", this::parseThreadFlowLocations)
+			.handler("/tool", this::parseTool)
+			.handler("/results", this::parseResults);
+	}
+	
+	private final void parseOriginalUriBaseIds(ExtendedJsonParser jp) throws IOException {
+		new StreamingJsonParser()
+			.handler("/*", this::addOriginalUriBaseId)
+			.parseObjectProperties(jp, "/");
+		pendingAuxiliaryPropertyNames.remove("originalUriBaseIds");
+	}
+	
+	private final void parseArtifacts(ExtendedJsonParser jp) throws IOException {
+		if ( deferredArtifacts!=null ) {
+			forEachArrayEntryRegion(jp, (start, end)->deferredArtifacts.addEntry(start, end));
+		} else {
+			forEachArrayEntry(jp, Artifact.class, this::addArtifact);
+		}
+		pendingAuxiliaryPropertyNames.remove("artifacts");
+	}
+	
+	/**
+	 * Parse the run-level <code>threadFlowLocations</code> array, which may be referenced
+	 * by index from thread flow locations in results. Only the data used for code flow
+	 * summaries is stored; see {@link CodeFlowSummary}.
+	 */
+	private final void parseThreadFlowLocations(ExtendedJsonParser jp) throws IOException {
+		if ( jp.getCurrentToken()==JsonToken.START_ARRAY ) {
+			while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+				threadFlowLocationsByIndex.add(resultDecoder.readThreadFlowLocation(jp));
+			}
+		} else {
+			jp.skipChildren();
+		}
+		pendingAuxiliaryPropertyNames.remove("threadFlowLocations");
+	}
+	
+	private final void parseTool(ExtendedJsonParser jp) throws IOException {
+		StreamingJsonParser parser = new StreamingJsonParser();
+		if ( deferredRules!=null ) {
+			parser.handler("/driver/rules", this::parseDeferredRules);
+		} else {
+			parser.handler("/driver/rules/*", ReportingDescriptor.class, this::addRule);
+		}
+		parser.handler("/driver/name", String.class, this::setToolName)
+			.parseObjectProperties(jp, "/");
+		pendingAuxiliaryPropertyNames.remove("tool");
+	}
+	
+	/**
+	 * Record the input document offsets of each rule, and the rule indexes for 
+	 * each rule id and guid, without deserializing the rules.
+	 */
+	private final void parseDeferredRules(ExtendedJsonParser jp) throws IOException {
+		String[] idAndGuid = new String[2];
+		forEachArrayEntryRegion(jp, jp2 -> {
+			idAndGuid[0] = idAndGuid[1] = null;
+			if ( jp2.currentToken()==JsonToken.START_OBJECT ) {
+				while ( jp2.nextToken()==JsonToken.FIELD_NAME ) {
+					String name = jp2.getCurrentName();
+					jp2.nextToken();
+					if ( "id".equals(name) ) { 
+						idAndGuid[0] = jp2.getValueAsString(); 
+					} else if ( "guid".equals(name) ) { 
+						idAndGuid[1] = jp2.getValueAsString(); 
+					} else { 
+						jp2.skipChildren(); 
+					}
+				}
+			} else {
+				jp2.skipChildren();
+			}
+		}, (start, end) -> {
+			deferredRules.addEntry(start, end);
+			int index = deferredRules.size()-1;
+			setRuleAttributes(index, null); // Computed on first access
+			addRuleIndex(ruleIndexesById, idAndGuid[0], index);
+			addRuleIndex(ruleIndexesByGuid, idAndGuid[1], index);
+		});
+	}
+	
+	private final void parseResults(ExtendedJsonParser jp) throws IOException {
+		if ( pendingAuxiliaryPropertyNames.isEmpty() ) {
+			forEachResult(jp, result->resultHandler.accept(this, result));
+		} else {
+			LOG.debug("Run data incomplete while parsing results, spilling results");
+			forEachResult(jp, spilledResults::add);
+		}
+	}
+	
+	private final void forEachResult(ExtendedJsonParser jp, Consumer<Result> consumer) throws IOException {
+		if ( jp.getCurrentToken()==JsonToken.START_ARRAY ) {
+			while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+				consumer.accept(resultDecoder.decode(jp));
+			}
+		} else {
+			jp.skipChildren();
+		}
+	}
+	
+	private final void handleSpilledResults() {
+		for ( Result result : spilledResults ) {
+			resultHandler.accept(this, result);
+		}
+		spilledResults.clear();
+	}
+	
+	private static final <T> void forEachArrayEntry(ExtendedJsonParser jp, Class<T> type, Consumer<T> consumer) throws IOException {
+		if ( jp.getCurrentToken()==JsonToken.START_ARRAY ) {
+			while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+				consumer.accept(jp.readValueAs(type));
+			}
+		} else {
+			jp.skipChildren();
+		}
+	}
+
+	private static final void forEachArrayEntryRegion(ExtendedJsonParser jp, RegionConsumer regionConsumer) throws IOException {
+		forEachArrayEntryRegion(jp, JsonParser::skipChildren, regionConsumer);
+	}
+	
+	private static final void forEachArrayEntryRegion(ExtendedJsonParser jp, JsonParserHandler entryHandler, RegionConsumer regionConsumer) throws IOException {
+		if ( jp.getCurrentToken()==JsonToken.START_ARRAY ) {
+			while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+				long start = jp.getTokenLocation().getByteOffset();
+				entryHandler.handle(jp);
+				regionConsumer.accept(start, jp.getCurrentLocation().getByteOffset());
+			}
+		} else {
+			jp.skipChildren();
+		}
+	}
+	
+	@FunctionalInterface
+	private static interface RegionConsumer {
+		public void accept(long start, long end);
+	}
+	
+	/**
+	 * Functional interface for reading the input document contents between
+	 * the given offsets, used for reading rules and artifacts on demand.
+	 */
+	@FunctionalInterface
+	public static interface ElementReader {
+		public byte[] read(long start, long end) throws IOException;
+	}
+
+	/**
+	 * Functional interface for parsing the contents of a SARIF <code>run</code>
+	 * object into a given {@link RunData} instance.
+	 */
+	@FunctionalInterface
+	public static interface RunDataParser {
+		public void parse(RunData runData) throws IOException;
+	}
 
 	private final void addOriginalUriBaseId(ExtendedJsonParser jp) throws IOException {
 		originalUriBaseIds.put(jp.getCurrentName(), jp.readValueAs(ArtifactLocation.class));
@@ -107,20 +386,17 @@ public final class RunData {
 	private final void addRule(ReportingDescriptor reportingDescriptor) {
 		rulesByIndex.add(reportingDescriptor);
 		int index = rulesByIndex.size()-1;
+		setRuleAttributes(index, new RuleAttributes(reportingDescriptor));
 		addRuleIndex(ruleIndexesById, reportingDescriptor.getId(), index);
 		addRuleIndex(ruleIndexesByGuid, reportingDescriptor.getGuid(), index);
 	}
 	
-	private final void addRuleIndex(Map<String,Integer> map, String key, int index) {
+	private final void addRuleIndex(OffHeapStringIntMap map, String key, int index) {
 		if ( StringUtils.isNotBlank(key) ) {
 			map.put(key, index);
 		}
 	}
 	
-	private final void setResultsRegion(ExtendedJsonParser jp) throws IOException {
-		this.resultsRegion = jp.getObjectOrArrayRegion();
-	}
-	
 	private final void setToolName(String toolName) {
 		this.toolName = toolName;
 	}
@@ -129,20 +405,164 @@ public final class RunData {
 		return uriBaseId==null ? null : originalUriBaseIds.get(uriBaseId);
 	}
 	
+	/**
+	 * Resolve the URI for the given uriBaseId against <code>originalUriBaseIds</code>.
+	 * Resolved base URI's are memoized; cyclic references are logged and ignored.
+	 * @param uriBaseId
+	 * @return Resolved base URI, or <code>null</code> if not available
+	 */
+	public final URI resolveBaseUri(String uriBaseId) {
+		return fileNameTable.resolveBaseUri(uriBaseId);
+	}
+	
+	/**
+	 * Get the (memoized) full file name for the given {@link ArtifactLocation}, 
+	 * based on its uri and uriBaseId resolved against <code>originalUriBaseIds</code>.
+	 * Any artifact referenced by index is ignored.
+	 * @param artifactLocation
+	 * @return Full file name, or <code>null</code> if not available
+	 */
+	public final String getFullFileName(ArtifactLocation artifactLocation) {
+		return artifactLocation==null ? null : fileNameTable.getFullFileNameByLocation(artifactLocation);
+	}
+	
+	/**
+	 * Get the (memoized) full file name for the given {@link ArtifactLocation}, 
+	 * taking into account the artifact referenced by index (if any) like
+	 * {@link PhysicalLocation#resolveArtifactLocation(RunData)} does, and 
+	 * <code>originalUriBaseIds</code>.
+	 * @param artifactLocation
+	 * @return Full file name, or <code>null</code> if not available
+	 */
+	public final String resolveFullFileName(ArtifactLocation artifactLocation) {
+		return artifactLocation==null ? null : fileNameTable.getFullFileName(artifactLocation);
+	}
+	
+	/**
+	 * Render the given message template text, as referenced by a result message 
+	 * through a rule's <code>messageStrings</code>, with the given arguments. 
+	 * Templates are compiled on first use, and cached for the duration of this run; 
+	 * templates are keyed by text such that equal templates for different rules,
+	 * or for rules that are re-read from disk, share the same compiled template.
+	 * No more than {@value #MAX_MESSAGE_TEMPLATES} templates are cached; any
+	 * further templates are compiled on every call.
+	 * @param text
+	 * @param args
+	 * @return Rendered message
+	 */
+	public final String renderMessageTemplate(String text, String[] args) {
+		MessageTemplate template = messageTemplates.get(text);
+		if ( template==null ) {
+			template = MessageTemplate.compile(text);
+			if ( messageTemplates.size()<MAX_MESSAGE_TEMPLATES ) {
+				messageTemplates.putIfAbsent(text, template);
+			}
+		}
+		return template.render(args);
+	}
+	
+	/**
+	 * @param index
+	 * @return Entry in the run-level <code>artifacts</code> array at the given index, 
+	 *         or <code>null</code> if not available
+	 */
 	public final Artifact getArtifactByIndex(Integer index) {
-		return index==null ? null : artifactsByIndex.get(index);
+		if ( index==null || index<0 || index>=artifactsByIndex.size() ) { return null; }
+		return isDecodedOnAccess() ? artifactCache.get(index, artifactsByIndex::get) : artifactsByIndex.get(index);
+	}
+	
+	/**
+	 * @param index
+	 * @return Entry in the run-level <code>threadFlowLocations</code> array at the given index, 
+	 *         or <code>null</code> if not available
+	 */
+	public final CodeFlowSummary.Step getThreadFlowLocation(int index) {
+		if ( index<0 || index>=threadFlowLocationsByIndex.size() ) { return null; }
+		return store.isSpilled() 
+				? threadFlowLocationCache.get(index, threadFlowLocationsByIndex::get) 
+				: threadFlowLocationsByIndex.get(index);
 	}
 	
 	public final ReportingDescriptor getRuleById(String id) {
-		return getRuleByIndex(ruleIndexesById.get(id));
+		return getRuleByIndex(getRuleIndexById(id));
 	}
 	
 	public final ReportingDescriptor getRuleByGuid(String guid) {
-		return getRuleByIndex(ruleIndexesByGuid.get(guid));
+		return getRuleByIndex(getRuleIndexByGuid(guid));
+	}
+	
+	public final Integer getRuleIndexById(String id) {
+		return toIndex(ruleIndexesById.get(id, -1));
+	}
+	
+	public final Integer getRuleIndexByGuid(String guid) {
+		return toIndex(ruleIndexesByGuid.get(guid, -1));
+	}
+	
+	private static final Integer toIndex(int index) {
+		return index<0 ? null : index;
+	}
+	
+	/**
+	 * Get the {@link RuleAttributes} for the rule with the given index. Rule attributes
+	 * are computed when adding rules, or on first access if rules are read on demand.
+	 * @param index
+	 * @return {@link RuleAttributes} for the given rule index, or <code>null</code> if 
+	 *         the given index is <code>null</code> or there is no rule with the given index
+	 */
+	public final RuleAttributes getRuleAttributesByIndex(Integer index) {
+		if ( index==null ) { return null; }
+		RuleAttributes[] attributes = this.ruleAttributes;
+		RuleAttributes result = index>=0 && index<attributes.length ? attributes[index] : null;
+		if ( result==null ) {
+			ReportingDescriptor rule = getRuleByIndex(index);
+			if ( rule!=null ) {
+				result = new RuleAttributes(rule);
+				if ( index<attributes.length ) { attributes[index] = result; }
+			}
+		}
+		return result;
+	}
+	
+	private final void setRuleAttributes(int index, RuleAttributes attributes) {
+		if ( index>=ruleAttributes.length ) {
+			ruleAttributes = Arrays.copyOf(ruleAttributes, Math.max(index+1, ruleAttributes.length*2));
+		}
+		ruleAttributes[index] = attributes;
 	}
 	
 	public final ReportingDescriptor getRuleByIndex(Integer index) {
-		return index==null ? null : rulesByIndex.get(index);
+		if ( index==null ) { return null; }
+		return isDecodedOnAccess() ? ruleCache.get(index, rulesByIndex::get) : rulesByIndex.get(index);
+	}
+	
+	/**
+	 * @return Description of rule and artifact cache statistics, for logging purposes
+	 */
+	public final String getCacheStatistics() {
+		return ruleCache+"; "+artifactCache+"; "+threadFlowLocationCache;
+	}
+	
+	/**
+	 * @return true if rules and artifacts are deserialized on every access to the
+	 *         underlying lists, in which case lookups go through a {@link DecodedObjectCache}
+	 */
+	private final boolean isDecodedOnAccess() {
+		return deferredRules!=null || store.isSpilled();
+	}
+	
+	/**
+	 * Get the run attribute of the given type, computing it using the given 
+	 * factory on first access. This allows callers to memoize per-run state 
+	 * that is derived from the auxiliary run data, like conversion plans; 
+	 * callers should only invoke this method once all auxiliary run data 
+	 * has been parsed, i.e., from the result handler.
+	 * @param type
+	 * @param factory
+	 * @return Run attribute of the given type
+	 */
+	public final <T> T getRunAttribute(Class<T> type, Function<RunData, T> factory) {
+		return type.cast(runAttributes.computeIfAbsent(type, t->factory.apply(this)));
 	}
 	
 	public String getEngineType() {
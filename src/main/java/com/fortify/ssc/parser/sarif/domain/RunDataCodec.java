@@ -0,0 +1,678 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+import org.mapdb.serializer.GroupSerializerObjectArray;
+
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
+
+/**
+ * This class provides compact, hand-written MapDB {@link Serializer} implementations
+ * for the domain objects that {@link RunData} stores in a {@link RunDataStore}, i.e.
+ * rules ({@link ReportingDescriptor}), {@link Artifact} instances, run-level thread 
+ * flow locations ({@link CodeFlowSummary.Step}) and spilled {@link Result} instances 
+ * (including their {@link ReportingDescriptorReference} and {@link CodeFlowSummary}). 
+ * Compared to a generic, reflection-based serializer, this avoids class and field 
+ * metadata in the serialized form, and the overhead of reflective field access.
+ * 
+ * The serialized form uses the following encoding:
+ * <ul>
+ *   <li>Lengths, indexes and integer values are written as variable-length integers;
+ *       nullable values are encoded such that 0 represents <code>null</code>.</li>
+ *   <li>Strings that are likely to be repeated, like rule id's, property names and 
+ *       short property values, are added to a per-run string dictionary (up to 
+ *       {@value #MAX_DICTIONARY_SIZE} strings of at most {@value #MAX_DICTIONARY_STRING_LENGTH} 
+ *       characters), and written as a dictionary index. As such, each instance of this
+ *       class must only be used for a single run, and data written by one instance 
+ *       can only be read by the same instance. Other strings are written as UTF-8.</li>
+ *   <li>Property bag values are written with a type tag; values of unexpected types 
+ *       are written using Java serialization.</li>
+ *   <li>If enabled through the {@value #PROPERTY_COMPRESS_RUN_DATA} system property, 
+ *       records of at least {@value #MIN_COMPRESSED_LENGTH} bytes are compressed 
+ *       using LZ4 block compression, if this results in a smaller record.</li>
+ * </ul>
+ * 
+ * Serialization must be performed by a single thread at a time, but records may be
+ * deserialized by multiple threads concurrently.
+ * 
+ * @author Ruud Senden
+ */
+final class RunDataCodec {
+	public static final String PROPERTY_COMPRESS_RUN_DATA = "com.fortify.ssc.parser.sarif.compressRunData";
+	private static final int MAX_DICTIONARY_SIZE = 65536;
+	private static final int MAX_DICTIONARY_STRING_LENGTH = 64;
+	private static final int MIN_COMPRESSED_LENGTH = 256;
+	private static final ThreadLocal<Lz4Compressor> COMPRESSOR = ThreadLocal.withInitial(Lz4Compressor::new);
+	private static final Lz4Decompressor DECOMPRESSOR = new Lz4Decompressor();
+	private static final Level[] LEVELS = Level.values();
+	private static final Kind[] KINDS = Kind.values();
+	private static final int TAG_NULL = 0, TAG_STRING = 1, TAG_TRUE = 2, TAG_FALSE = 3, TAG_INT = 4, TAG_LONG = 5, 
+			TAG_DOUBLE = 6, TAG_BIG_INTEGER = 7, TAG_BIG_DECIMAL = 8, TAG_LIST = 9, TAG_MAP = 10, TAG_SERIALIZED = 11;
+	private final boolean compress;
+	private final Map<String, Integer> dictionaryIndexes = new HashMap<>();
+	private volatile String[] dictionary = new String[64];
+	private final Serializer<ReportingDescriptor> ruleSerializer = new CodecSerializer<>(this::writeRule, this::readRule);
+	private final Serializer<Artifact> artifactSerializer = new CodecSerializer<>(this::writeArtifact, this::readArtifact);
+	private final Serializer<Result> resultSerializer = new CodecSerializer<>(this::writeResult, this::readResult);
+	private final Serializer<CodeFlowSummary.Step> threadFlowLocationSerializer = new CodecSerializer<>(this::writeStep, this::readStep);
+	
+	/**
+	 * Create a new {@link RunDataCodec} instance, with compression enabled or 
+	 * disabled based on the {@value #PROPERTY_COMPRESS_RUN_DATA} system property.
+	 */
+	RunDataCodec() {
+		this(Boolean.getBoolean(PROPERTY_COMPRESS_RUN_DATA));
+	}
+	
+	/**
+	 * Create a new {@link RunDataCodec} instance.
+	 * @param compress whether to compress larger records
+	 */
+	RunDataCodec(boolean compress) {
+		this.compress = compress;
+	}
+	
+	final Serializer<ReportingDescriptor> getRuleSerializer() {
+		return ruleSerializer;
+	}
+	
+	final Serializer<Artifact> getArtifactSerializer() {
+		return artifactSerializer;
+	}
+	
+	final Serializer<Result> getResultSerializer() {
+		return resultSerializer;
+	}
+	
+	final Serializer<CodeFlowSummary.Step> getThreadFlowLocationSerializer() {
+		return threadFlowLocationSerializer;
+	}
+	
+	/**
+	 * @return Number of strings in the string dictionary
+	 */
+	final synchronized int getDictionarySize() {
+		return dictionaryIndexes.size();
+	}
+	
+	private final void writeRule(DataOutput2 out, ReportingDescriptor rule) throws IOException {
+		writeString(out, rule.getId(), true);
+		writeString(out, rule.getGuid(), true);
+		ReportingConfiguration defaultConfiguration = rule.getDefaultConfiguration();
+		if ( defaultConfiguration==null ) {
+			out.packInt(0);
+		} else {
+			out.packInt(defaultConfiguration.getLevel()==null ? 1 : defaultConfiguration.getLevel().ordinal()+2);
+		}
+		writeString(out, rule.getName(), true);
+		Map<String, MultiformatMessageString> messageStrings = rule.getMessageStrings();
+		if ( messageStrings==null ) {
+			out.packInt(0);
+		} else {
+			out.packInt(messageStrings.size()+1);
+			for ( Map.Entry<String, MultiformatMessageString> entry : messageStrings.entrySet() ) {
+				writeString(out, entry.getKey(), true);
+				writeMultiformatMessageString(out, entry.getValue());
+			}
+		}
+		writeMessage(out, rule.getShortDescription());
+		writeMessage(out, rule.getFullDescription());
+		writeString(out, rule.getHelpUri()==null ? null : rule.getHelpUri().toString(), false);
+		writeMultiformatMessageString(out, rule.getHelp());
+		writePropertyBag(out, rule.getProperties());
+	}
+	
+	private final ReportingDescriptor readRule(DataInput2 in) throws IOException {
+		ReportingDescriptor rule = new ReportingDescriptor();
+		rule.setId(readString(in));
+		rule.setGuid(readString(in));
+		int level = in.unpackInt();
+		if ( level==0 ) {
+			rule.setDefaultConfiguration(null);
+		} else {
+			rule.getDefaultConfiguration().setLevel(level==1 ? null : LEVELS[level-2]);
+		}
+		rule.setName(readString(in));
+		int messageStringsSize = in.unpackInt()-1;
+		if ( messageStringsSize>=0 ) {
+			Map<String, MultiformatMessageString> messageStrings = new LinkedHashMap<>();
+			for ( int i = 0 ; i < messageStringsSize ; i++ ) {
+				messageStrings.put(readString(in), readMultiformatMessageString(in));
+			}
+			rule.setMessageStrings(messageStrings);
+		}
+		rule.setShortDescription(readMessage(in));
+		rule.setFullDescription(readMessage(in));
+		String helpUri = readString(in);
+		rule.setHelpUri(helpUri==null ? null : URI.create(helpUri));
+		rule.setHelp(readMultiformatMessageString(in));
+		rule.setProperties(readPropertyBag(in));
+		return rule;
+	}
+	
+	private final void writeArtifact(DataOutput2 out, Artifact artifact) throws IOException {
+		writeArtifactLocation(out, artifact.getLocation());
+	}
+	
+	private final Artifact readArtifact(DataInput2 in) throws IOException {
+		Artifact artifact = new Artifact();
+		artifact.setLocation(readArtifactLocation(in));
+		return artifact;
+	}
+	
+	private final void writeResult(DataOutput2 out, Result result) throws IOException {
+		writeString(out, result.getGuid(), false);
+		writeString(out, result.getCorrelationGuid(), false);
+		writeString(out, result.getRuleId(), true);
+		writeNullableInt(out, result.getRuleIndex());
+		ReportingDescriptorReference rule = result.getRule();
+		out.writeBoolean(rule!=null);
+		if ( rule!=null ) {
+			writeString(out, rule.getId(), true);
+			writeNullableInt(out, rule.getIndex());
+			writeString(out, rule.getGuid(), true);
+		}
+		out.packInt(result.getKind()==null ? 0 : result.getKind().ordinal()+1);
+		out.packInt(result.getLevel()==null ? 0 : result.getLevel().ordinal()+1);
+		writeMessage(out, result.getMessage());
+		Location[] locations = result.getLocations();
+		if ( locations==null ) {
+			out.packInt(0);
+		} else {
+			out.packInt(locations.length+1);
+			for ( Location location : locations ) {
+				out.writeBoolean(location!=null);
+				if ( location!=null ) {
+					out.packLong(zigZag(location.getId()));
+					PhysicalLocation physicalLocation = location.getPhysicalLocation();
+					out.writeBoolean(physicalLocation!=null);
+					if ( physicalLocation!=null ) {
+						writeArtifactLocation(out, physicalLocation.getArtifactLocation());
+					}
+				}
+			}
+		}
+		writeArtifactLocation(out, result.getAnalysisTarget());
+		writeStringMap(out, result.getFingerprints());
+		writeStringMap(out, result.getPartialFingerprints());
+		writePropertyBag(out, result.getProperties());
+		writeCodeFlowSummary(out, result.getCodeFlowSummary());
+	}
+	
+	private final Result readResult(DataInput2 in) throws IOException {
+		Result result = new Result();
+		result.setGuid(readString(in));
+		result.setCorrelationGuid(readString(in));
+		result.setRuleId(readString(in));
+		result.setRuleIndex(readNullableInt(in));
+		if ( in.readBoolean() ) {
+			ReportingDescriptorReference rule = new ReportingDescriptorReference();
+			rule.setId(readString(in));
+			rule.setIndex(readNullableInt(in));
+			rule.setGuid(readString(in));
+			result.setRule(rule);
+		}
+		int kind = in.unpackInt();
+		result.setKind(kind==0 ? null : KINDS[kind-1]);
+		int level = in.unpackInt();
+		result.setLevel(level==0 ? null : LEVELS[level-1]);
+		result.setMessage(readMessage(in));
+		int locationsLength = in.unpackInt()-1;
+		if ( locationsLength>=0 ) {
+			Location[] locations = new Location[locationsLength];
+			for ( int i = 0 ; i < locationsLength ; i++ ) {
+				if ( in.readBoolean() ) {
+					Location location = new Location();
+					location.setId((int)unZigZag(in.unpackLong()));
+					if ( in.readBoolean() ) {
+						PhysicalLocation physicalLocation = new PhysicalLocation();
+						physicalLocation.setArtifactLocation(readArtifactLocation(in));
+						location.setPhysicalLocation(physicalLocation);
+					}
+					locations[i] = location;
+				}
+			}
+			result.setLocations(locations);
+		}
+		result.setAnalysisTarget(readArtifactLocation(in));
+		result.setFingerprints(readStringMap(in));
+		result.setPartialFingerprints(readStringMap(in));
+		result.setProperties(readPropertyBag(in));
+		result.setCodeFlowSummary(readCodeFlowSummary(in));
+		return result;
+	}
+	
+	// The source is always the first trace step, so only the trace and sink are written
+	private final void writeCodeFlowSummary(DataOutput2 out, CodeFlowSummary summary) throws IOException {
+		if ( summary==null ) {
+			out.packInt(0);
+		} else {
+			out.packInt(summary.getLocationCount());
+			CodeFlowSummary.Step[] trace = summary.getTrace();
+			out.packInt(trace.length);
+			for ( CodeFlowSummary.Step step : trace ) {
+				writeStep(out, step);
+			}
+			writeStep(out, summary.getSink());
+		}
+	}
+	
+	private final CodeFlowSummary readCodeFlowSummary(DataInput2 in) throws IOException {
+		int locationCount = in.unpackInt();
+		if ( locationCount==0 ) { return null; }
+		CodeFlowSummary summary = new CodeFlowSummary();
+		summary.setLocationCount(locationCount);
+		CodeFlowSummary.Step[] trace = new CodeFlowSummary.Step[in.unpackInt()];
+		for ( int i = 0 ; i < trace.length ; i++ ) {
+			trace[i] = readStep(in);
+		}
+		summary.setTrace(trace);
+		summary.setSink(readStep(in));
+		return summary;
+	}
+	
+	private final void writeStep(DataOutput2 out, CodeFlowSummary.Step step) throws IOException {
+		writeArtifactLocation(out, step.getArtifactLocation());
+		writeNullableInt(out, step.getStartLine());
+		writeString(out, step.getLogicalLocation(), true);
+		writeString(out, step.getMessage(), false);
+		writeNullableInt(out, step.getIndex());
+	}
+	
+	private final CodeFlowSummary.Step readStep(DataInput2 in) throws IOException {
+		CodeFlowSummary.Step step = new CodeFlowSummary.Step();
+		step.setArtifactLocation(readArtifactLocation(in));
+		step.setStartLine(readNullableInt(in));
+		step.setLogicalLocation(readString(in));
+		step.setMessage(readString(in));
+		step.setIndex(readNullableInt(in));
+		return step;
+	}
+	
+	private final void writeArtifactLocation(DataOutput2 out, ArtifactLocation location) throws IOException {
+		out.writeBoolean(location!=null);
+		if ( location!=null ) {
+			writeString(out, location.getUri()==null ? null : location.getUri().toString(), false);
+			writeString(out, location.getUriBaseId(), true);
+			writeNullableInt(out, location.getIndex());
+		}
+	}
+	
+	private final ArtifactLocation readArtifactLocation(DataInput2 in) throws IOException {
+		if ( !in.readBoolean() ) { return null; }
+		ArtifactLocation location = new ArtifactLocation();
+		String uri = readString(in);
+		location.setUri(uri==null ? null : URI.create(uri));
+		location.setUriBaseId(readString(in));
+		location.setIndex(readNullableInt(in));
+		return location;
+	}
+	
+	private final void writeMessage(DataOutput2 out, Message message) throws IOException {
+		out.writeBoolean(message!=null);
+		if ( message!=null ) {
+			writeString(out, message.getId(), true);
+			writeString(out, message.getText(), false);
+			String[] arguments = message.getArguments();
+			if ( arguments==null ) {
+				out.packInt(0);
+			} else {
+				out.packInt(arguments.length+1);
+				for ( String argument : arguments ) {
+					writeString(out, argument, false);
+				}
+			}
+		}
+	}
+	
+	private final Message readMessage(DataInput2 in) throws IOException {
+		if ( !in.readBoolean() ) { return null; }
+		Message message = new Message();
+		message.setId(readString(in));
+		message.setText(readString(in));
+		int argumentsLength = in.unpackInt()-1;
+		if ( argumentsLength>=0 ) {
+			String[] arguments = new String[argumentsLength];
+			for ( int i = 0 ; i < argumentsLength ; i++ ) {
+				arguments[i] = readString(in);
+			}
+			message.setArguments(arguments);
+		}
+		return message;
+	}
+	
+	private final void writeMultiformatMessageString(DataOutput2 out, MultiformatMessageString value) throws IOException {
+		out.writeBoolean(value!=null);
+		if ( value!=null ) {
+			writeString(out, value.getText(), false);
+		}
+	}
+	
+	private final MultiformatMessageString readMultiformatMessageString(DataInput2 in) throws IOException {
+		if ( !in.readBoolean() ) { return null; }
+		MultiformatMessageString value = new MultiformatMessageString();
+		value.setText(readString(in));
+		return value;
+	}
+	
+	private final void writeStringMap(DataOutput2 out, Map<String, String> map) throws IOException {
+		if ( map==null ) {
+			out.packInt(0);
+		} else {
+			out.packInt(map.size()+1);
+			for ( Map.Entry<String, String> entry : map.entrySet() ) {
+				writeString(out, entry.getKey(), true);
+				writeString(out, entry.getValue(), false);
+			}
+		}
+	}
+	
+	private final Map<String, String> readStringMap(DataInput2 in) throws IOException {
+		int size = in.unpackInt()-1;
+		if ( size<0 ) { return null; }
+		Map<String, String> map = new LinkedHashMap<>();
+		for ( int i = 0 ; i < size ; i++ ) {
+			map.put(readString(in), readString(in));
+		}
+		return map;
+	}
+	
+	private final void writePropertyBag(DataOutput2 out, Map<String, Object> properties) throws IOException {
+		if ( properties==null ) {
+			out.packInt(0);
+		} else {
+			out.packInt(properties.size()+1);
+			for ( Map.Entry<String, Object> entry : properties.entrySet() ) {
+				writeString(out, entry.getKey(), true);
+				writeValue(out, entry.getValue());
+			}
+		}
+	}
+	
+	private final Map<String, Object> readPropertyBag(DataInput2 in) throws IOException {
+		int size = in.unpackInt()-1;
+		if ( size<0 ) { return null; }
+		Map<String, Object> map = new LinkedHashMap<>();
+		for ( int i = 0 ; i < size ; i++ ) {
+			map.put(readString(in), readValue(in));
+		}
+		return map;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private final void writeValue(DataOutput2 out, Object value) throws IOException {
+		if ( value==null ) {
+			out.writeByte(TAG_NULL);
+		} else if ( value instanceof String ) {
+			out.writeByte(TAG_STRING);
+			writeString(out, (String)value, true);
+		} else if ( value instanceof Boolean ) {
+			out.writeByte((Boolean)value ? TAG_TRUE : TAG_FALSE);
+		} else if ( value instanceof Integer ) {
+			out.writeByte(TAG_INT);
+			out.packLong(zigZag((Integer)value));
+		} else if ( value instanceof Long ) {
+			out.writeByte(TAG_LONG);
+			out.packLong(zigZag((Long)value));
+		} else if ( value instanceof Double ) {
+			out.writeByte(TAG_DOUBLE);
+			out.writeDouble((Double)value);
+		} else if ( value instanceof BigInteger ) {
+			out.writeByte(TAG_BIG_INTEGER);
+			writeString(out, value.toString(), false);
+		} else if ( value instanceof BigDecimal ) {
+			out.writeByte(TAG_BIG_DECIMAL);
+			writeString(out, value.toString(), false);
+		} else if ( value instanceof List ) {
+			List<Object> list = (List<Object>)value;
+			out.writeByte(TAG_LIST);
+			out.packInt(list.size());
+			for ( Object entry : list ) {
+				writeValue(out, entry);
+			}
+		} else if ( value instanceof Map ) {
+			out.writeByte(TAG_MAP);
+			writePropertyBag(out, (Map<String, Object>)value);
+		} else {
+			out.writeByte(TAG_SERIALIZED);
+			writeSerialized(out, value);
+		}
+	}
+	
+	private final Object readValue(DataInput2 in) throws IOException {
+		int tag = in.readByte();
+		switch ( tag ) {
+		case TAG_NULL: return null;
+		case TAG_STRING: return readString(in);
+		case TAG_TRUE: return Boolean.TRUE;
+		case TAG_FALSE: return Boolean.FALSE;
+		case TAG_INT: return (int)unZigZag(in.unpackLong());
+		case TAG_LONG: return unZigZag(in.unpackLong());
+		case TAG_DOUBLE: return in.readDouble();
+		case TAG_BIG_INTEGER: return new BigInteger(readString(in));
+		case TAG_BIG_DECIMAL: return new BigDecimal(readString(in));
+		case TAG_LIST:
+			int size = in.unpackInt();
+			List<Object> list = new ArrayList<>(size);
+			for ( int i = 0 ; i < size ; i++ ) {
+				list.add(readValue(in));
+			}
+			return list;
+		case TAG_MAP: return readPropertyBag(in);
+		case TAG_SERIALIZED: return readSerialized(in);
+		default: throw new IOException("Unknown property value type tag "+tag);
+		}
+	}
+	
+	private static final void writeSerialized(DataOutput2 out, Object value) throws IOException {
+		if ( !(value instanceof Serializable) ) {
+			throw new IOException("Unsupported property value type "+value.getClass().getName());
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try ( ObjectOutputStream oos = new ObjectOutputStream(bytes) ) {
+			oos.writeObject(value);
+		}
+		out.packInt(bytes.size());
+		bytes.writeTo(out);
+	}
+	
+	private static final Object readSerialized(DataInput2 in) throws IOException {
+		byte[] bytes = new byte[in.unpackInt()];
+		in.readFully(bytes);
+		try ( ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes)) ) {
+			return ois.readObject();
+		} catch ( ClassNotFoundException e ) {
+			throw new IOException("Error deserializing property value", e);
+		}
+	}
+	
+	/**
+	 * Write the given string; if <code>useDictionary</code> is true and the given 
+	 * string is short enough, the string is written as a dictionary reference. The 
+	 * header is 0 for <code>null</code>, (index&lt;&lt;1)|1 for dictionary references, 
+	 * or (length+1)&lt;&lt;1 for inline UTF-8 strings. 
+	 */
+	private final void writeString(DataOutput2 out, String value, boolean useDictionary) throws IOException {
+		if ( value==null ) {
+			out.packInt(0);
+		} else {
+			int index = useDictionary && value.length()<=MAX_DICTIONARY_STRING_LENGTH ? getDictionaryIndex(value) : -1;
+			if ( index>=0 ) {
+				out.packInt((index<<1)|1);
+			} else {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				out.packInt((bytes.length+1)<<1);
+				out.write(bytes);
+			}
+		}
+	}
+	
+	private final String readString(DataInput2 in) throws IOException {
+		int header = in.unpackInt();
+		if ( header==0 ) {
+			return null;
+		} else if ( (header&1)==1 ) {
+			return dictionary[header>>>1];
+		} else {
+			byte[] bytes = new byte[(header>>>1)-1];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+	
+	/**
+	 * Get the dictionary index for the given string, adding the string to the 
+	 * dictionary if not yet present. 
+	 * @return Dictionary index, or -1 if the dictionary is full
+	 */
+	private final synchronized int getDictionaryIndex(String value) {
+		Integer index = dictionaryIndexes.get(value);
+		if ( index==null ) {
+			int size = dictionaryIndexes.size();
+			if ( size>=MAX_DICTIONARY_SIZE ) { return -1; }
+			String[] current = dictionary;
+			if ( size==current.length ) {
+				current = Arrays.copyOf(current, size*2);
+			}
+			current[size] = value;
+			dictionary = current; // Publish new entry through volatile write
+			dictionaryIndexes.put(value, size);
+			return size;
+		}
+		return index;
+	}
+	
+	private final void writeNullableInt(DataOutput2 out, Integer value) throws IOException {
+		out.packLong(value==null ? 0 : zigZag(value)+1);
+	}
+	
+	private final Integer readNullableInt(DataInput2 in) throws IOException {
+		long value = in.unpackLong();
+		return value==0 ? null : (int)unZigZag(value-1);
+	}
+	
+	private static final long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+	
+	private static final long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	/**
+	 * Functional interface for writing an object.
+	 */
+	@FunctionalInterface
+	private static interface Writer<T> {
+		public void write(DataOutput2 out, T value) throws IOException;
+	}
+	
+	/**
+	 * Functional interface for reading an object.
+	 */
+	@FunctionalInterface
+	private static interface Reader<T> {
+		public T read(DataInput2 in) throws IOException;
+	}
+	
+	/**
+	 * MapDB {@link Serializer} implementation based on the given {@link Writer} 
+	 * and {@link Reader}, optionally compressing larger records.
+	 */
+	private final class CodecSerializer<T> extends GroupSerializerObjectArray<T> {
+		private final Writer<T> writer;
+		private final Reader<T> reader;
+		
+		private CodecSerializer(Writer<T> writer, Reader<T> reader) {
+			this.writer = writer;
+			this.reader = reader;
+		}
+		
+		/**
+		 * Serialize the given value. If compression is enabled, the record is 
+		 * prefixed with a header containing the uncompressed length and a flag 
+		 * indicating whether the record is compressed; compressed records include
+		 * the compressed length.
+		 */
+		@Override
+		public void serialize(DataOutput2 out, T value) throws IOException {
+			if ( !compress ) {
+				writer.write(out, value);
+			} else {
+				DataOutput2 raw = new DataOutput2();
+				writer.write(raw, value);
+				if ( raw.pos>=MIN_COMPRESSED_LENGTH ) {
+					Lz4Compressor compressor = COMPRESSOR.get();
+					byte[] compressed = new byte[compressor.maxCompressedLength(raw.pos)];
+					int compressedLength = compressor.compress(raw.buf, 0, raw.pos, compressed, 0, compressed.length);
+					if ( compressedLength<raw.pos ) {
+						out.packInt((raw.pos<<1)|1);
+						out.packInt(compressedLength);
+						out.write(compressed, 0, compressedLength);
+						return;
+					}
+				}
+				out.packInt(raw.pos<<1);
+				out.write(raw.buf, 0, raw.pos);
+			}
+		}
+		
+		@Override
+		public T deserialize(DataInput2 in, int available) throws IOException {
+			if ( compress ) {
+				int header = in.unpackInt();
+				if ( (header&1)==1 ) {
+					byte[] compressed = new byte[in.unpackInt()];
+					in.readFully(compressed);
+					byte[] raw = new byte[header>>>1];
+					DECOMPRESSOR.decompress(compressed, 0, compressed.length, raw, 0, raw.length);
+					return reader.read(new DataInput2.ByteArray(raw));
+				}
+			}
+			return reader.read(in);
+		}
+	}
+}
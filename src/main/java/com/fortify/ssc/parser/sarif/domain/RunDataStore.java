@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fortify.util.mapdb.TempDBSupplier;
+
+/**
+ * This class provides the collections used by {@link RunData} to store rules, 
+ * artifacts and spilled results. Initially, all collections are heap-based. Once 
+ * the total number of entries stored in these collections exceeds the configured 
+ * maximum, a temporary disk-backed database is created through the configured 
+ * {@link TempDBSupplier}, and the contents of all collections are moved to disk-backed 
+ * collections. As such, small runs don't incur the overhead of creating a 
+ * temporary database and serializing entries, while large runs are still 
+ * processed with limited memory usage.
+ * 
+ * The maximum number of in-memory entries defaults to {@value #DEFAULT_MAX_IN_MEMORY_ENTRIES},
+ * and can be configured through the {@value #PROPERTY_MAX_IN_MEMORY_ENTRIES} system
+ * property; a value of 0 results in all entries being stored on disk immediately.
+ * 
+ * Collections may be read by multiple threads, but must only be modified by
+ * a single thread.
+ * 
+ * @author Ruud Senden
+ */
+public final class RunDataStore implements AutoCloseable {
+	private static final Logger LOG = LoggerFactory.getLogger(RunDataStore.class);
+	public static final String PROPERTY_MAX_IN_MEMORY_ENTRIES = "com.fortify.ssc.parser.sarif.maxInMemoryRunEntries";
+	public static final int DEFAULT_MAX_IN_MEMORY_ENTRIES = 10000;
+	private final TempDBSupplier dbSupplier;
+	private final int maxInMemoryEntries;
+	private final List<Spillable> collections = new ArrayList<>();
+	private int inMemoryEntries = 0;
+	private DB db;
+	
+	/**
+	 * Create a new {@link RunDataStore} instance, using the maximum number of in-memory 
+	 * entries as configured through the {@value #PROPERTY_MAX_IN_MEMORY_ENTRIES} system
+	 * property.
+	 * @param dbSupplier used to create a temporary disk-backed database if necessary
+	 */
+	public RunDataStore(TempDBSupplier dbSupplier) {
+		this(dbSupplier, Integer.getInteger(PROPERTY_MAX_IN_MEMORY_ENTRIES, DEFAULT_MAX_IN_MEMORY_ENTRIES));
+	}
+	
+	/**
+	 * Create a new {@link RunDataStore} instance.
+	 * @param dbSupplier used to create a temporary disk-backed database if necessary
+	 * @param maxInMemoryEntries maximum total number of entries stored in memory
+	 */
+	public RunDataStore(TempDBSupplier dbSupplier, int maxInMemoryEntries) {
+		this.dbSupplier = dbSupplier;
+		this.maxInMemoryEntries = maxInMemoryEntries;
+	}
+	
+	/**
+	 * @return true if entries are being stored in a disk-backed database, false otherwise
+	 */
+	public final boolean isSpilled() {
+		return db!=null;
+	}
+	
+	/**
+	 * Release the temporary disk-backed database, if it was created.
+	 */
+	@Override
+	public final void close() {
+		if ( db!=null ) {
+			dbSupplier.release(db);
+			db = null;
+		}
+	}
+	
+	final <T> List<T> createList(String name, Serializer<T> serializer) {
+		return register(new SpillableList<>(name, serializer));
+	}
+	
+	private final <C extends Spillable> C register(C collection) {
+		collections.add(collection);
+		if ( db!=null || maxInMemoryEntries<=0 ) { 
+			collection.spill(getDB()); 
+		}
+		return collection;
+	}
+	
+	/**
+	 * Register a new entry. For in-memory entries, all collections are moved 
+	 * to disk if the maximum number of in-memory entries has been exceeded.
+	 * For disk-backed entries, the temporary storage quota is checked.
+	 */
+	private final void entryAdded() {
+		if ( db!=null ) {
+			dbSupplier.checkQuota();
+		} else if ( ++inMemoryEntries>maxInMemoryEntries ) {
+			LOG.debug("Run data exceeds {} entries, moving run data to disk", maxInMemoryEntries);
+			DB db = getDB();
+			collections.forEach(c->c.spill(db));
+		}
+	}
+	
+	private final DB getDB() {
+		if ( db==null ) {
+			db = dbSupplier.get();
+		}
+		return db;
+	}
+	
+	/**
+	 * Interface for collections that can be moved to a disk-backed database
+	 */
+	private static interface Spillable {
+		void spill(DB db);
+	}
+	
+	/**
+	 * {@link List} implementation that delegates to either a heap-based
+	 * or a disk-backed list. Existing entries are copied to the disk-backed 
+	 * list before switching the delegate, so concurrent readers never see 
+	 * an incomplete list.
+	 */
+	private final class SpillableList<T> extends AbstractList<T> implements Spillable {
+		private final String name;
+		private final Serializer<T> serializer;
+		private volatile List<T> delegate = new ArrayList<>();
+		
+		private SpillableList(String name, Serializer<T> serializer) {
+			this.name = name;
+			this.serializer = serializer;
+		}
+		
+		@Override
+		public void spill(DB db) {
+			if ( delegate instanceof ArrayList ) {
+				List<T> spilled = db.indexTreeList(name, serializer).createOrOpen();
+				spilled.addAll(delegate);
+				delegate = spilled;
+			}
+		}
+		
+		@Override
+		public boolean add(T e) {
+			boolean result = delegate.add(e);
+			entryAdded();
+			return result;
+		}
+		
+		@Override
+		public T get(int index) {
+			return delegate.get(index);
+		}
+		
+		@Override
+		public int size() {
+			return delegate.size();
+		}
+		
+		@Override
+		public void clear() {
+			delegate.clear();
+		}
+		
+		@Override
+		public Iterator<T> iterator() {
+			return delegate.iterator();
+		}
+	}
+}
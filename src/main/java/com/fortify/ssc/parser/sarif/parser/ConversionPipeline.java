@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import com.fortify.ssc.parser.sarif.domain.Result;
+import com.fortify.ssc.parser.sarif.domain.RunData;
+
+/**
+ * This class implements the result conversion stage between parsing SARIF 
+ * results and emitting the corresponding vulnerabilities. Results passed to
+ * {@link #accept(RunData, Result)} by the parsing thread are collected into
+ * batches, which are converted into {@link ConvertedVulnerability} instances 
+ * by the configured conversion {@link ExecutorService}. Converted batches are 
+ * passed to the configured downstream {@link Consumer} strictly in input order, 
+ * one batch at a time. At most a fixed number of batches can be pending; 
+ * the parsing thread blocks until earlier batches have been passed downstream 
+ * if this limit is reached.
+ * 
+ * If no conversion {@link ExecutorService} is configured, results are converted 
+ * and passed downstream directly on the parsing thread.
+ * 
+ * As results are converted asynchronously, callers must invoke {@link #finish()}
+ * before the {@link RunData} instance passed to {@link #accept(RunData, Result)}
+ * is discarded. 
+ * 
+ * @author Ruud Senden
+ */
+final class ConversionPipeline implements BiConsumer<RunData, Result> {
+	static final int DEFAULT_BATCH_SIZE = 256;
+	private final int batchSize;
+	private final BiFunction<RunData, Result, ConvertedVulnerability> converter;
+	private final ExecutorService conversionExecutor;
+	private final Consumer<ConvertedVulnerability> downstream;
+	private final Semaphore pendingBatches;
+	private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+	private RunData batchRunData;
+	private List<Result> batch;
+	
+	/**
+	 * Constructor for storing the given result converter (usually
+	 * {@link VulnerabilitiesProducer#convert(RunData, Result)}), 
+	 * conversion {@link ExecutorService} (may be <code>null</code>), 
+	 * batch settings and downstream {@link Consumer}.
+	 * @param converter
+	 * @param conversionExecutor
+	 * @param maxPendingBatches
+	 * @param batchSize
+	 * @param downstream
+	 */
+	ConversionPipeline(BiFunction<RunData, Result, ConvertedVulnerability> converter, ExecutorService conversionExecutor, int maxPendingBatches, int batchSize, Consumer<ConvertedVulnerability> downstream) {
+		this.converter = converter;
+		this.batchSize = batchSize;
+		this.conversionExecutor = conversionExecutor;
+		this.downstream = downstream;
+		this.pendingBatches = new Semaphore(maxPendingBatches);
+	}
+	
+	/**
+	 * Add the given {@link Result} to the current batch, dispatching the
+	 * batch for conversion once it is full.
+	 */
+	@Override
+	public final void accept(RunData runData, Result result) {
+		if ( conversionExecutor==null ) {
+			downstream.accept(converter.apply(runData, result));
+		} else {
+			if ( batch!=null && batchRunData!=runData ) {
+				dispatch();
+			}
+			if ( batch==null ) {
+				batch = new ArrayList<>(batchSize);
+				batchRunData = runData;
+			}
+			batch.add(result);
+			if ( batch.size()>=batchSize ) {
+				dispatch();
+			}
+		}
+	}
+	
+	/**
+	 * Dispatch the current batch for conversion, and wait until all pending
+	 * batches have been passed downstream.
+	 * @throws IOException if conversion or downstream processing failed
+	 */
+	final void finish() throws IOException {
+		if ( batch!=null ) {
+			dispatch();
+		}
+		try {
+			// Unlike join(), get() can be interrupted if the conversion executor has been shut down
+			tail.get();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for SARIF result conversion");
+		} catch ( ExecutionException e ) {
+			Throwable cause = e.getCause();
+			if ( cause instanceof UncheckedIOException ) {
+				throw ((UncheckedIOException)cause).getCause();
+			} else if ( cause instanceof RuntimeException ) {
+				throw (RuntimeException)cause;
+			} else if ( cause instanceof Error ) {
+				throw (Error)cause;
+			}
+			throw new IOException("Error converting SARIF results", cause);
+		}
+	}
+
+	private final void dispatch() {
+		final RunData runData = batchRunData;
+		final List<Result> results = batch;
+		batch = null;
+		batchRunData = null;
+		try {
+			pendingBatches.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for SARIF result conversion"));
+		}
+		CompletableFuture<List<ConvertedVulnerability>> converted = 
+				CompletableFuture.supplyAsync(()->convert(runData, results), conversionExecutor);
+		tail = tail
+				.thenCombine(converted, (previous, vulnerabilities)->emit(vulnerabilities))
+				.whenComplete((v,e)->pendingBatches.release());
+	}
+	
+	private final List<ConvertedVulnerability> convert(RunData runData, List<Result> results) {
+		List<ConvertedVulnerability> result = new ArrayList<>(results.size());
+		for ( Result r : results ) {
+			result.add(converter.apply(runData, r));
+		}
+		return result;
+	}
+	
+	private final Void emit(List<ConvertedVulnerability> vulnerabilities) {
+		vulnerabilities.forEach(downstream);
+		return null;
+	}
+}
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fortify.plugin.api.BasicVulnerabilityBuilder.Priority;
+import com.fortify.ssc.parser.sarif.domain.CodeFlowSummary;
+import com.fortify.ssc.parser.sarif.domain.Result;
+import com.fortify.ssc.parser.sarif.domain.RuleAttributes;
+import com.fortify.ssc.parser.sarif.domain.RunData;
+
+/**
+ * This class describes how results for a single run are converted into 
+ * {@link ConvertedVulnerability} instances. A plan is compiled once per run, 
+ * on first use after all auxiliary run data (in particular the tool name) has 
+ * been parsed; see {@link #forRun(RunData, MappingProfiles)}. Based on the tool 
+ * that produced the run, the plan consists of a fixed list of field extractors, 
+ * so the tool-specific branching and any per-run values are evaluated only once, 
+ * rather than for every result. If a {@link MappingProfile} matches the tool 
+ * name, the plan includes an extractor that applies the profile.
+ * 
+ * Instances of this class are immutable and thread-safe. A single plan is 
+ * shared by all conversion threads, which may convert results of the same 
+ * run concurrently, so field extractors must not keep any mutable state of 
+ * their own; any per-run state must be accessed through {@link RunData}.
+ * 
+ * @author Ruud Senden
+ */
+final class ConversionPlan {
+	private static final Logger LOG = LoggerFactory.getLogger(ConversionPlan.class);
+	private final SourceTool sourceTool;
+	private final MappingProfile mappingProfile;
+	private final BiFunction<RunData, Result, Priority> priorityExtractor;
+	private final FieldExtractor[] extractors;
+	
+	/**
+	 * Tools that require specific conversion logic
+	 */
+	static enum SourceTool {
+		FORTIFY_XML, FORTIFY_FPR, GENERIC;
+		
+		static SourceTool of(String toolName) {
+			if ( "Fortify".equalsIgnoreCase(toolName) ) {
+				return FORTIFY_XML;
+			} else if ( "Micro Focus Fortify Static Code Analyzer".equalsIgnoreCase(toolName) ) {
+				return FORTIFY_FPR;
+			} else {
+				return GENERIC;
+			}
+		}
+	}
+	
+	/**
+	 * Extract one or more fields from the given {@link Result}, and set them on the 
+	 * given {@link ConvertedVulnerability}. Extractors are invoked in order, so 
+	 * extractors may use fields set by previous extractors.
+	 */
+	@FunctionalInterface
+	static interface FieldExtractor {
+		void extract(RunData runData, Result result, ConvertedVulnerability vuln);
+	}
+	
+	private ConversionPlan(SourceTool sourceTool, MappingProfile mappingProfile, BiFunction<RunData, Result, Priority> priorityExtractor, List<FieldExtractor> extractors) {
+		this.sourceTool = sourceTool;
+		this.mappingProfile = mappingProfile;
+		this.priorityExtractor = priorityExtractor;
+		this.extractors = extractors.toArray(new FieldExtractor[extractors.size()]);
+	}
+	
+	/**
+	 * Get the {@link ConversionPlan} for the given run, compiling the plan on first access.
+	 * @param runData
+	 * @param mappingProfiles used to look up the {@link MappingProfile} for the run, may be null
+	 * @return {@link ConversionPlan} for the given run
+	 */
+	static final ConversionPlan forRun(RunData runData, MappingProfiles mappingProfiles) {
+		return runData.getRunAttribute(ConversionPlan.class, rd->compile(rd, mappingProfiles));
+	}
+	
+	/**
+	 * Compile a {@link ConversionPlan} for the given run.
+	 * @param runData
+	 * @param mappingProfiles used to look up the {@link MappingProfile} for the run, may be null
+	 * @return Compiled {@link ConversionPlan}
+	 */
+	static final ConversionPlan compile(RunData runData, MappingProfiles mappingProfiles) {
+		SourceTool sourceTool = SourceTool.of(runData.getToolName());
+		MappingProfile mappingProfile = mappingProfiles==null ? null : mappingProfiles.get(runData.getToolName());
+		String engineType = runData.getEngineType();
+		String toolName = runData.getToolName();
+		List<FieldExtractor> extractors = new ArrayList<>();
+		
+		// Fields used by subsequent extractors
+		extractors.add((rd, r, v)->v.setFileName(r.resolveFullFileName(rd, "Unknown")));
+		extractors.add((rd, r, v)->v.setVulnerabilityAbstract(r.getResultMessage(rd)));
+		extractors.add((rd, r, v)->v.setCategory(getCategory(rd, r, engineType)));
+		extractors.add((rd, r, v)->v.setSubCategory(r.resolveRuleAttributes(rd).getSubCategory()));
+		extractors.add((rd, r, v)->v.setInstanceId(getInstanceId(rd, r, v.getFileName(), v.getVulnerabilityAbstract())));
+		
+		// Set meta-data
+		extractors.add((rd, r, v)->v.setEngineType(engineType));
+		extractors.add((rd, r, v)->v.setKingdom(getKingdom(rd, r)));
+		extractors.add((rd, r, v)->v.setAnalyzer("External"));
+		
+		// Set mandatory values to JavaDoc-recommended values
+		extractors.add((rd, r, v)->{
+			RuleAttributes ruleAttributes = r.resolveRuleAttributes(rd);
+			v.setAccuracy(ruleAttributes.getAccuracy());
+			v.setProbability(ruleAttributes.getProbability());
+			v.setImpact(ruleAttributes.getImpact());
+		});
+		extractors.add((rd, r, v)->v.setSeverity(getFloatProperty(r.getProperties(), "InstanceSeverity", 2.5f)));
+		extractors.add((rd, r, v)->v.setConfidence(getFloatProperty(r.getProperties(), "Confidence", 2.5f)));
+		extractors.add((rd, r, v)->v.setLikelihood(2.5f));
+		
+		// Set standard vulnerability fields based on input
+		switch ( sourceTool ) {
+		case FORTIFY_XML:
+			extractors.add((rd, r, v)->v.setRuleGuid(getStringProperty(r.getProperties(), "fortifyRuleId", null)));
+			break;
+		case FORTIFY_FPR:
+			extractors.add((rd, r, v)->v.setRuleGuid(r.resolveRuleGuid(rd)));
+			break;
+		default:
+			// Rule guid is not available for other tools
+			break;
+		}
+		
+		// Source and sink are taken from the first thread flow
+		extractors.add(ConversionPlan::setCodeFlowFields);
+		
+		// Tool-specific mappings override any of the fields set above
+		if ( mappingProfile!=null ) {
+			extractors.add(mappingProfile.createExtractor());
+		}
+		
+		// Not (yet) supported: className, functionName, lineNumber, mappedCategory,
+		// minVirtualCallConfidence, packageName, remediationConstant, sinkContext, 
+		// sourceContext, taintFlag, vulnerabilityRecommendation
+		
+		extractors.add((rd, r, v)->v.setCategoryAndSubCategory(getCategoryAndSubCategory(v.getCategory(), v.getSubCategory())));
+		extractors.add((rd, r, v)->v.setToolName(toolName));
+		
+		BiFunction<RunData, Result, Priority> priorityExtractor = sourceTool==SourceTool.FORTIFY_XML 
+				? ConversionPlan::getPriorityFromProperty 
+				: ConversionPlan::getPriorityFromLevel;
+		return new ConversionPlan(sourceTool, mappingProfile, priorityExtractor, extractors);
+	}
+	
+	/**
+	 * Convert the given {@link Result} into a {@link ConvertedVulnerability}.
+	 * @param runData
+	 * @param result
+	 * @return {@link ConvertedVulnerability} instance, or <code>null</code> if 
+	 *         the result is not interesting from a Fortify perspective
+	 */
+	final ConvertedVulnerability convert(RunData runData, Result result) {
+		Priority priority = priorityExtractor.apply(runData, result);
+		if ( priority == null ) {
+			return null;
+		}
+		ConvertedVulnerability vuln = new ConvertedVulnerability();
+		vuln.setPriority(priority);
+		for ( FieldExtractor extractor : extractors ) {
+			extractor.extract(runData, result, vuln);
+		}
+		return vuln;
+	}
+	
+	/**
+	 * @return {@link SourceTool} for which this plan was compiled
+	 */
+	final SourceTool getSourceTool() {
+		return sourceTool;
+	}
+	
+	/**
+	 * @return {@link MappingProfile} applied by this plan, or <code>null</code> if none
+	 */
+	final MappingProfile getMappingProfile() {
+		return mappingProfile;
+	}
+	
+	/**
+	 * Calculate the instance id for the given result; this is the SHA-256 digest 
+	 * of the result guid, correlation guid, sorted fingerprints, or generated id 
+	 * string, whichever is available first. The given file name and vulnerability 
+	 * abstract are only used for generating an id string.
+	 */
+	private static final String getInstanceId(RunData runData, Result result, String fileName, String vulnerabilityAbstract) {
+		InstanceIdDigest digest = InstanceIdDigest.start();
+		if ( StringUtils.isNotBlank(result.getGuid()) ) {
+			digest.append(result.getGuid());
+		} else if ( StringUtils.isNotBlank(result.getCorrelationGuid()) ) {
+			digest.append(result.getCorrelationGuid());
+		} else if ( result.getFingerprints()!=null && result.getFingerprints().size()>0 ) {
+			digest.appendSorted(result.getFingerprints());
+		} else {
+			appendGeneratedInstanceIdString(digest, runData, result, fileName, vulnerabilityAbstract);
+		}
+		return digest.toHex();
+	}
+	
+	// As described at https://docs.oasis-open.org/sarif/sarif/v2.1.0/os/sarif-v2.1.0-os.html#_Toc34317932
+	// we calculate a unique id string based on tool name, full file location,
+	// rule id and partial finger prints if available. To increase chances
+	// of generating a unique id, we also include the result message.
+	// However, this could potentially still result in duplicate id strings. 
+	// Possibly we could add information from other properties like region, 
+	// logical location or code flows, but these may either not be available, or 
+	// still result in duplicate uuid strings.
+	// Components are separated by '|'; missing values are represented as "null".
+	private static final void appendGeneratedInstanceIdString(InstanceIdDigest digest, RunData runData, Result result, String fileName, String vulnerabilityAbstract) {
+		digest.append(runData.getToolName()).append('|')
+			.append(fileName).append('|')
+			.append(result.resolveRuleId(runData)).append('|');
+		if ( result.getPartialFingerprints()!=null ) {
+			digest.appendSorted(result.getPartialFingerprints());
+		}
+		digest.append('|').append(vulnerabilityAbstract);
+	}
+	
+	private static final void setCodeFlowFields(RunData runData, Result result, ConvertedVulnerability vuln) {
+		CodeFlowSummary codeFlowSummary = result.getCodeFlowSummary();
+		if ( codeFlowSummary!=null ) {
+			// Source and sink are left unset if they reference an unavailable run-level thread flow location
+			CodeFlowSummary.Step source = codeFlowSummary.getSource().resolve(runData);
+			if ( source!=null ) {
+				vuln.setSource(source.getFunction());
+				vuln.setSourceFile(source.getFullFileName(runData));
+				vuln.setSourceLine(source.getStartLine());
+			}
+			CodeFlowSummary.Step sink = codeFlowSummary.getSink().resolve(runData);
+			if ( sink!=null ) {
+				vuln.setSink(sink.getFunction());
+			}
+			vuln.setDataFlow(codeFlowSummary.getTraceSummary(runData));
+		}
+	}
+	
+	private static final Priority getPriorityFromProperty(RunData runData, Result result) {
+		String priorityString = getStringProperty(result.getProperties(), "priority", null);
+		return StringUtils.isNotBlank(priorityString) 
+				? Priority.valueOf(priorityString)
+				: getPriorityFromLevel(runData, result);
+	}
+	
+	private static final Priority getPriorityFromLevel(RunData runData, Result result) {
+		return result.resolveLevel(runData).getFortifyPriority();
+	}
+	
+	private static final String getKingdom(RunData runData, Result result) {
+		String kingdom = getStringProperty(result.getProperties(), "kingdom", null);
+		if ( StringUtils.isBlank(kingdom) ) {
+			kingdom = result.resolveRuleAttributes(runData).getKingdom();
+		}
+		return kingdom;
+	}
+	
+	// Rule-based category (rule name or Type property) is computed once per rule by RuleAttributes
+	private static final String getCategory(RunData runData, Result result, String engineType) {
+		String category = result.resolveRuleAttributes(runData).getCategory();
+		if ( StringUtils.isBlank(category) ) {
+			category = result.resolveRuleId(runData);
+		}
+		if ( StringUtils.isBlank(category) ) {
+			category = engineType;
+		}
+		return category;
+	}
+	
+	private static final String getCategoryAndSubCategory(String category, String subCategory) {
+		return StringUtils.isBlank(subCategory) ? category : String.join(": ", category, subCategory);
+	}
+	
+	private static final float getFloatProperty(Map<String, Object> properties, String key, float defaultValue) {
+		String valueString = getStringProperty(properties, key, null);
+		if ( StringUtils.isNotBlank(valueString) ) {
+			try {
+				return Float.parseFloat(valueString);
+			} catch (NumberFormatException nfe) {
+				LOG.warn("Error converting {} string '{}' to float: {}", key, valueString, nfe.getMessage());
+			}
+		}
+		return defaultValue;
+	}
+	
+	// Note that result properties are only available if listed in Result#MAPPED_PROPERTY_NAMES.
+	// Properties are probed only once; properties with a null value are not expected.
+	private static final String getStringProperty(Map<String, Object> properties, String key, String defaultValue) {
+		Object value = properties==null ? null : properties.get(key);
+		return value==null ? defaultValue : value.toString();
+	}
+}
@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.io.Serializable;
+
+import com.fortify.plugin.api.BasicVulnerabilityBuilder.Priority;
+import com.fortify.plugin.api.StaticVulnerabilityBuilder;
+import com.fortify.plugin.api.VulnerabilityHandler;
+import com.fortify.ssc.parser.sarif.CustomVulnAttribute;
+import com.fortify.util.mapdb.CustomSerializerElsa;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * This class holds the set of Fortify vulnerability fields computed by 
+ * {@link VulnerabilitiesProducer#convert(com.fortify.ssc.parser.sarif.domain.RunData, com.fortify.ssc.parser.sarif.domain.Result)}.
+ * Separating the conversion from applying these fields to a 
+ * {@link StaticVulnerabilityBuilder} allows results to be converted on
+ * any thread, while vulnerabilities are still submitted to the 
+ * {@link VulnerabilityHandler} by a single writer, in a well-defined order.
+ * 
+ * @author Ruud Senden
+ */
+@Getter @Setter(AccessLevel.PACKAGE)
+public final class ConvertedVulnerability implements Serializable {
+	private static final long serialVersionUID = 1L;
+	public static final CustomSerializerElsa<ConvertedVulnerability> SERIALIZER = new CustomSerializerElsa<>(ConvertedVulnerability.class);
+	private String instanceId;
+	private String engineType;
+	private String kingdom;
+	private String analyzer;
+	private String category;
+	private String subCategory;
+	private float accuracy;
+	private float severity;
+	private float confidence;
+	private float probability;
+	private float impact;
+	private float likelihood;
+	private String fileName;
+	private Priority priority;
+	private String ruleGuid;
+	private String vulnerabilityAbstract;
+	private String source;
+	private String sourceFile;
+	private Integer sourceLine;
+	private String sink;
+	private String categoryAndSubCategory;
+	private String toolName;
+	private String dataFlow;
+	
+	/**
+	 * Submit this vulnerability to the given {@link VulnerabilityHandler}, 
+	 * passing the canonical instances provided by the given {@link StringDeduplicator}
+	 * for string values that are likely shared between many vulnerabilities.
+	 * @param vulnerabilityHandler
+	 * @param deduplicator
+	 */
+	@SuppressWarnings("deprecation") // SSC JavaDoc states that severity is mandatory, but method is deprecated
+	final void submit(VulnerabilityHandler vulnerabilityHandler, StringDeduplicator deduplicator) {
+		StaticVulnerabilityBuilder vb = vulnerabilityHandler.startStaticVulnerability(instanceId);
+		
+		// Set meta-data
+		vb.setEngineType(deduplicator.dedup(engineType));
+		vb.setKingdom(deduplicator.dedup(kingdom));
+		vb.setAnalyzer(analyzer);
+		vb.setCategory(deduplicator.dedup(category));
+		vb.setSubCategory(deduplicator.dedup(subCategory));
+		
+		// Set mandatory values to JavaDoc-recommended values
+		vb.setAccuracy(accuracy);
+		vb.setSeverity(severity);
+		vb.setConfidence(confidence);
+		vb.setProbability(probability);
+		vb.setImpact(impact);
+		vb.setLikelihood(likelihood);
+		
+		// Set standard vulnerability fields based on input
+		vb.setFileName(deduplicator.dedup(fileName));
+		vb.setPriority(priority);
+		vb.setRuleGuid(deduplicator.dedup(ruleGuid));
+		vb.setVulnerabilityAbstract(vulnerabilityAbstract);
+		
+		// Code flow fields are only available for some results, so don't set empty values
+		if ( source!=null ) { vb.setSource(deduplicator.dedup(source)); }
+		if ( sourceFile!=null ) { vb.setSourceFile(deduplicator.dedup(sourceFile)); }
+		if ( sourceLine!=null ) { vb.setSourceLine(sourceLine); }
+		if ( sink!=null ) { vb.setSink(deduplicator.dedup(sink)); }
+		
+		vb.setStringCustomAttributeValue(CustomVulnAttribute.categoryAndSubCategory, deduplicator.dedup(categoryAndSubCategory));
+		vb.setStringCustomAttributeValue(CustomVulnAttribute.toolName, deduplicator.dedup(toolName));
+		if ( dataFlow!=null ) { vb.setStringCustomAttributeValue(CustomVulnAttribute.dataFlow, dataFlow); }
+		
+		vb.completeVulnerability();
+	}
+}
@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import com.fortify.plugin.api.StaticVulnerabilityBuilder;
+import com.fortify.plugin.api.VulnerabilityHandler;
+import com.fortify.util.mapdb.TempDBSupplier;
+import com.fortify.util.ssc.parser.HandleDuplicateIdVulnerabilityHandler;
+
+/**
+ * This {@link VulnerabilityHandler} handles duplicate instance id's exactly like
+ * {@link HandleDuplicateIdVulnerabilityHandler}, but without keeping every 
+ * instance id in memory. Digest-based id's as produced by {@link InstanceIdDigest} 
+ * are tracked in a compact {@link InstanceIdSet}, and passed to the target handler
+ * directly as long as they are unique. All other id's, and any id for which a
+ * duplicate is found, are handled by a {@link HandleDuplicateIdVulnerabilityHandler}
+ * instance. When a duplicate digest-based id is found for the first time, that 
+ * handler is first primed with the original id, without passing that id to the 
+ * target handler again, such that it generates the same unique id's as if it 
+ * had seen all id's. Digest-based id's that have been primed are tracked in a 
+ * second {@link InstanceIdSet}, so scans with many duplicates don't require 
+ * keeping all of these id's in memory as strings either.
+ * 
+ * This relies on the unique id's generated by {@link HandleDuplicateIdVulnerabilityHandler}
+ * never being digest-based id's themselves (as it appends a suffix to the 
+ * original id), so id's that are not passed to that handler can never 
+ * conflict with any of the id's that it generates.
+ * 
+ * @author Ruud Senden
+ */
+final class DuplicateIdVulnerabilityHandler implements VulnerabilityHandler, AutoCloseable {
+	private final VulnerabilityHandler target;
+	private final InstanceIdSet instanceIds;
+	private final InstanceIdSet primedInstanceIds;
+	private final VulnerabilityHandler duplicateIdHandler;
+	private boolean priming = false;
+	
+	/**
+	 * Constructor for storing the target {@link VulnerabilityHandler}, and the 
+	 * {@link TempDBSupplier} (if not null) used for storing instance id data
+	 * on disk if necessary.
+	 * @param target
+	 * @param dbSupplier
+	 */
+	DuplicateIdVulnerabilityHandler(VulnerabilityHandler target, TempDBSupplier dbSupplier) {
+		this(target, new InstanceIdSet(dbSupplier), new InstanceIdSet(dbSupplier));
+	}
+	
+	DuplicateIdVulnerabilityHandler(VulnerabilityHandler target, InstanceIdSet instanceIds, InstanceIdSet primedInstanceIds) {
+		this.target = target;
+		this.instanceIds = instanceIds;
+		this.primedInstanceIds = primedInstanceIds;
+		this.duplicateIdHandler = new HandleDuplicateIdVulnerabilityHandler(this::startPrimedStaticVulnerability);
+	}
+	
+	@Override
+	public StaticVulnerabilityBuilder startStaticVulnerability(String instanceId) {
+		if ( InstanceIdSet.isSupported(instanceId) ) {
+			if ( instanceIds.add(instanceId) ) {
+				return target.startStaticVulnerability(instanceId);
+			} else if ( primedInstanceIds.add(instanceId) ) {
+				prime(instanceId);
+			}
+		}
+		return duplicateIdHandler.startStaticVulnerability(instanceId);
+	}
+	
+	private void prime(String instanceId) {
+		priming = true;
+		try {
+			duplicateIdHandler.startStaticVulnerability(instanceId);
+		} finally {
+			priming = false;
+		}
+	}
+	
+	private StaticVulnerabilityBuilder startPrimedStaticVulnerability(String instanceId) {
+		return priming ? null : target.startStaticVulnerability(instanceId);
+	}
+	
+	/**
+	 * Release all resources held by this handler.
+	 */
+	@Override
+	public void close() {
+		instanceIds.close();
+		primedInstanceIds.close();
+	}
+	
+	@Override
+	public String toString() {
+		return instanceIds+"; "+primedInstanceIds.size()+" duplicated instance id's";
+	}
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * This class calculates SHA-256 based instance id's. Id components are 
+ * encoded as UTF-8 directly into a reusable byte buffer that is fed to a 
+ * reusable {@link MessageDigest}, and the digest is hex-encoded into a 
+ * reusable character buffer. As such, calculating an instance id doesn't 
+ * require building the full id string and its UTF-8 representation, 
+ * or creating sorted copies of fingerprint maps.
+ * 
+ * The calculated id's are identical to calling 
+ * {@link org.apache.commons.codec.digest.DigestUtils#sha256Hex(String)} on
+ * the concatenation of all appended components, where <code>null</code> 
+ * values are represented as <code>"null"</code>, maps are represented 
+ * like {@link java.util.TreeMap#toString()}, and unpaired surrogates are 
+ * encoded as <code>'?'</code> like {@link String#getBytes(java.nio.charset.Charset)}.
+ * 
+ * Instances are obtained through {@link #start()}, which returns an instance
+ * that is confined to the current thread.
+ * 
+ * @author Ruud Senden
+ */
+final class InstanceIdDigest {
+	private static final ThreadLocal<InstanceIdDigest> INSTANCES = ThreadLocal.withInitial(InstanceIdDigest::new);
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final Comparator<Map.Entry<String, String>> ENTRY_COMPARATOR = Map.Entry.comparingByKey();
+	private static final int MAX_RETAINED_ENTRIES = 1024;
+	private final MessageDigest digest;
+	private final byte[] buffer = new byte[4096];
+	private final char[] hex = new char[64];
+	private int position = 0;
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Map.Entry<String, String>[] entries = new Map.Entry[16];
+	
+	private InstanceIdDigest() {
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+	}
+	
+	/**
+	 * @return Reset {@link InstanceIdDigest} instance for the current thread
+	 */
+	static final InstanceIdDigest start() {
+		InstanceIdDigest instance = INSTANCES.get();
+		instance.digest.reset();
+		instance.position = 0;
+		return instance;
+	}
+	
+	/**
+	 * Append the given value, or <code>"null"</code> if the given value is <code>null</code>.
+	 * @param value
+	 * @return Self for chaining
+	 */
+	final InstanceIdDigest append(String value) {
+		String s = value==null ? "null" : value;
+		int length = s.length();
+		for ( int i = 0 ; i < length ; i++ ) {
+			char c = s.charAt(i);
+			if ( position>buffer.length-4 ) { flush(); }
+			if ( c<0x80 ) {
+				buffer[position++] = (byte)c;
+			} else if ( c<0x800 ) {
+				buffer[position++] = (byte)(0xC0 | (c>>6));
+				buffer[position++] = (byte)(0x80 | (c & 0x3F));
+			} else if ( !Character.isSurrogate(c) ) {
+				buffer[position++] = (byte)(0xE0 | (c>>12));
+				buffer[position++] = (byte)(0x80 | ((c>>6) & 0x3F));
+				buffer[position++] = (byte)(0x80 | (c & 0x3F));
+			} else if ( Character.isHighSurrogate(c) && i+1<length && Character.isLowSurrogate(s.charAt(i+1)) ) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buffer[position++] = (byte)(0xF0 | (cp>>18));
+				buffer[position++] = (byte)(0x80 | ((cp>>12) & 0x3F));
+				buffer[position++] = (byte)(0x80 | ((cp>>6) & 0x3F));
+				buffer[position++] = (byte)(0x80 | (cp & 0x3F));
+			} else {
+				buffer[position++] = '?';
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Append the given ASCII character.
+	 * @param c
+	 * @return Self for chaining
+	 */
+	final InstanceIdDigest append(char c) {
+		if ( position==buffer.length ) { flush(); }
+		buffer[position++] = (byte)c;
+		return this;
+	}
+	
+	/**
+	 * Append the entries of the given map sorted by key, formatted like 
+	 * {@link java.util.TreeMap#toString()}.
+	 * @param map
+	 * @return Self for chaining
+	 */
+	final InstanceIdDigest appendSorted(Map<String, String> map) {
+		int size = map.size();
+		if ( entries.length<size ) { entries = Arrays.copyOf(entries, Math.max(size, entries.length*2)); }
+		int count = 0;
+		for ( Map.Entry<String, String> entry : map.entrySet() ) {
+			entries[count++] = entry;
+		}
+		Arrays.sort(entries, 0, count, ENTRY_COMPARATOR);
+		append('{');
+		for ( int i = 0 ; i < count ; i++ ) {
+			if ( i>0 ) { append(',').append(' '); }
+			append(entries[i].getKey()).append('=').append(entries[i].getValue());
+		}
+		append('}');
+		// Don't retain references to map entries, or an unusually large array
+		Arrays.fill(entries, 0, count, null);
+		if ( entries.length>MAX_RETAINED_ENTRIES ) { entries = Arrays.copyOf(entries, 16); }
+		return this;
+	}
+	
+	/**
+	 * @return Hex-encoded SHA-256 digest of all appended values
+	 */
+	final String toHex() {
+		flush();
+		byte[] bytes = digest.digest();
+		for ( int i = 0 ; i < bytes.length ; i++ ) {
+			hex[i*2] = HEX_DIGITS[(bytes[i]>>4) & 0x0F];
+			hex[i*2+1] = HEX_DIGITS[bytes[i] & 0x0F];
+		}
+		return new String(hex);
+	}
+	
+	private final void flush() {
+		digest.update(buffer, 0, position);
+		position = 0;
+	}
+}
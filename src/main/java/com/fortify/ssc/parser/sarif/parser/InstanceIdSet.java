@@ -0,0 +1,290 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+
+import com.fortify.util.mapdb.TempDBSupplier;
+
+/**
+ * This class keeps track of the instance id's that have been submitted during 
+ * a single parse, to detect duplicate id's. It only supports id's in the form
+ * produced by {@link InstanceIdDigest}, i.e. 64 lowercase hex characters 
+ * representing a 256-bit digest; see {@link #isSupported(String)}. 
+ * 
+ * Instead of storing id strings, each id is split into a 128-bit prefix and 
+ * a 128-bit suffix. Prefixes are stored in a primitive open-addressing hash 
+ * table (linear probing, maximum load factor 0.75), together with the ordinal 
+ * of the id. Suffixes are stored by ordinal; up to a configurable number of 
+ * suffixes are kept in memory, any further suffixes are stored in a temporary 
+ * disk-backed list. Checking whether an id has been seen before involves up 
+ * to three tiers:
+ * <ol>
+ *   <li>A Bloom filter over the prefixes, sized relative to the hash table;
+ *       most new id's are identified by this filter without probing the table.</li>
+ *   <li>The hash table; if no entry with the same prefix exists, the id is new.</li>
+ *   <li>Comparing the suffix of each entry with the same prefix; this only happens 
+ *       for actual duplicates and (extremely unlikely) prefix collisions, 
+ *       and may involve reading suffixes from disk.</li>
+ * </ol>
+ * 
+ * This class is not thread-safe; it is meant to be used by the single 
+ * thread that submits vulnerabilities.
+ * 
+ * @author Ruud Senden
+ */
+final class InstanceIdSet implements AutoCloseable {
+	private static final int ID_LENGTH = 64;
+	private static final int MIN_CAPACITY = 1024;
+	private static final int MAX_CAPACITY = 1<<29;
+	private static final int BLOOM_BITS_PER_SLOT = 8;
+	private static final int BLOOM_PROBES = 4;
+	private static final int DEFAULT_MAX_IN_MEMORY_SUFFIXES = 1000000;
+	private final TempDBSupplier dbSupplier;
+	private final int maxInMemorySuffixes;
+	private long[] prefixes;
+	private int[] ordinals;
+	private long[] bloom;
+	private int mask;
+	private long[] suffixes = new long[2*MIN_CAPACITY];
+	private DB db;
+	private List<byte[]> spilledSuffixes;
+	private int size = 0;
+	private long bloomNegatives = 0;
+	private long bloomFalsePositives = 0;
+	private long suffixChecks = 0;
+	private long duplicates = 0;
+	
+	/**
+	 * Create a new, empty set, using the given {@link TempDBSupplier} (if not null)
+	 * to store suffixes once the default maximum number of in-memory suffixes is 
+	 * exceeded.
+	 * @param dbSupplier
+	 */
+	InstanceIdSet(TempDBSupplier dbSupplier) {
+		this(dbSupplier, DEFAULT_MAX_IN_MEMORY_SUFFIXES);
+	}
+	
+	/**
+	 * Create a new, empty set, using the given {@link TempDBSupplier} (if not null)
+	 * to store suffixes once the given maximum number of in-memory suffixes is 
+	 * exceeded.
+	 * @param dbSupplier
+	 * @param maxInMemorySuffixes
+	 */
+	InstanceIdSet(TempDBSupplier dbSupplier, int maxInMemorySuffixes) {
+		this.dbSupplier = dbSupplier;
+		this.maxInMemorySuffixes = dbSupplier==null ? Integer.MAX_VALUE : maxInMemorySuffixes;
+		allocate(MIN_CAPACITY);
+	}
+	
+	/**
+	 * @param id
+	 * @return true if the given id can be added to this set, false otherwise
+	 */
+	static final boolean isSupported(String id) {
+		if ( id==null || id.length()!=ID_LENGTH ) { return false; }
+		for ( int i = 0 ; i < ID_LENGTH ; i++ ) {
+			char c = id.charAt(i);
+			if ( (c<'0' || c>'9') && (c<'a' || c>'f') ) { return false; }
+		}
+		return true;
+	}
+	
+	/**
+	 * Add the given id to this set.
+	 * @param id for which {@link #isSupported(String)} returns true
+	 * @return true if this set didn't contain the given id yet, false otherwise
+	 */
+	final boolean add(String id) {
+		long prefixHi = parseHex(id, 0);
+		long prefixLo = parseHex(id, 16);
+		long suffixHi = parseHex(id, 32);
+		long suffixLo = parseHex(id, 48);
+		if ( !mightContain(prefixHi, prefixLo) ) {
+			bloomNegatives++;
+		} else {
+			boolean prefixFound = false;
+			for ( int slot = (int)prefixHi & mask ; ordinals[slot]!=0 ; slot = (slot+1) & mask ) {
+				if ( prefixes[2*slot]==prefixHi && prefixes[2*slot+1]==prefixLo ) {
+					prefixFound = true;
+					suffixChecks++;
+					if ( suffixEquals(ordinals[slot]-1, suffixHi, suffixLo) ) {
+						duplicates++;
+						return false;
+					}
+				}
+			}
+			if ( !prefixFound ) { bloomFalsePositives++; }
+		}
+		insert(prefixHi, prefixLo, suffixHi, suffixLo);
+		return true;
+	}
+	
+	/**
+	 * @return Number of distinct id's in this set
+	 */
+	final int size() {
+		return size;
+	}
+	
+	/**
+	 * @return Approximate number of heap bytes used by this set
+	 */
+	final long getMemoryUsage() {
+		return 8L*prefixes.length + 4L*ordinals.length + 8L*bloom.length + 8L*suffixes.length;
+	}
+	
+	/**
+	 * Release all memory and any temporary disk-backed storage held by this set.
+	 */
+	@Override
+	public final void close() {
+		if ( db!=null ) {
+			dbSupplier.release(db);
+			db = null;
+			spilledSuffixes = null;
+		}
+		size = 0;
+		allocate(MIN_CAPACITY);
+		suffixes = new long[2*MIN_CAPACITY];
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%d distinct instance id's, %d duplicates, %d bytes in memory, %d suffixes on disk; "
+				+"Bloom filter negatives: %d, false positives: %d, suffix checks: %d", 
+				size, duplicates, getMemoryUsage(), spilledSuffixes==null ? 0 : spilledSuffixes.size(),
+				bloomNegatives, bloomFalsePositives, suffixChecks);
+	}
+	
+	private final void insert(long prefixHi, long prefixLo, long suffixHi, long suffixLo) {
+		if ( (size+1) > (mask+1)/4*3 ) {
+			resize();
+		}
+		int ordinal = size++;
+		addSuffix(ordinal, suffixHi, suffixLo);
+		put(ordinal, prefixHi, prefixLo);
+	}
+	
+	private final void put(int ordinal, long prefixHi, long prefixLo) {
+		int slot = (int)prefixHi & mask;
+		while ( ordinals[slot]!=0 ) { slot = (slot+1) & mask; }
+		prefixes[2*slot] = prefixHi;
+		prefixes[2*slot+1] = prefixLo;
+		ordinals[slot] = ordinal+1;
+		for ( int i = 0 ; i < BLOOM_PROBES ; i++ ) {
+			long bit = bloomBit(prefixHi, prefixLo, i);
+			bloom[(int)(bit>>>6)] |= 1L<<bit;
+		}
+	}
+	
+	private final boolean mightContain(long prefixHi, long prefixLo) {
+		for ( int i = 0 ; i < BLOOM_PROBES ; i++ ) {
+			long bit = bloomBit(prefixHi, prefixLo, i);
+			if ( (bloom[(int)(bit>>>6)] & (1L<<bit))==0 ) { return false; }
+		}
+		return true;
+	}
+	
+	// Digest bits are uniformly distributed, so we can derive Bloom filter bits 
+	// directly from the prefix using double hashing. The table slot is based on 
+	// the lower bits of prefixHi, so we use different bits here.
+	private final long bloomBit(long prefixHi, long prefixLo, int probe) {
+		return (prefixLo + probe*Long.rotateLeft(prefixHi, 32)) & ((long)bloom.length*64-1);
+	}
+	
+	private final void resize() {
+		int capacity = (mask+1)*2;
+		if ( capacity>MAX_CAPACITY ) {
+			throw new IllegalStateException("Too many distinct instance id's");
+		}
+		long[] oldPrefixes = this.prefixes;
+		int[] oldOrdinals = this.ordinals;
+		allocate(capacity);
+		for ( int slot = 0 ; slot < oldOrdinals.length ; slot++ ) {
+			if ( oldOrdinals[slot]!=0 ) {
+				put(oldOrdinals[slot]-1, oldPrefixes[2*slot], oldPrefixes[2*slot+1]);
+			}
+		}
+	}
+	
+	private final void allocate(int capacity) {
+		this.prefixes = new long[2*capacity];
+		this.ordinals = new int[capacity];
+		this.bloom = new long[capacity*BLOOM_BITS_PER_SLOT/64];
+		this.mask = capacity-1;
+	}
+	
+	private final void addSuffix(int ordinal, long suffixHi, long suffixLo) {
+		if ( ordinal<maxInMemorySuffixes ) {
+			if ( 2*ordinal+1>=suffixes.length ) {
+				suffixes = Arrays.copyOf(suffixes, (int)Math.min(suffixes.length*2L, 2L*maxInMemorySuffixes));
+			}
+			suffixes[2*ordinal] = suffixHi;
+			suffixes[2*ordinal+1] = suffixLo;
+		} else {
+			getSpilledSuffixes().add(toBytes(suffixHi, suffixLo));
+			dbSupplier.checkQuota();
+		}
+	}
+	
+	private final boolean suffixEquals(int ordinal, long suffixHi, long suffixLo) {
+		if ( ordinal<maxInMemorySuffixes ) {
+			return suffixes[2*ordinal]==suffixHi && suffixes[2*ordinal+1]==suffixLo;
+		} else {
+			return Arrays.equals(spilledSuffixes.get(ordinal-maxInMemorySuffixes), toBytes(suffixHi, suffixLo));
+		}
+	}
+	
+	private final List<byte[]> getSpilledSuffixes() {
+		if ( spilledSuffixes==null ) {
+			db = dbSupplier.get();
+			spilledSuffixes = db.indexTreeList("instanceIdSuffixes", Serializer.BYTE_ARRAY).createOrOpen();
+		}
+		return spilledSuffixes;
+	}
+	
+	private static final byte[] toBytes(long hi, long lo) {
+		byte[] result = new byte[16];
+		for ( int i = 0 ; i < 8 ; i++ ) {
+			result[i] = (byte)(hi >>> (56-8*i));
+			result[i+8] = (byte)(lo >>> (56-8*i));
+		}
+		return result;
+	}
+	
+	private static final long parseHex(String id, int start) {
+		long result = 0;
+		for ( int i = start ; i < start+16 ; i++ ) {
+			result = (result<<4) | Character.digit(id.charAt(i), 16);
+		}
+		return result;
+	}
+}
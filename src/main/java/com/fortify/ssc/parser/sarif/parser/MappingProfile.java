@@ -0,0 +1,400 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fortify.plugin.api.BasicVulnerabilityBuilder.Priority;
+import com.fortify.ssc.parser.sarif.domain.Level;
+import com.fortify.ssc.parser.sarif.domain.ReportingDescriptor;
+import com.fortify.ssc.parser.sarif.domain.Result;
+import com.fortify.ssc.parser.sarif.domain.RuleAttributes;
+import com.fortify.ssc.parser.sarif.domain.RunData;
+
+import lombok.Getter;
+
+/**
+ * This class represents a compiled mapping profile, describing how tool-specific 
+ * rule properties and levels are mapped to Fortify vulnerability fields for runs 
+ * produced by a particular tool. Profiles are defined in JSON format (see 
+ * {@link Definition}), and loaded by {@link MappingProfiles}. Each field mapping 
+ * takes its value from one of the following sources:
+ * <ul>
+ *   <li><code>property</code>: Rule property, optionally nested using '/' as separator;
+ *       for array values, the first element that produces a value is used</li>
+ *   <li><code>level</code>: Result level, taking into account the rule default level</li>
+ *   <li><code>value</code>: Constant value</li>
+ * </ul>
+ * Property and level values are then optionally transformed, in this order: 
+ * <code>pattern</code> (regular expression that must be found in the value; the 
+ * value is replaced by the given <code>format</code> with <code>$n</code> group 
+ * references, or by the first group if no format is given), <code>values</code> 
+ * (case-insensitive lookup table), <code>ranges</code> (the value for the highest 
+ * minimum not exceeding the numeric value), and <code>scale</code> (numeric multiplier).
+ * Values that cannot be mapped are ignored, leaving the field value produced by the 
+ * regular conversion logic in place.
+ * 
+ * Compiling a profile pre-computes everything that doesn't depend on actual 
+ * results; level mappings are pre-computed for every {@link Level}, and 
+ * property mappings are evaluated once per rule for each run. As such, 
+ * applying a profile only involves a few array lookups per result.
+ * 
+ * Instances of this class are immutable and thread-safe.
+ * 
+ * @author Ruud Senden
+ */
+final class MappingProfile {
+	private static final int MAX_CACHED_RULES = 100000;
+	@Getter private final String name;
+	private final Pattern toolNamePattern;
+	private final List<PropertyMapping> propertyMappings = new ArrayList<>();
+	private final List<LevelMapping> levelMappings = new ArrayList<>();
+	private final Object[] constants = new Object[MappedField.values().length];
+	
+	/**
+	 * This data class holds a mapping profile as defined in JSON format.
+	 */
+	@Getter
+	static final class Definition {
+		/** Profile name, used for logging */
+		@JsonProperty private String name;
+		/** Regular expression matched case-insensitively against the full <code>tool.driver.name</code> */
+		@JsonProperty private String toolNamePattern;
+		/** Field mappings by {@link MappedField} name */
+		@JsonProperty private Map<String, FieldDefinition> fields = Collections.emptyMap();
+	}
+	
+	/**
+	 * This data class holds a single field mapping as defined in JSON format.
+	 */
+	@Getter
+	static final class FieldDefinition {
+		@JsonProperty private String property;
+		@JsonProperty private boolean level;
+		@JsonProperty private Object value;
+		@JsonProperty private String pattern;
+		@JsonProperty private String format;
+		@JsonProperty private Map<String, Object> values;
+		@JsonProperty private Map<String, Object> ranges;
+		@JsonProperty private Float scale;
+	}
+	
+	/**
+	 * Fortify vulnerability fields that can be mapped by a profile, 
+	 * together with the type of value for each field.
+	 */
+	static enum MappedField {
+		kingdom(ValueType.STRING, ConvertedVulnerability::setKingdom),
+		category(ValueType.STRING, ConvertedVulnerability::setCategory),
+		subCategory(ValueType.STRING, ConvertedVulnerability::setSubCategory),
+		priority(ValueType.PRIORITY, ConvertedVulnerability::setPriority),
+		severity(ValueType.FLOAT, ConvertedVulnerability::setSeverity),
+		confidence(ValueType.FLOAT, ConvertedVulnerability::setConfidence),
+		accuracy(ValueType.FLOAT, ConvertedVulnerability::setAccuracy),
+		probability(ValueType.FLOAT, ConvertedVulnerability::setProbability),
+		impact(ValueType.FLOAT, ConvertedVulnerability::setImpact),
+		likelihood(ValueType.FLOAT, ConvertedVulnerability::setLikelihood);
+		
+		private final ValueType type;
+		private final BiConsumer<ConvertedVulnerability, Object> setter;
+		
+		@SuppressWarnings("unchecked")
+		private <T> MappedField(ValueType type, BiConsumer<ConvertedVulnerability, T> setter) {
+			this.type = type;
+			this.setter = (BiConsumer<ConvertedVulnerability, Object>)setter;
+		}
+	}
+	
+	private static enum ValueType {
+		STRING(String::valueOf), 
+		FLOAT(v->v instanceof Number ? ((Number)v).floatValue() : Float.parseFloat(v.toString())), 
+		PRIORITY(v->Priority.valueOf(StringUtils.capitalize(v.toString().toLowerCase(Locale.ROOT))));
+		
+		private final Function<Object, Object> converter;
+		
+		private ValueType(Function<Object, Object> converter) {
+			this.converter = converter;
+		}
+		
+		/**
+		 * @return Converted value, or null if the given value is null or cannot be converted
+		 */
+		private final Object convert(Object value) {
+			try {
+				return value==null ? null : converter.apply(value);
+			} catch ( IllegalArgumentException e ) {
+				return null;
+			}
+		}
+	}
+	
+	/**
+	 * Compile the given {@link Definition}.
+	 * @param definition
+	 * @throws IllegalArgumentException if the given definition is invalid
+	 */
+	MappingProfile(Definition definition) {
+		if ( StringUtils.isBlank(definition.getName()) || StringUtils.isBlank(definition.getToolNamePattern()) ) {
+			throw new IllegalArgumentException("Mapping profile must define name and toolNamePattern");
+		}
+		this.name = definition.getName();
+		this.toolNamePattern = Pattern.compile(definition.getToolNamePattern(), Pattern.CASE_INSENSITIVE);
+		definition.getFields().forEach((fieldName, fieldDefinition)->{
+			MappedField field;
+			try {
+				field = MappedField.valueOf(fieldName);
+			} catch ( IllegalArgumentException e ) {
+				throw new IllegalArgumentException("Mapping profile "+name+" defines unknown field "+fieldName);
+			}
+			Transformer transformer = new Transformer(field, fieldDefinition);
+			if ( fieldDefinition.getValue()!=null ) {
+				constants[field.ordinal()] = checkValue(field, field.type.convert(fieldDefinition.getValue()));
+			} else if ( fieldDefinition.isLevel() ) {
+				levelMappings.add(new LevelMapping(field, transformer));
+			} else if ( StringUtils.isNotBlank(fieldDefinition.getProperty()) ) {
+				propertyMappings.add(new PropertyMapping(field, fieldDefinition.getProperty().split("/"), transformer));
+			} else {
+				throw new IllegalArgumentException("Mapping profile "+name+" doesn't define a source for field "+fieldName);
+			}
+		});
+	}
+	
+	/**
+	 * @param toolName
+	 * @return true if this profile applies to runs produced by the given tool
+	 */
+	final boolean matches(String toolName) {
+		return toolName!=null && toolNamePattern.matcher(toolName).matches();
+	}
+	
+	/**
+	 * Create a {@link ConversionPlan.FieldExtractor} that applies this profile 
+	 * to the results of a single run. The extractor caches the property mapping 
+	 * results per rule for that run.
+	 * @return {@link ConversionPlan.FieldExtractor} for a single run
+	 */
+	final ConversionPlan.FieldExtractor createExtractor() {
+		Map<RuleAttributes, Object[]> ruleValues = new ConcurrentHashMap<>();
+		return (runData, result, vuln)->{
+			applyValues(vuln, getRuleValues(ruleValues, runData, result));
+			for ( LevelMapping levelMapping : levelMappings ) {
+				levelMapping.apply(result.resolveLevel(runData), vuln);
+			}
+		};
+	}
+	
+	private final Object[] getRuleValues(Map<RuleAttributes, Object[]> cache, RunData runData, Result result) {
+		if ( propertyMappings.isEmpty() ) { return constants; }
+		// RuleAttributes instances are computed once per rule, so can be used as identity-based key
+		RuleAttributes key = result.resolveRuleAttributes(runData);
+		Object[] values = cache.get(key);
+		if ( values==null ) {
+			values = computeRuleValues(result.resolveRule(runData));
+			if ( cache.size()<MAX_CACHED_RULES ) {
+				cache.putIfAbsent(key, values);
+			}
+		}
+		return values;
+	}
+	
+	private final Object[] computeRuleValues(ReportingDescriptor rule) {
+		Object[] values = constants.clone();
+		Map<String, Object> properties = rule==null ? null : rule.getProperties();
+		if ( properties!=null ) {
+			for ( PropertyMapping propertyMapping : propertyMappings ) {
+				Object value = propertyMapping.map(properties);
+				if ( value!=null ) { values[propertyMapping.field.ordinal()] = value; }
+			}
+		}
+		return values;
+	}
+	
+	private static final void applyValues(ConvertedVulnerability vuln, Object[] values) {
+		for ( int i = 0 ; i < values.length ; i++ ) {
+			if ( values[i]!=null ) {
+				MappedField.values()[i].setter.accept(vuln, values[i]);
+			}
+		}
+	}
+	
+	private final Object checkValue(MappedField field, Object value) {
+		if ( value==null ) {
+			throw new IllegalArgumentException("Mapping profile "+name+" defines invalid value for field "+field);
+		}
+		return value;
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+	
+	/**
+	 * This class maps a (nested) rule property to a field value.
+	 */
+	private static final class PropertyMapping {
+		private final MappedField field;
+		private final String[] path;
+		private final Transformer transformer;
+		
+		private PropertyMapping(MappedField field, String[] path, Transformer transformer) {
+			this.field = field;
+			this.path = path;
+			this.transformer = transformer;
+		}
+		
+		private final Object map(Map<String, Object> properties) {
+			Object value = properties;
+			for ( String name : path ) {
+				value = value instanceof Map ? ((Map<?,?>)value).get(name) : null;
+			}
+			if ( value instanceof List ) {
+				for ( Object element : (List<?>)value ) {
+					Object result = transformer.transform(element);
+					if ( result!=null ) { return result; }
+				}
+				return null;
+			}
+			return transformer.transform(value);
+		}
+	}
+	
+	/**
+	 * This class maps result levels to a field value; the 
+	 * value for every level is computed when compiling the profile.
+	 */
+	private static final class LevelMapping {
+		private final MappedField field;
+		private final Object[] valuesByLevel = new Object[Level.values().length];
+		
+		private LevelMapping(MappedField field, Transformer transformer) {
+			this.field = field;
+			for ( Level level : Level.values() ) {
+				valuesByLevel[level.ordinal()] = transformer.transform(level.name());
+			}
+		}
+		
+		private final void apply(Level level, ConvertedVulnerability vuln) {
+			Object value = level==null ? null : valuesByLevel[level.ordinal()];
+			if ( value!=null ) {
+				field.setter.accept(vuln, value);
+			}
+		}
+	}
+	
+	/**
+	 * This class transforms source values to typed field values, according
+	 * to the transformations defined in a {@link FieldDefinition}. 
+	 */
+	private static final class Transformer {
+		private final ValueType type;
+		private final Pattern pattern;
+		private final String format;
+		private final Map<String, Object> values;
+		private final NavigableMap<Double, Object> ranges;
+		private final Float scale;
+		
+		private Transformer(MappedField field, FieldDefinition definition) {
+			this.type = field.type;
+			this.pattern = definition.getPattern()==null ? null : Pattern.compile(definition.getPattern());
+			this.format = definition.getFormat();
+			this.values = definition.getValues()==null ? null : convertValues(field, definition.getValues(), new TreeMap<>(String.CASE_INSENSITIVE_ORDER), Function.identity());
+			this.ranges = definition.getRanges()==null ? null : convertValues(field, definition.getRanges(), new TreeMap<>(), Double::valueOf);
+			this.scale = definition.getScale();
+		}
+		
+		private static final <K, M extends Map<K, Object>> M convertValues(MappedField field, Map<String, Object> source, M target, Function<String, K> keyConverter) {
+			source.forEach((key, value)->{
+				Object converted = field.type.convert(value);
+				if ( converted==null ) {
+					throw new IllegalArgumentException("Invalid value "+value+" for field "+field);
+				}
+				target.put(keyConverter.apply(key), converted);
+			});
+			return target;
+		}
+		
+		/**
+		 * @return Transformed value, or null if the given value cannot be transformed
+		 */
+		private final Object transform(Object value) {
+			if ( value==null || value instanceof Map || value instanceof List ) { return null; }
+			if ( pattern!=null ) {
+				Matcher matcher = pattern.matcher(value.toString());
+				if ( !matcher.find() ) { return null; }
+				value = format!=null ? expand(matcher, format) : matcher.group(matcher.groupCount()>0 ? 1 : 0);
+			}
+			if ( values!=null ) {
+				return values.get(value.toString());
+			} else if ( ranges!=null ) {
+				Double number = toDouble(value);
+				Map.Entry<Double, Object> entry = number==null ? null : ranges.floorEntry(number);
+				return entry==null ? null : entry.getValue();
+			} else if ( scale!=null ) {
+				Double number = toDouble(value);
+				return number==null ? null : type.convert(number.floatValue()*scale);
+			} else {
+				return type.convert(value);
+			}
+		}
+		
+		private static final Double toDouble(Object value) {
+			if ( value instanceof Number ) { return ((Number)value).doubleValue(); }
+			try {
+				return Double.valueOf(value.toString());
+			} catch ( NumberFormatException e ) {
+				return null;
+			}
+		}
+		
+		private static final String expand(Matcher matcher, String format) {
+			StringBuilder sb = new StringBuilder();
+			for ( int i = 0 ; i < format.length() ; i++ ) {
+				char c = format.charAt(i);
+				if ( c=='$' && i+1<format.length() && Character.isDigit(format.charAt(i+1)) ) {
+					int group = format.charAt(++i)-'0';
+					sb.append(group<=matcher.groupCount() && matcher.group(group)!=null ? matcher.group(group) : "");
+				} else {
+					sb.append(c);
+				}
+			}
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This class loads and compiles the {@link MappingProfile} definitions that are
+ * shipped as resources with this plugin. The {@value #INDEX_RESOURCE} resource 
+ * lists the profile resources (relative to the index, one per line, ignoring 
+ * empty lines and lines starting with '#'); profiles are matched against the 
+ * tool name of each run in the listed order.
+ * 
+ * Profiles are compiled by {@link #start()}, which is invoked when SSC starts 
+ * the plugin, or on first use if not started explicitly. Invalid profile
+ * definitions are reported by throwing an {@link IllegalStateException}.
+ * 
+ * This class is thread-safe.
+ * 
+ * @author Ruud Senden
+ */
+public final class MappingProfiles {
+	private static final Logger LOG = LoggerFactory.getLogger(MappingProfiles.class);
+	static final String INDEX_RESOURCE = "mapping-profiles/index.txt";
+	private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+	private final String indexResource;
+	private volatile List<MappingProfile> profiles;
+	
+	/**
+	 * Create a new instance for the default {@value #INDEX_RESOURCE} resource.
+	 */
+	public MappingProfiles() {
+		this(INDEX_RESOURCE);
+	}
+	
+	MappingProfiles(String indexResource) {
+		this.indexResource = indexResource;
+	}
+	
+	/**
+	 * Load and compile all mapping profiles, if not done yet.
+	 */
+	public final void start() {
+		getProfiles();
+	}
+	
+	/**
+	 * Get the {@link MappingProfile} for the given tool name.
+	 * @param toolName
+	 * @return First {@link MappingProfile} matching the given tool name, 
+	 *         or <code>null</code> if there is no matching profile
+	 */
+	final MappingProfile get(String toolName) {
+		for ( MappingProfile profile : getProfiles() ) {
+			if ( profile.matches(toolName) ) { return profile; }
+		}
+		return null;
+	}
+	
+	private final List<MappingProfile> getProfiles() {
+		List<MappingProfile> result = profiles;
+		if ( result==null ) {
+			synchronized (this) {
+				result = profiles;
+				if ( result==null ) {
+					result = profiles = Collections.unmodifiableList(load());
+					LOG.info("Loaded SARIF mapping profiles: {}", result);
+				}
+			}
+		}
+		return result;
+	}
+	
+	private final List<MappingProfile> load() {
+		String basePath = indexResource.substring(0, indexResource.lastIndexOf('/')+1);
+		List<MappingProfile> result = new ArrayList<>();
+		for ( String name : readIndex() ) {
+			try ( InputStream is = getResourceAsStream(basePath+name) ) {
+				result.add(new MappingProfile(MAPPER.readValue(is, MappingProfile.Definition.class)));
+			} catch ( IOException | IllegalArgumentException e ) {
+				throw new IllegalStateException("Error loading SARIF mapping profile "+basePath+name, e);
+			}
+		}
+		return result;
+	}
+	
+	private final List<String> readIndex() {
+		try ( BufferedReader reader = new BufferedReader(new InputStreamReader(getResourceAsStream(indexResource), StandardCharsets.UTF_8)) ) {
+			return reader.lines().map(String::trim)
+					.filter(line->!line.isEmpty() && !line.startsWith("#"))
+					.collect(Collectors.toList());
+		} catch ( IOException | UncheckedIOException e ) {
+			throw new IllegalStateException("Error loading SARIF mapping profile index "+indexResource, e);
+		}
+	}
+	
+	private final InputStream getResourceAsStream(String name) throws IOException {
+		InputStream is = MappingProfiles.class.getClassLoader().getResourceAsStream(name);
+		if ( is==null ) { throw new IOException("Resource "+name+" not found"); }
+		return is;
+	}
+}
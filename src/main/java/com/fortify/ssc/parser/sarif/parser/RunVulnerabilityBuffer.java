@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import org.mapdb.DB;
+
+import com.fortify.plugin.api.ScanParsingException;
+import com.fortify.util.mapdb.TempDBSupplier;
+
+/**
+ * This class buffers the {@link ConvertedVulnerability} instances produced 
+ * by a single run that is being processed on a worker thread, until the 
+ * single writer thread is ready to submit them. Up to a fixed number of
+ * vulnerabilities are buffered in memory; any further vulnerabilities are 
+ * spilled to a disk-backed list, so worker threads for runs that are not 
+ * yet being submitted never need to wait for the writer. Once the writer 
+ * starts draining this buffer, the worker thread is instead blocked if the 
+ * in-memory buffer is full, to avoid spilling vulnerabilities that will be 
+ * submitted shortly anyway.
+ * 
+ * Vulnerabilities are always drained in the order in which they were added.
+ * 
+ * @author Ruud Senden
+ */
+final class RunVulnerabilityBuffer implements AutoCloseable {
+	private static final int MAX_IN_MEMORY = 1000;
+	private final TempDBSupplier dbSupplier;
+	private final Queue<ConvertedVulnerability> inMemory = new ArrayDeque<>();
+	private DB db;
+	private List<ConvertedVulnerability> spilled;
+	private int spilledReadIndex = 0;
+	private boolean draining = false;
+	private boolean completed = false;
+	private boolean closed = false;
+	private Throwable error;
+	
+	/**
+	 * Constructor for storing the {@link TempDBSupplier} used to create a 
+	 * temporary disk-backed database if vulnerabilities need to be spilled.
+	 * @param dbSupplier
+	 */
+	RunVulnerabilityBuffer(TempDBSupplier dbSupplier) {
+		this.dbSupplier = dbSupplier;
+	}
+	
+	/**
+	 * Add the given vulnerability to this buffer; <code>null</code> values
+	 * are ignored. This method is called by the worker thread.
+	 * @param vulnerability
+	 * @throws CancellationException if this buffer has been closed, to stop 
+	 *         the worker thread from processing the remainder of the run
+	 */
+	final synchronized void add(ConvertedVulnerability vulnerability) {
+		if ( vulnerability==null ) { return; }
+		checkNotClosed();
+		while ( draining && spilled==null && inMemory.size()>=MAX_IN_MEMORY ) {
+			await();
+			checkNotClosed();
+		}
+		if ( spilled==null && inMemory.size()<MAX_IN_MEMORY ) {
+			inMemory.add(vulnerability);
+		} else {
+			getSpilled().add(vulnerability);
+			dbSupplier.checkQuota();
+		}
+		notifyAll();
+	}
+	
+	/**
+	 * Mark this buffer as complete; this method is called by the worker
+	 * thread once the run has been processed, either successfully 
+	 * (<code>error</code> is <code>null</code>) or not.
+	 * @param error
+	 */
+	final synchronized void complete(Throwable error) {
+		this.completed = true;
+		this.error = error;
+		notifyAll();
+	}
+	
+	/**
+	 * Pass all vulnerabilities in this buffer to the given consumer, waiting 
+	 * for new vulnerabilities until the worker thread has completed processing
+	 * the run. This method is called by the writer thread.
+	 * @param consumer
+	 * @throws ScanParsingException if the worker thread reported a {@link ScanParsingException}
+	 * @throws IOException if the worker thread failed to process the run (unwrapping 
+	 *         any {@link UncheckedIOException}), or if the writer thread was interrupted
+	 */
+	final void drain(Consumer<ConvertedVulnerability> consumer) throws ScanParsingException, IOException {
+		ConvertedVulnerability vulnerability;
+		while ( (vulnerability=next())!=null ) {
+			consumer.accept(vulnerability);
+		}
+	}
+	
+	private final synchronized ConvertedVulnerability next() throws ScanParsingException, IOException {
+		draining = true;
+		while ( true ) {
+			if ( !inMemory.isEmpty() ) {
+				notifyAll();
+				return inMemory.poll();
+			} else if ( spilled!=null && spilledReadIndex<spilled.size() ) {
+				return spilled.get(spilledReadIndex++);
+			} else if ( completed ) {
+				if ( error instanceof ScanParsingException ) {
+					throw (ScanParsingException)error;
+				} else if ( error instanceof IOException ) {
+					throw (IOException)error;
+				} else if ( error instanceof UncheckedIOException ) {
+					throw ((UncheckedIOException)error).getCause();
+				} else if ( error!=null ) {
+					throw new IOException("Error processing SARIF run", error);
+				}
+				return null;
+			}
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for SARIF run to be processed");
+			}
+		}
+	}
+
+	/**
+	 * Discard any remaining vulnerabilities, and release the temporary 
+	 * disk-backed database if any vulnerabilities were spilled.
+	 */
+	@Override
+	public final synchronized void close() {
+		closed = true;
+		inMemory.clear();
+		if ( db!=null ) {
+			dbSupplier.release(db);
+			db = null;
+			spilled = null;
+		}
+		notifyAll();
+	}
+	
+	private final List<ConvertedVulnerability> getSpilled() {
+		if ( spilled==null ) {
+			db = dbSupplier.get();
+			spilled = db.indexTreeList("spilledVulnerabilities", ConvertedVulnerability.SERIALIZER).createOrOpen();
+		}
+		return spilled;
+	}
+	
+	private final void checkNotClosed() {
+		if ( closed ) { throw new CancellationException("SARIF run processing was cancelled"); }
+	}
+	
+	private final void await() {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for buffered vulnerabilities to be submitted", e);
+		}
+	}
+}
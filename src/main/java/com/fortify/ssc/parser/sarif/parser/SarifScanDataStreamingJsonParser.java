@@ -24,10 +24,316 @@
  ******************************************************************************/
 package com.fortify.ssc.parser.sarif.parser;
 
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fortify.plugin.api.ScanData;
+import com.fortify.plugin.api.ScanParsingException;
+import com.fortify.util.compress.CompressionHelper;
+import com.fortify.util.compress.CompressionHelper.CompressionFormat;
+import com.fortify.util.io.Region;
+import com.fortify.util.json.skip.SkippingJsonInputStream;
+import com.fortify.util.json.structural.JsonStructuralScanner;
+import com.fortify.util.json.structural.JsonStructuralScanner.ValueHandler;
 import com.fortify.util.ssc.parser.json.AbstractScanDataStreamingJsonParser;
 
+/**
+ * Streaming JSON parser for SARIF input provided by {@link ScanData}. Callers
+ * should use the {@link #parseInput(ScanData)} and {@link #parseRegion(ScanData, Region)}
+ * methods provided by this class, which transparently handle gzip- and 
+ * zstd-compressed input, rather than the generic {@link #parse(ScanData)} and 
+ * {@link #parse(ScanData, Region)} methods.
+ * 
+ * @author Ruud Senden
+ */
 public class SarifScanDataStreamingJsonParser extends AbstractScanDataStreamingJsonParser<SarifScanDataStreamingJsonParser> {
+	private static final String[] EXTENSIONS = {".sarif", ".json", ".sarif.gz", ".json.gz", ".sarif.zst", ".json.zst"};
+	private static final Predicate<String> INPUT_FILE_NAME_MATCHER = fileName->StringUtils.endsWithAny(fileName, EXTENSIONS);
+	
+	private final Map<String, Set<String>> skippedPropertiesByArrayName = new HashMap<>();
+	
 	public SarifScanDataStreamingJsonParser() {
-		super(".sarif", ".json");
+		super(EXTENSIONS);
+	}
+	
+	/**
+	 * Skip the values of the given properties on any object contained in an
+	 * array with the given name, without tokenizing these values; see 
+	 * {@link SkippingJsonInputStream} for details. Skipped object or array
+	 * values will be seen as empty objects or arrays by any handlers. Note 
+	 * that this affects the input byte offsets reported by the underlying
+	 * JSON parser, so this shouldn't be used when collecting input regions.
+	 * 
+	 * @param arrayName
+	 * @param propertyNames
+	 * @return Self for chaining
+	 */
+	public final SarifScanDataStreamingJsonParser skipProperties(String arrayName, String... propertyNames) {
+		skippedPropertiesByArrayName.computeIfAbsent(arrayName, n->new HashSet<>()).addAll(Arrays.asList(propertyNames));
+		return this;
+	}
+	
+	/**
+	 * Parse the input document provided by the given {@link ScanData}, 
+	 * decompressing the input if necessary.
+	 * 
+	 * @param scanData
+	 * @throws ScanParsingException
+	 * @throws IOException
+	 */
+	public final void parseInput(ScanData scanData) throws ScanParsingException, IOException {
+		try ( InputStream inputStream = getInputStream(scanData) ) {
+			if ( inputStream==null ) {
+				// Let the generic implementation handle missing input
+				parse(scanData);
+			} else {
+				try ( InputStream decompressedInputStream = CompressionHelper.decompress(inputStream) ) {
+					parse(filter(decompressedInputStream));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Parse the given {@link Region} of the (decompressed) input document provided by the 
+	 * given {@link ScanData}. If the {@link ScanData} input stream is backed by an uncompressed
+	 * local file, the region is read using positional reads on the corresponding {@link FileChannel}, 
+	 * such that parsing can start at the region offset immediately. Otherwise, this method needs 
+	 * to read (and decompress if necessary) all data up to the start of the region, so callers
+	 * should avoid calling this method for compressed input.
+	 * 
+	 * @param scanData
+	 * @param region
+	 * @throws IOException
+	 */
+	public final void parseRegion(ScanData scanData, Region region) throws IOException {
+		try ( InputStream inputStream = getInputStream(scanData) ) {
+			if ( inputStream==null ) {
+				// Let the generic implementation handle missing input
+				parse(scanData, region);
+			} else {
+				try ( InputStream regionInputStream = getRegionInputStream(inputStream, region) ) {
+					parse(filter(regionInputStream));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Read the given {@link Region} of the (decompressed) input document provided by the 
+	 * given {@link ScanData}. As with {@link #parseRegion(ScanData, Region)}, callers should
+	 * avoid calling this method for compressed input.
+	 * 
+	 * @param scanData
+	 * @param region
+	 * @return Region contents
+	 * @throws IOException
+	 */
+	public static final byte[] readRegion(ScanData scanData, Region region) throws IOException {
+		try ( InputStream inputStream = getInputStream(scanData) ) {
+			if ( inputStream==null ) { return new byte[0]; }
+			try ( InputStream regionInputStream = getRegionInputStream(inputStream, region) ) {
+				byte[] result = new byte[(int)(region.getEnd()-region.getStart())];
+				int length = 0, read = 0;
+				while ( length<result.length && (read = regionInputStream.read(result, length, result.length-length))!=-1 ) {
+					length += read;
+				}
+				return length==result.length ? result : Arrays.copyOf(result, length);
+			}
+		}
+	}
+	
+	/**
+	 * Scan the (decompressed) input document provided by the given {@link ScanData} using 
+	 * {@link JsonStructuralScanner}, invoking the given {@link ValueHandler} for every value 
+	 * at one of the given paths.
+	 * 
+	 * @param scanData
+	 * @param paths
+	 * @param handler
+	 * @throws ScanParsingException
+	 * @throws IOException
+	 */
+	public static final void scanStructure(ScanData scanData, Set<String> paths, ValueHandler handler) throws ScanParsingException, IOException {
+		try ( InputStream inputStream = getInputStream(scanData) ) {
+			if ( inputStream==null ) {
+				// Let the generic implementation handle missing input
+				new SarifScanDataStreamingJsonParser().parse(scanData);
+			} else {
+				try ( InputStream decompressedInputStream = CompressionHelper.decompress(inputStream) ) {
+					new JsonStructuralScanner(paths).scan(decompressedInputStream, handler);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Open a {@link FileChannel} for the input document provided by the given {@link ScanData},
+	 * if that document is an uncompressed local file. Callers are responsible for closing the
+	 * returned {@link FileChannel}, which also closes the underlying input stream.
+	 * 
+	 * @param scanData
+	 * @return {@link FileChannel} for the input document, or null if the input document 
+	 *         is not available as an uncompressed local file
+	 * @throws IOException
+	 */
+	public static final FileChannel openFileChannel(ScanData scanData) throws IOException {
+		InputStream inputStream = getInputStream(scanData);
+		if ( inputStream instanceof FileInputStream && !isCompressed(((FileInputStream)inputStream).getChannel()) ) {
+			return ((FileInputStream)inputStream).getChannel();
+		}
+		if ( inputStream!=null ) { inputStream.close(); }
+		return null;
+	}
+	
+	/**
+	 * @param scanData
+	 * @return true if the input document provided by the given {@link ScanData} is compressed,
+	 *         false otherwise
+	 * @throws IOException
+	 */
+	public static final boolean isCompressedInput(ScanData scanData) throws IOException {
+		try ( InputStream inputStream = getInputStream(scanData) ) {
+			if ( inputStream==null ) { return false; }
+			byte[] header = new byte[4];
+			int length = 0, read = 0;
+			while ( length<header.length && (read = inputStream.read(header, length, header.length-length))!=-1 ) {
+				length += read;
+			}
+			return CompressionHelper.detectFormat(header, length)!=CompressionFormat.NONE;
+		}
+	}
+	
+	private final InputStream filter(InputStream inputStream) {
+		return skippedPropertiesByArrayName.isEmpty() ? inputStream 
+				: new SkippingJsonInputStream(inputStream, skippedPropertiesByArrayName);
+	}
+	
+	/**
+	 * Get an {@link InputStream} for the given {@link Region}. Callers must close the returned
+	 * {@link InputStream} to release any resources held by the decompressing stream, like the 
+	 * read-ahead thread of {@link com.fortify.util.compress.ParallelGzipInputStream}, if the 
+	 * region ends before the end of the input.
+	 */
+	private static final InputStream getRegionInputStream(InputStream inputStream, Region region) throws IOException {
+		if ( inputStream instanceof FileInputStream && !isCompressed(((FileInputStream)inputStream).getChannel()) ) {
+			return new FileChannelRegionInputStream(((FileInputStream)inputStream).getChannel(), region);
+		} else {
+			InputStream decompressedInputStream = CompressionHelper.decompress(inputStream);
+			skipFully(decompressedInputStream, region.getStart());
+			return new BoundedInputStream(decompressedInputStream, region.getEnd()-region.getStart());
+		}
+	}
+	
+	private static final InputStream getInputStream(ScanData scanData) throws IOException {
+		return scanData.getInputStream(INPUT_FILE_NAME_MATCHER);
+	}
+	
+	private static final boolean isCompressed(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(4);
+		while ( header.hasRemaining() && channel.read(header, header.position())!=-1 ) {}
+		return CompressionHelper.detectFormat(header.array(), header.position())!=CompressionFormat.NONE;
+	}
+	
+	private static final void skipFully(InputStream inputStream, long bytesToSkip) throws IOException {
+		while ( bytesToSkip>0 ) {
+			long skipped = inputStream.skip(bytesToSkip);
+			if ( skipped<=0 ) {
+				if ( inputStream.read()==-1 ) { return; }
+				skipped = 1;
+			}
+			bytesToSkip -= skipped;
+		}
+	}
+	
+	/**
+	 * {@link InputStream} implementation that reads a {@link Region} from a
+	 * {@link FileChannel} using positional reads, independent of the current
+	 * channel position.
+	 */
+	private static final class FileChannelRegionInputStream extends InputStream {
+		private final FileChannel channel;
+		private final long end;
+		private long position;
+		
+		public FileChannelRegionInputStream(FileChannel channel, Region region) {
+			this.channel = channel;
+			this.position = region.getStart();
+			this.end = region.getEnd();
+		}
+		
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1)==-1 ? -1 : b[0] & 0xFF;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if ( len==0 ) { return 0; }
+			if ( position>=end ) { return -1; }
+			int bytesRead = channel.read(ByteBuffer.wrap(b, off, (int)Math.min(len, end-position)), position);
+			if ( bytesRead>0 ) { position += bytesRead; }
+			return bytesRead;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = Math.max(0, Math.min(n, end-position));
+			position += skipped;
+			return skipped;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			return (int)Math.min(Integer.MAX_VALUE, end-position);
+		}
+	}
+	
+	/**
+	 * {@link InputStream} implementation that reads at most the given
+	 * number of bytes from the wrapped {@link InputStream}.
+	 */
+	private static final class BoundedInputStream extends InputStream {
+		private final InputStream inputStream;
+		private long remaining;
+		
+		public BoundedInputStream(InputStream inputStream, long length) {
+			this.inputStream = inputStream;
+			this.remaining = length;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			if ( remaining<=0 ) { return -1; }
+			int result = inputStream.read();
+			if ( result!=-1 ) { remaining--; }
+			return result;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if ( len==0 ) { return 0; }
+			if ( remaining<=0 ) { return -1; }
+			int bytesRead = inputStream.read(b, off, (int)Math.min(len, remaining));
+			if ( bytesRead>0 ) { remaining -= bytesRead; }
+			return bytesRead;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
 	}
 }
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fortify.ssc.parser.sarif.domain.RunData;
+import com.fortify.util.io.Region;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * This class holds a compact structural index of a SARIF document, as collected
+ * by {@link ScanParser}. For every entry in the SARIF <code>runs</code> array, 
+ * the index stores the input document {@link Region} of the run itself, and of 
+ * the run properties that are relevant for producing vulnerabilities, together 
+ * with some entry counts. This allows {@link VulnerabilitiesParser} to process 
+ * each run without having to rediscover the document structure.
+ * 
+ * For compressed input, regions would refer to the decompressed data, which 
+ * cannot be read without decompressing the input up to the start of the region. 
+ * The index for such input is therefore created through {@link #withoutRegions(String, List)}, 
+ * describing only which run properties are present and the entry counts; 
+ * {@link #isRegionsAvailable()} returns false for such an index.
+ * 
+ * @author Ruud Senden
+ */
+@Getter
+public final class ScanIndex {
+	private final String version;
+	private final List<RunIndex> runs;
+	private final boolean regionsAvailable;
+	
+	ScanIndex(String version, List<RunIndex> runs) {
+		this(version, runs, true);
+	}
+	
+	private ScanIndex(String version, List<RunIndex> runs, boolean regionsAvailable) {
+		this.version = version;
+		this.runs = Collections.unmodifiableList(new ArrayList<>(runs));
+		this.regionsAvailable = regionsAvailable;
+	}
+	
+	/**
+	 * Create a {@link ScanIndex} that retains which run properties are present 
+	 * in the given runs and the entry counts, but not the input document regions.
+	 * @param version
+	 * @param runs
+	 * @return New {@link ScanIndex} instance
+	 */
+	static ScanIndex withoutRegions(String version, List<RunIndex> runs) {
+		List<RunIndex> result = new ArrayList<>(runs.size());
+		runs.forEach(run->result.add(run.withoutRegions()));
+		return new ScanIndex(version, result, false);
+	}
+	
+	/**
+	 * This class holds the structural information for a single SARIF <code>run</code>.
+	 * All regions are absolute byte offsets in the input document; regions for
+	 * properties that are not present in the run are <code>null</code>. All regions
+	 * are <code>null</code> for a run index returned by {@link #withoutRegions()}.
+	 */
+	@Getter @Setter(AccessLevel.PACKAGE)
+	public static final class RunIndex {
+		private Region runRegion;
+		private Region toolRegion;
+		private Region artifactsRegion;
+		private Region originalUriBaseIdsRegion;
+		private Region threadFlowLocationsRegion;
+		private Region resultsRegion;
+		private int ruleCount = 0;
+		private int artifactCount = 0;
+		private int resultCount = 0;
+		@Setter(AccessLevel.NONE) private Set<String> auxiliaryPropertyNames;
+		
+		/**
+		 * @return Subset of {@link RunData#AUXILIARY_PROPERTY_NAMES} that are 
+		 *         present in this run
+		 */
+		public Set<String> getAuxiliaryPropertyNames() {
+			if ( auxiliaryPropertyNames!=null ) { return new HashSet<>(auxiliaryPropertyNames); }
+			Set<String> result = new HashSet<>();
+			if ( toolRegion!=null ) { result.add("tool"); }
+			if ( artifactsRegion!=null ) { result.add("artifacts"); }
+			if ( originalUriBaseIdsRegion!=null ) { result.add("originalUriBaseIds"); }
+			if ( threadFlowLocationsRegion!=null ) { result.add("threadFlowLocations"); }
+			return result;
+		}
+		
+		/**
+		 * @return Copy of this run index without regions, retaining the 
+		 *         auxiliary property names and entry counts
+		 */
+		final RunIndex withoutRegions() {
+			RunIndex result = new RunIndex();
+			result.auxiliaryPropertyNames = getAuxiliaryPropertyNames();
+			result.ruleCount = ruleCount;
+			result.artifactCount = artifactCount;
+			result.resultCount = resultCount;
+			return result;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fortify.plugin.api.ScanData;
+
+/**
+ * This class caches {@link ScanIndex} instances, keyed by {@link ScanData#getSessionId()}.
+ * SSC first calls the parser plugin to parse scan information, and then to parse 
+ * vulnerabilities for the same {@link ScanData}; this cache allows {@link ScanParser}
+ * to pass the {@link ScanIndex} that it collected to {@link VulnerabilitiesParser}.
+ * 
+ * To avoid leaking memory if SSC never asks for vulnerabilities to be parsed (for 
+ * example because the scan was rejected), the number of cached entries is limited, 
+ * and entries expire after a fixed amount of time. Entries are removed from the 
+ * cache once they are taken by {@link VulnerabilitiesParser}.
+ * 
+ * @author Ruud Senden
+ */
+public final class ScanIndexCache {
+	private static final Logger LOG = LoggerFactory.getLogger(ScanIndexCache.class);
+	private static final int DEFAULT_MAX_ENTRIES = 32;
+	private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+	private final int maxEntries;
+	private final long ttlMillis;
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	
+	public ScanIndexCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+	}
+	
+	public ScanIndexCache(int maxEntries, long ttlMillis) {
+		this.maxEntries = maxEntries;
+		this.ttlMillis = ttlMillis;
+	}
+	
+	/**
+	 * Store the given {@link ScanIndex} for the given session id,
+	 * evicting expired entries and the oldest entries if the cache
+	 * is full.
+	 * @param sessionId
+	 * @param scanIndex
+	 */
+	public synchronized void put(String sessionId, ScanIndex scanIndex) {
+		if ( sessionId!=null && scanIndex!=null ) {
+			evictExpired();
+			entries.remove(sessionId);
+			entries.put(sessionId, new Entry(scanIndex, System.currentTimeMillis()+ttlMillis));
+			Iterator<String> keys = entries.keySet().iterator();
+			while ( entries.size()>maxEntries && keys.hasNext() ) {
+				LOG.debug("Evicting scan index for session {}", keys.next());
+				keys.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Remove and return the {@link ScanIndex} for the given session id,
+	 * or return null if no (unexpired) index is available.
+	 * @param sessionId
+	 * @return {@link ScanIndex} or null
+	 */
+	public synchronized ScanIndex take(String sessionId) {
+		evictExpired();
+		Entry entry = sessionId==null ? null : entries.remove(sessionId);
+		return entry==null ? null : entry.scanIndex;
+	}
+	
+	/**
+	 * Remove all entries from this cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	private void evictExpired() {
+		long now = System.currentTimeMillis();
+		entries.values().removeIf(entry->entry.expiresAt<now);
+	}
+	
+	private static final class Entry {
+		private final ScanIndex scanIndex;
+		private final long expiresAt;
+		
+		private Entry(ScanIndex scanIndex, long expiresAt) {
+			this.scanIndex = scanIndex;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -1,11 +1,25 @@
 package com.fortify.ssc.parser.sarif.parser;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntConsumer;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fortify.plugin.api.ScanBuilder;
 import com.fortify.plugin.api.ScanData;
 import com.fortify.plugin.api.ScanParsingException;
+import com.fortify.ssc.parser.sarif.parser.ScanIndex.RunIndex;
+import com.fortify.util.io.Region;
+import com.fortify.util.json.ExtendedJsonParser;
+import com.fortify.util.json.StreamingJsonParser;
+import com.fortify.util.json.structural.JsonStructuralScanner;
 
 /**
  * This class parses the SARIF JSON to set the various {@link ScanBuilder}
@@ -15,29 +29,55 @@ import com.fortify.plugin.api.ScanParsingException;
  * of the last invocation of the last run, based on the order of runs and
  * invocations in the input file.
  * 
+ * While parsing, this class also collects a {@link ScanIndex} describing 
+ * the structure of the input document. If a {@link ScanIndexCache} has 
+ * been configured, this index is stored in the cache for later use by 
+ * {@link VulnerabilitiesParser}. For compressed input, the cached index only
+ * describes which run properties are present; see {@link ScanIndex} for details.
+ * 
+ * If the {@value #PROPERTY_STRUCTURAL_INDEX} system property is set to true and
+ * the input is not compressed, this class uses {@link JsonStructuralScanner} to 
+ * collect the {@link ScanIndex} without tokenizing the full input document. Only
+ * the (small) <code>version</code>, <code>invocations</code> and <code>automationId</code> 
+ * values are then parsed to set the {@link ScanBuilder} properties.
+ * 
  * @author Ruud Senden
  */
 public class ScanParser {
 	public static final String MSG_UNSUPPORTED_INPUT_FILE_VERSION = "Unsupported input file version";
+	public static final String PROPERTY_STRUCTURAL_INDEX = "com.fortify.ssc.parser.sarif.structuralIndex";
+	private static final Set<String> STRUCTURAL_PATHS = new HashSet<>(Arrays.asList(
+			"/version", "/runs/*", "/runs/*/invocations", "/runs/*/automationId", "/runs/*/tool", 
+			"/runs/*/tool/driver/rules", "/runs/*/artifacts", "/runs/*/originalUriBaseIds", "/runs/*/threadFlowLocations", 
+			"/runs/*/results"));
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
 	private final ScanData scanData;
     private final ScanBuilder scanBuilder;
+    private final ScanIndexCache scanIndexCache;
+    private final List<RunIndex> runs = new ArrayList<>();
     private String version;
     private int numFiles = 0;
     
 	public ScanParser(final ScanData scanData, final ScanBuilder scanBuilder) {
+		this(scanData, scanBuilder, null);
+	}
+	
+	public ScanParser(final ScanData scanData, final ScanBuilder scanBuilder, final ScanIndexCache scanIndexCache) {
 		this.scanData = scanData;
 		this.scanBuilder = scanBuilder;
+		this.scanIndexCache = scanIndexCache;
 	}
 	
 	public final void parse() throws ScanParsingException, IOException {
-		new SarifScanDataStreamingJsonParser()
-			.handler("/version", jp -> version=jp.getValueAsString())
-			.handler("/runs/invocations/endTimeUtc", jp -> scanBuilder.setScanDate(jp.readValueAs(Date.class)))
-			.handler("/runs/invocations/machine", jp -> scanBuilder.setHostName(jp.getValueAsString()))
-			.handler("/runs/automationId/guid", jp -> scanBuilder.setBuildId(jp.getValueAsString()))
-			.handler("/runs/automationId/id", jp -> scanBuilder.setScanLabel(jp.getValueAsString()))
-			.handler("/runs/artifacts", jp -> numFiles+=jp.countArrayEntries())
-			.parse(scanData);
+		boolean compressed = SarifScanDataStreamingJsonParser.isCompressedInput(scanData);
+		if ( Boolean.getBoolean(PROPERTY_STRUCTURAL_INDEX) && !compressed ) {
+			parseStructure();
+		} else {
+			new SarifScanDataStreamingJsonParser()
+				.handler("/version", jp -> version=jp.getValueAsString())
+				.handler("/runs/*", this::parseRun)
+				.parseInput(scanData);
+		}
 		
 		if ( !"2.1.0".equals(version) ) {
 			throw new ScanParsingException(MSG_UNSUPPORTED_INPUT_FILE_VERSION+": "+version);
@@ -45,5 +85,96 @@ public class ScanParser {
 		scanBuilder.setEngineVersion(version);
 		scanBuilder.setNumFiles(numFiles);
 		scanBuilder.completeScan();
+		// Index regions refer to decompressed data, so for compressed input we only cache which 
+		// properties are present, to avoid VulnerabilitiesParser having to decompress the input 
+		// multiple times. 
+		if ( scanIndexCache!=null ) {
+			scanIndexCache.put(scanData.getSessionId(), compressed 
+					? ScanIndex.withoutRegions(version, runs) 
+					: new ScanIndex(version, runs));
+		}
+	}
+	
+	private final void parseRun(ExtendedJsonParser jp) throws IOException {
+		RunIndex runIndex = new RunIndex();
+		long start = jp.getTokenLocation().getByteOffset();
+		new StreamingJsonParser()
+			.handler("/invocations/endTimeUtc", jp2 -> scanBuilder.setScanDate(jp2.readValueAs(Date.class)))
+			.handler("/invocations/machine", jp2 -> scanBuilder.setHostName(jp2.getValueAsString()))
+			.handler("/automationId/guid", jp2 -> scanBuilder.setBuildId(jp2.getValueAsString()))
+			.handler("/automationId/id", jp2 -> scanBuilder.setScanLabel(jp2.getValueAsString()))
+			.handler("/tool", jp2 -> runIndex.setToolRegion(parseTool(jp2, runIndex)))
+			.handler("/artifacts", jp2 -> runIndex.setArtifactsRegion(countArrayEntries(jp2, runIndex::setArtifactCount)))
+			.handler("/originalUriBaseIds", jp2 -> runIndex.setOriginalUriBaseIdsRegion(jp2.getObjectOrArrayRegion()))
+			.handler("/threadFlowLocations", jp2 -> runIndex.setThreadFlowLocationsRegion(jp2.getObjectOrArrayRegion()))
+			.handler("/results", jp2 -> runIndex.setResultsRegion(countArrayEntries(jp2, runIndex::setResultCount)))
+			.parseObjectProperties(jp, "/");
+		runIndex.setRunRegion(new Region(start, jp.getCurrentLocation().getByteOffset()));
+		numFiles += runIndex.getArtifactCount();
+		runs.add(runIndex);
+	}
+	
+	/**
+	 * Collect the {@link ScanIndex} using {@link JsonStructuralScanner}, and parse the
+	 * regions containing the values for the {@link ScanBuilder} properties.
+	 */
+	private final void parseStructure() throws ScanParsingException, IOException {
+		List<Region> invocationsRegions = new ArrayList<>();
+		List<Region> metadataRegions = new ArrayList<>(); 
+		RunIndex[] runIndex = {new RunIndex()};
+		Region[] versionRegion = {null};
+		SarifScanDataStreamingJsonParser.scanStructure(scanData, STRUCTURAL_PATHS, (path, start, end, entries) -> {
+			Region region = new Region(start, end);
+			switch (path) {
+			case "/version": versionRegion[0] = region; break;
+			case "/runs/*/invocations": invocationsRegions.add(region); metadataRegions.add(region); break;
+			case "/runs/*/automationId": metadataRegions.add(region); break;
+			case "/runs/*/tool": runIndex[0].setToolRegion(region); break;
+			case "/runs/*/tool/driver/rules": runIndex[0].setRuleCount(entries); break;
+			case "/runs/*/artifacts": runIndex[0].setArtifactsRegion(region); runIndex[0].setArtifactCount(entries); break;
+			case "/runs/*/originalUriBaseIds": runIndex[0].setOriginalUriBaseIdsRegion(region); break;
+			case "/runs/*/threadFlowLocations": runIndex[0].setThreadFlowLocationsRegion(region); break;
+			case "/runs/*/results": runIndex[0].setResultsRegion(region); runIndex[0].setResultCount(entries); break;
+			case "/runs/*":
+				runIndex[0].setRunRegion(region);
+				numFiles += runIndex[0].getArtifactCount();
+				runs.add(runIndex[0]);
+				runIndex[0] = new RunIndex();
+				break;
+			default: break;
+			}
+		});
+		for ( Region region : metadataRegions ) {
+			SarifScanDataStreamingJsonParser parser = new SarifScanDataStreamingJsonParser()
+					.expectedStartTokens(JsonToken.START_OBJECT, JsonToken.START_ARRAY);
+			if ( invocationsRegions.contains(region) ) {
+				parser.handler("/endTimeUtc", jp -> scanBuilder.setScanDate(jp.readValueAs(Date.class)))
+					.handler("/machine", jp -> scanBuilder.setHostName(jp.getValueAsString()));
+			} else {
+				parser.handler("/guid", jp -> scanBuilder.setBuildId(jp.getValueAsString()))
+					.handler("/id", jp -> scanBuilder.setScanLabel(jp.getValueAsString()));
+			}
+			parser.parseRegion(scanData, region);
+		}
+		if ( versionRegion[0]!=null ) {
+			try ( JsonParser jp = JSON_FACTORY.createParser(SarifScanDataStreamingJsonParser.readRegion(scanData, versionRegion[0])) ) {
+				jp.nextToken();
+				version = jp.getValueAsString();
+			}
+		}
+	}
+	
+	private final Region parseTool(ExtendedJsonParser jp, RunIndex runIndex) throws IOException {
+		long start = jp.getTokenLocation().getByteOffset();
+		new StreamingJsonParser()
+			.handler("/driver/rules", jp2 -> countArrayEntries(jp2, runIndex::setRuleCount))
+			.parseObjectProperties(jp, "/");
+		return new Region(start, jp.getCurrentLocation().getByteOffset());
+	}
+	
+	private final Region countArrayEntries(ExtendedJsonParser jp, IntConsumer countConsumer) throws IOException {
+		long start = jp.getTokenLocation().getByteOffset();
+		countConsumer.accept(jp.countArrayEntries());
+		return new Region(start, jp.getCurrentLocation().getByteOffset());
 	}
 }
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class deduplicates the string values passed to the SSC vulnerability
+ * builder. Values like file name, tool name, category and kingdom are drawn
+ * from a relatively small set of distinct values, but each converted 
+ * vulnerability carries its own {@link String} instances (for example 
+ * because they were computed per result, or read back from a spilled
+ * {@link RunVulnerabilityBuffer}). Passing a canonical instance for each 
+ * distinct value allows SSC to retain only a single copy of each value
+ * while buffering vulnerabilities.
+ * 
+ * The table holds at most {@value #MAX_ENTRIES} distinct values; once full,
+ * any new values are passed through as-is. The table is meant to be used by 
+ * the single thread that submits vulnerabilities, for the duration of a
+ * single parse, so it is not thread-safe. 
+ * 
+ * @author Ruud Senden
+ */
+final class StringDeduplicator {
+	private static final int MAX_ENTRIES = 100000;
+	private final Map<String, String> values = new HashMap<>();
+	private long requests = 0;
+	private long hits = 0;
+	
+	/**
+	 * Get the canonical instance for the given value.
+	 * @param value
+	 * @return Canonical instance equal to the given value, or <code>null</code> if the given value is <code>null</code> 
+	 */
+	final String dedup(String value) {
+		if ( value==null ) { return null; }
+		requests++;
+		String result = values.get(value);
+		if ( result!=null ) {
+			hits++;
+			return result;
+		}
+		if ( values.size()<MAX_ENTRIES ) {
+			values.put(value, value);
+		}
+		return value;
+	}
+	
+	/**
+	 * Clear this table.
+	 */
+	final void clear() {
+		values.clear();
+	}
+	
+	/**
+	 * @return Percentage of values that were replaced by a canonical instance
+	 */
+	final double getDedupRatio() {
+		return requests==0 ? 0 : (100.0d*hits)/requests;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("String deduplication: %d values, %d distinct, %.1f%% deduplicated", 
+				requests, values.size(), getDedupRatio());
+	}
+}
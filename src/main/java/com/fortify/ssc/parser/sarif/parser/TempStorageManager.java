@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.StoreDirect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fortify.util.mapdb.TempDBSupplier;
+
+/**
+ * This class manages the temporary MapDB databases used while parsing 
+ * vulnerabilities, for the lifetime of the parser plugin. Compared to 
+ * creating a new temporary database with a JVM shutdown hook for every
+ * run, this class provides the following:
+ * <ul>
+ *   <li>All temporary database files are created in a single directory
+ *       per plugin instance, below the directory configured through the
+ *       {@value #PROPERTY_TEMP_DIR} system property (defaulting to 
+ *       <code>java.io.tmpdir</code>). This directory is created on
+ *       demand, and removed by {@link #stop()}.</li>
+ *   <li>Alternatively, if the {@value #PROPERTY_TEMP_STORAGE} system property
+ *       is set to {@value #TEMP_STORAGE_MEMORY}, databases are stored in direct 
+ *       (off-heap) memory instead of memory-mapped files.</li>
+ *   <li>Up to {@value #MAX_POOLED_STORES} released databases that don't exceed 
+ *       {@value #MAX_RECYCLED_STORE_SIZE} bytes are cleared and pooled for 
+ *       reuse, avoiding file creation and memory-mapping for most runs.</li>
+ *   <li>If configured through the {@value #PROPERTY_MAX_TEMP_STORAGE_BYTES} system 
+ *       property, the amount of temporary storage used by each individual parse
+ *       is limited; see {@link Session#checkQuota()}.</li>
+ *   <li>Instead of registering JVM shutdown hooks, all databases are closed
+ *       by {@link #stop()}, which is invoked when SSC stops the plugin.</li>
+ * </ul>
+ * 
+ * Each parse uses its own {@link Session}, obtained through {@link #openSession()}.
+ * 
+ * @author Ruud Senden
+ */
+public final class TempStorageManager {
+	private static final Logger LOG = LoggerFactory.getLogger(TempStorageManager.class);
+	public static final String PROPERTY_TEMP_DIR = "com.fortify.ssc.parser.sarif.tempDir";
+	public static final String PROPERTY_TEMP_STORAGE = "com.fortify.ssc.parser.sarif.tempStorage";
+	public static final String PROPERTY_MAX_TEMP_STORAGE_BYTES = "com.fortify.ssc.parser.sarif.maxTempStorageBytes";
+	public static final String TEMP_STORAGE_FILE = "file";
+	public static final String TEMP_STORAGE_MEMORY = "memory";
+	private static final int MAX_POOLED_STORES = 4;
+	private static final long MAX_RECYCLED_STORE_SIZE = 64L*1024*1024;
+	private static final int QUOTA_CHECK_INTERVAL = 1024;
+	private final Deque<DB> pool = new ArrayDeque<>();
+	private final Set<DB> leased = Collections.newSetFromMap(new IdentityHashMap<>());
+	private final AtomicInteger storeCounter = new AtomicInteger();
+	private boolean started = false;
+	private boolean memory;
+	private volatile long maxBytesPerParse;
+	private Path baseDirectory;
+	private Path directory;
+	
+	/**
+	 * Start this {@link TempStorageManager}, reading the configuration from the 
+	 * system properties listed in the class description. If this method hasn't 
+	 * been called explicitly, it is called when the first database is requested.
+	 */
+	public synchronized void start() {
+		if ( !started ) {
+			this.memory = TEMP_STORAGE_MEMORY.equalsIgnoreCase(System.getProperty(PROPERTY_TEMP_STORAGE, TEMP_STORAGE_FILE));
+			this.maxBytesPerParse = Long.getLong(PROPERTY_MAX_TEMP_STORAGE_BYTES, 0L);
+			this.baseDirectory = Paths.get(System.getProperty(PROPERTY_TEMP_DIR, System.getProperty("java.io.tmpdir")));
+			this.started = true;
+			LOG.debug("Using {} temporary storage", memory ? "direct memory" : "file-based");
+		}
+	}
+	
+	/**
+	 * Stop this {@link TempStorageManager}, closing all pooled databases and any 
+	 * databases that are still in use, and removing the temporary directory.
+	 */
+	public synchronized void stop() {
+		started = false;
+		pool.forEach(TempStorageManager::close);
+		pool.clear();
+		leased.forEach(TempStorageManager::close);
+		leased.clear();
+		if ( directory!=null ) {
+			deleteDirectory(directory);
+			directory = null;
+		}
+	}
+	
+	/**
+	 * @return New {@link Session} for use by a single parse
+	 */
+	public Session openSession() {
+		return new Session();
+	}
+	
+	private final synchronized DB acquire() {
+		start();
+		DB db = pool.poll();
+		if ( db==null ) {
+			db = create();
+		}
+		leased.add(db);
+		return db;
+	}
+	
+	private final void release(DB db) {
+		boolean recycle;
+		synchronized (this) {
+			recycle = leased.remove(db) && started && pool.size()<MAX_POOLED_STORES && getSize(db)<=MAX_RECYCLED_STORE_SIZE;
+		}
+		// Clear outside of lock, to allow other threads to acquire and release databases
+		if ( recycle && clear(db) ) {
+			synchronized (this) {
+				if ( started && pool.size()<MAX_POOLED_STORES ) {
+					pool.push(db);
+					return;
+				}
+			}
+		}
+		close(db);
+	}
+	
+	private final DB create() {
+		if ( memory ) {
+			return DBMaker.memoryDirectDB().make();
+		} else {
+			return DBMaker.fileDB(getDirectory().resolve("store-"+storeCounter.incrementAndGet()+".db").toFile())
+					.fileMmapEnableIfSupported()
+					.fileDeleteAfterClose()
+					.make();
+		}
+	}
+	
+	private final Path getDirectory() {
+		if ( directory==null ) {
+			try {
+				Files.createDirectories(baseDirectory);
+				directory = Files.createTempDirectory(baseDirectory, "fortify-ssc-parser-sarif-");
+			} catch ( IOException e ) {
+				throw new UncheckedIOException("Error creating temporary directory in "+baseDirectory, e);
+			}
+		}
+		return directory;
+	}
+	
+	/**
+	 * Clear all collections in the given database, such that the space used 
+	 * by these collections can be reused, and collections can be re-opened
+	 * through <code>createOrOpen()</code>.
+	 * @return true if the database was cleared successfully, false otherwise
+	 */
+	private static final boolean clear(DB db) {
+		try {
+			for ( Object collection : db.getAll().values() ) {
+				if ( collection instanceof Collection ) {
+					((Collection<?>)collection).clear();
+				} else if ( collection instanceof Map ) {
+					((Map<?,?>)collection).clear();
+				} else {
+					return false;
+				}
+			}
+			return true;
+		} catch ( RuntimeException e ) {
+			LOG.debug("Error clearing temporary database, database will not be reused", e);
+			return false;
+		}
+	}
+	
+	/**
+	 * @return Number of bytes used by the given database, or 0 if unknown
+	 */
+	private static final long getSize(DB db) {
+		return !db.isClosed() && db.getStore() instanceof StoreDirect 
+				? ((StoreDirect)db.getStore()).getTotalSize()-((StoreDirect)db.getStore()).getFreeSize()
+				: 0;
+	}
+	
+	private static final void close(DB db) {
+		if ( !db.isClosed() ) {
+			db.close();
+		}
+	}
+	
+	private static final void deleteDirectory(Path directory) {
+		try ( Stream<Path> paths = Files.walk(directory) ) {
+			List<Path> list = new ArrayList<>();
+			paths.sorted(Comparator.reverseOrder()).forEach(list::add);
+			for ( Path path : list ) {
+				Files.deleteIfExists(path);
+			}
+		} catch ( IOException e ) {
+			LOG.warn("Error deleting temporary directory {}: {}", directory, e.getMessage());
+		}
+	}
+	
+	/**
+	 * {@link TempDBSupplier} implementation used by a single parse, which acquires 
+	 * (pooled) databases from the {@link TempStorageManager}, and keeps track of 
+	 * the databases in use by this parse to enforce the configured quota. 
+	 */
+	public final class Session implements TempDBSupplier, AutoCloseable {
+		private final Set<DB> dbs = Collections.newSetFromMap(new IdentityHashMap<>());
+		private final AtomicInteger checkCounter = new AtomicInteger();
+		
+		private Session() {}
+		
+		@Override
+		public DB get() {
+			DB db = acquire();
+			synchronized (dbs) {
+				dbs.add(db);
+			}
+			return db;
+		}
+		
+		@Override
+		public void release(DB db) {
+			synchronized (dbs) {
+				dbs.remove(db);
+			}
+			TempStorageManager.this.release(db);
+		}
+		
+		/**
+		 * If a maximum number of temporary storage bytes per parse has been configured,
+		 * check whether the total size of all databases in use by this session exceeds
+		 * this maximum. As calculating the total size is relatively expensive, the actual 
+		 * check is only performed once every {@value TempStorageManager#QUOTA_CHECK_INTERVAL} 
+		 * invocations.
+		 * @throws UncheckedIOException if the maximum has been exceeded
+		 */
+		@Override
+		public void checkQuota() {
+			long max = maxBytesPerParse;
+			if ( max>0 && checkCounter.incrementAndGet()%QUOTA_CHECK_INTERVAL==0 ) {
+				long size;
+				synchronized (dbs) {
+					size = dbs.stream().mapToLong(TempStorageManager::getSize).sum();
+				}
+				if ( size>max ) {
+					throw new UncheckedIOException(new IOException(String.format(
+						"Temporary storage used for parsing vulnerabilities (%d bytes) exceeds the configured maximum of %d bytes (%s)",
+						size, max, PROPERTY_MAX_TEMP_STORAGE_BYTES)));
+				}
+			}
+		}
+		
+		/**
+		 * Release any databases that are still in use by this session.
+		 */
+		@Override
+		public void close() {
+			List<DB> remaining;
+			synchronized (dbs) {
+				remaining = new ArrayList<>(dbs);
+				dbs.clear();
+			}
+			remaining.forEach(TempStorageManager.this::release);
+		}
+	}
+}
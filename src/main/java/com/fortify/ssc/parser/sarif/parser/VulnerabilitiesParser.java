@@ -1,49 +1,100 @@
 package com.fortify.ssc.parser.sarif.parser;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.mapdb.DB;
-import org.mapdb.DBMaker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonToken;
 import com.fortify.plugin.api.ScanData;
 import com.fortify.plugin.api.ScanParsingException;
 import com.fortify.plugin.api.VulnerabilityHandler;
 import com.fortify.ssc.parser.sarif.domain.Result;
 import com.fortify.ssc.parser.sarif.domain.RunData;
-import com.fortify.util.io.Region;
+import com.fortify.ssc.parser.sarif.domain.RunDataStore;
+import com.fortify.ssc.parser.sarif.parser.ScanIndex.RunIndex;
 import com.fortify.util.json.ExtendedJsonParser;
+import com.fortify.util.json.StreamingJsonParser;
 
 /**
  * This class parses a SARIF JSON input document to generate Fortify vulnerabilities.
  * Parsing is done using the following process:
  * <ol>
- *   <li>The main {@link #parse()} method invokes the {@link #parseRun(JsonParser)}
+ *   <li>The main {@link #parse()} method invokes the {@link #parseRun(ExtendedJsonParser, RunIndex, ConversionPipeline)}
  *       method for each entry in the SARIF <code>runs</code> array.</li>
- *   <li>The {@link #parseRun(JsonParser)} method first collects some auxiliary
- *       data from the current run, like rules and base URI's. This data is then
- *       passed to the {@link #parseResults(RunData)} method, which will parse 
- *       and process the actual vulnerability data.</li>
- *   <li>The {@link #parseResults(RunData)} method re-parses the region of the 
- *       input document that contains the SARIF <code>results</code> array.
- *       For each entry in the <code>results</code> array, the JSON contents 
- *       are mapped to a {@link Result} object, and passed to the  
- *       {@link #produceVulnerability(Result, RunData)} method.</li>
- *   <li>The {@link #produceVulnerability(Result, RunData)} method wraps
- *       the {@link Result} object into a {@link ResultWrapperWithRunData} object,
- *       which provides various utility methods that combine information from
- *       {@link Result} and {@link RunData}. Based on information provided by the
- *       {@link ResultWrapperWithRunData} object, a Fortify vulnerability will
- *       be produced, ignoring any results for which the <code>level</code> property
- *       indicates a non-interesting result.
+ *   <li>The {@link #parseRun(ExtendedJsonParser, RunIndex, ConversionPipeline)} method collects 
+ *       some auxiliary data from the current run, like rules and base URI's, into a 
+ *       {@link RunData} object. While parsing the run, each entry in the SARIF 
+ *       <code>results</code> array is mapped to a {@link Result} object, and 
+ *       passed to the {@link ConversionPipeline}. Depending on the order of the 
+ *       run properties, this happens either inline while reading the input, or 
+ *       after all auxiliary data has been collected (see {@link RunData} for 
+ *       details). Either way, the input document is read only once.</li>
+ *   <li>The {@link ConversionPipeline} invokes the {@link VulnerabilitiesProducer#convert(RunData, Result)} 
+ *       method, which combines information from {@link Result} and {@link RunData} 
+ *       into a {@link ConvertedVulnerability}, ignoring any results for which the 
+ *       <code>level</code> property indicates a non-interesting result.</li>
+ *   <li>Each {@link ConvertedVulnerability} is submitted to the {@link VulnerabilityHandler}
+ *       through {@link VulnerabilitiesProducer#submit(ConvertedVulnerability)}.</li>
  * </ol>
  * 
+ * If a {@link ScanIndex} for the current {@link ScanData} is available from
+ * the configured {@link ScanIndexCache}, the main {@link #parse()} method
+ * instead invokes the {@link #parseRun(RunIndex, ConversionPipeline)} method 
+ * for each run in the index, which parses only the input document region for 
+ * that run. As the index describes which auxiliary run properties are present, 
+ * this also allows for handling results inline more often. For compressed input,
+ * the index doesn't provide any regions; the full document is then streamed
+ * as described above, but the auxiliary run properties described by the index
+ * still allow for handling results inline.
+ * 
+ * To make use of multiple processors, parsing and conversion can optionally be 
+ * performed on worker threads:
+ * <ul>
+ *   <li>If the index contains multiple runs, these runs are parsed concurrently
+ *       on a bounded pool of run threads, each run using its own {@link RunData} 
+ *       instance and temporary database. Without an index, the full document
+ *       is streamed by a single run thread.</li>
+ *   <li>Results are converted in batches on a bounded pool of conversion threads,
+ *       with a bounded number of pending batches per run to provide backpressure
+ *       to the parsing thread; see {@link ConversionPipeline}.</li>
+ *   <li>Converted vulnerabilities are buffered per run (see {@link RunVulnerabilityBuffer}),
+ *       and submitted to the {@link VulnerabilityHandler} only by the thread that 
+ *       invoked {@link #parse()}, in the same order as sequential processing would.
+ *       As such, duplicate instance id's are handled deterministically.</li>
+ * </ul>
+ * As the plugin runs inside the shared SSC server, which may be parsing multiple
+ * uploads at the same time, worker threads are not used by default; all processing 
+ * is done on the thread that invoked {@link #parse()}. Concurrent processing can be 
+ * enabled by setting the {@value #PROPERTY_RUN_THREADS} and/or 
+ * {@value #PROPERTY_CONVERSION_THREADS} system properties to a value larger than 1.
+ * 
  * @author Ruud Senden
  */
 public final class VulnerabilitiesParser {
+	private static final Logger LOG = LoggerFactory.getLogger(VulnerabilitiesParser.class);
+	public static final String PROPERTY_RUN_THREADS = "com.fortify.ssc.parser.sarif.runThreads";
+	public static final String PROPERTY_CONVERSION_THREADS = "com.fortify.ssc.parser.sarif.conversionThreads";
+	public static final String PROPERTY_SKIP_UNUSED_PROPERTIES = "com.fortify.ssc.parser.sarif.skipUnusedProperties";
+	public static final String PROPERTY_DEFERRED_RUN_DATA = "com.fortify.ssc.parser.sarif.deferredRunData";
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+	private static final int TERMINATION_TIMEOUT_SECONDS = 60;
 	private final ScanData scanData;
 	private final VulnerabilitiesProducer vulnerabilitiesProducer;
+	private final ScanIndexCache scanIndexCache;
+	private final TempStorageManager ownedTempStorageManager;
+	private final TempStorageManager.Session tempStorage;
 	
 	/**
 	 * Constructor for storing {@link ScanData} and {@link VulnerabilityHandler}
@@ -52,8 +103,53 @@ public final class VulnerabilitiesParser {
 	 * @param vulnerabilityHandler
 	 */
 	public VulnerabilitiesParser(final ScanData scanData, final VulnerabilityHandler vulnerabilityHandler) {
+		this(scanData, vulnerabilityHandler, null);
+	}
+	
+	/**
+	 * Constructor for storing {@link ScanData}, {@link VulnerabilityHandler}
+	 * and {@link ScanIndexCache} instances.
+	 * @param scanData
+	 * @param vulnerabilityHandler
+	 * @param scanIndexCache
+	 */
+	public VulnerabilitiesParser(final ScanData scanData, final VulnerabilityHandler vulnerabilityHandler, final ScanIndexCache scanIndexCache) {
+		this(scanData, vulnerabilityHandler, scanIndexCache, null);
+	}
+	
+	/**
+	 * Constructor for storing {@link ScanData}, {@link VulnerabilityHandler},
+	 * {@link ScanIndexCache} and {@link TempStorageManager} instances. If the given 
+	 * {@link TempStorageManager} is null, a private {@link TempStorageManager} is 
+	 * used, which is stopped once parsing has completed.
+	 * @param scanData
+	 * @param vulnerabilityHandler
+	 * @param scanIndexCache
+	 * @param tempStorageManager
+	 */
+	public VulnerabilitiesParser(final ScanData scanData, final VulnerabilityHandler vulnerabilityHandler, final ScanIndexCache scanIndexCache, final TempStorageManager tempStorageManager) {
+		this(scanData, vulnerabilityHandler, scanIndexCache, tempStorageManager, null);
+	}
+	
+	/**
+	 * Constructor for storing {@link ScanData}, {@link VulnerabilityHandler},
+	 * {@link ScanIndexCache}, {@link TempStorageManager} and {@link MappingProfiles} 
+	 * instances. If the given {@link TempStorageManager} is null, a private 
+	 * {@link TempStorageManager} is used, which is stopped once parsing has completed.
+	 * If the given {@link MappingProfiles} instance is null, the default mapping
+	 * profiles are loaded for this parser.
+	 * @param scanData
+	 * @param vulnerabilityHandler
+	 * @param scanIndexCache
+	 * @param tempStorageManager
+	 * @param mappingProfiles
+	 */
+	public VulnerabilitiesParser(final ScanData scanData, final VulnerabilityHandler vulnerabilityHandler, final ScanIndexCache scanIndexCache, final TempStorageManager tempStorageManager, final MappingProfiles mappingProfiles) {
 		this.scanData = scanData;
-		this.vulnerabilitiesProducer = new VulnerabilitiesProducer(vulnerabilityHandler);
+		this.scanIndexCache = scanIndexCache;
+		this.ownedTempStorageManager = tempStorageManager==null ? new TempStorageManager() : null;
+		this.tempStorage = (tempStorageManager==null ? ownedTempStorageManager : tempStorageManager).openSession();
+		this.vulnerabilitiesProducer = new VulnerabilitiesProducer(vulnerabilityHandler, tempStorage, mappingProfiles);
 	}
 	
 	/**
@@ -62,51 +158,249 @@ public final class VulnerabilitiesParser {
 	 * @throws IOException
 	 */
 	public final void parse() throws ScanParsingException, IOException {
-		new SarifScanDataStreamingJsonParser()
-			.handler("/runs/*", this::parseRun)
-			.parse(scanData);
+		parse(getThreads(PROPERTY_RUN_THREADS), getThreads(PROPERTY_CONVERSION_THREADS), ConversionPipeline.DEFAULT_BATCH_SIZE);
+	}
+	
+	/**
+	 * Parse the SARIF document provided by the configured {@link ScanData}, using
+	 * the given maximum number of run threads, the given number of conversion threads,
+	 * and the given conversion batch size.
+	 * @param maxRunThreads
+	 * @param conversionThreads
+	 * @param batchSize
+	 * @throws ScanParsingException
+	 * @throws IOException
+	 */
+	final void parse(int maxRunThreads, int conversionThreads, int batchSize) throws ScanParsingException, IOException {
+		ScanIndex scanIndex = scanIndexCache==null ? null : scanIndexCache.take(scanData.getSessionId());
+		int runThreads = scanIndex==null || !scanIndex.isRegionsAvailable() ? 1 : Math.min(maxRunThreads, scanIndex.getRuns().size());
+		try {
+			if ( runThreads>1 || conversionThreads>1 ) {
+				parseConcurrently(scanIndex, runThreads, conversionThreads, batchSize);
+			} else {
+				ConversionPipeline pipeline = new ConversionPipeline(vulnerabilitiesProducer::convert, null, 1, batchSize, vulnerabilitiesProducer::submit);
+				if ( scanIndex!=null && scanIndex.isRegionsAvailable() ) {
+					for ( RunIndex runIndex : scanIndex.getRuns() ) {
+						parseRun(runIndex, pipeline);
+					}
+				} else {
+					parseDocument(scanIndex, pipeline);
+				}
+			}
+		} catch ( UncheckedIOException e ) {
+			throw e.getCause();
+		} finally {
+			vulnerabilitiesProducer.finish();
+			tempStorage.close();
+			if ( ownedTempStorageManager!=null ) { ownedTempStorageManager.stop(); }
+		}
+	}
+	
+	/**
+	 * This method parses the input document on worker threads; see class 
+	 * description for details. If a {@link ScanIndex} with regions is available, 
+	 * runs are parsed concurrently using the given number of run threads, otherwise 
+	 * the full document is streamed by a single worker thread. If the given
+	 * number of conversion threads is larger than 1, results are converted
+	 * using a {@link ConversionPipeline} backed by a shared conversion thread
+	 * pool. Vulnerabilities are submitted by the current thread. All worker
+	 * threads have terminated when this method returns.
+	 * @param scanIndex
+	 * @param runThreads
+	 * @param conversionThreads
+	 * @param batchSize
+	 * @throws ScanParsingException
+	 * @throws IOException
+	 */
+	private final void parseConcurrently(ScanIndex scanIndex, int runThreads, int conversionThreads, int batchSize) throws ScanParsingException, IOException {
+		ExecutorService runExecutor = Executors.newFixedThreadPool(runThreads, createThreadFactory("sarif-run-"));
+		ExecutorService conversionExecutor = conversionThreads<=1 ? null 
+				: Executors.newFixedThreadPool(conversionThreads, createThreadFactory("sarif-convert-"));
+		List<RunVulnerabilityBuffer> buffers = new ArrayList<>();
+		try {
+			if ( scanIndex==null || !scanIndex.isRegionsAvailable() ) {
+				execute(runExecutor, conversionExecutor, conversionThreads, batchSize, buffers, pipeline->parseDocument(scanIndex, pipeline));
+			} else {
+				for ( RunIndex runIndex : scanIndex.getRuns() ) {
+					execute(runExecutor, conversionExecutor, conversionThreads, batchSize, buffers, pipeline->parseRun(runIndex, pipeline));
+				}
+			}
+			for ( RunVulnerabilityBuffer buffer : buffers ) {
+				buffer.drain(vulnerabilitiesProducer::submit);
+				buffer.close();
+			}
+		} finally {
+			runExecutor.shutdownNow();
+			if ( conversionExecutor!=null ) { conversionExecutor.shutdownNow(); }
+			buffers.forEach(RunVulnerabilityBuffer::close);
+			awaitTermination(runExecutor);
+			awaitTermination(conversionExecutor);
+		}
+	}
+	
+	/**
+	 * Wait for the given {@link ExecutorService} (may be <code>null</code>) to terminate 
+	 * after it has been shut down, such that no worker threads are left running once 
+	 * parsing has completed. 
+	 */
+	private static final void awaitTermination(ExecutorService executor) {
+		try {
+			if ( executor!=null && !executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS) ) {
+				LOG.warn("Worker threads didn't terminate within {} seconds", TERMINATION_TIMEOUT_SECONDS);
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Execute the given {@link PipelineTask} on the given run {@link ExecutorService},
+	 * passing a new {@link ConversionPipeline} that adds all converted vulnerabilities
+	 * to a new {@link RunVulnerabilityBuffer}. The new buffer is added to the given
+	 * list of buffers, and completed once the task has finished.
+	 */
+	private final void execute(ExecutorService runExecutor, ExecutorService conversionExecutor, int conversionThreads, int batchSize, List<RunVulnerabilityBuffer> buffers, PipelineTask task) {
+		RunVulnerabilityBuffer buffer = new RunVulnerabilityBuffer(tempStorage);
+		buffers.add(buffer);
+		ConversionPipeline pipeline = new ConversionPipeline(vulnerabilitiesProducer::convert, conversionExecutor, conversionThreads*2, batchSize, buffer::add);
+		runExecutor.execute(()->{
+			try {
+				task.run(pipeline);
+				buffer.complete(null);
+			} catch ( Throwable t ) {
+				buffer.complete(t);
+			}
+		});
+	}
+	
+	/**
+	 * This method streams the full input document, invoking {@link #parseRun(ExtendedJsonParser, RunIndex, ConversionPipeline)}
+	 * for each entry in the SARIF <code>runs</code> array, passing the corresponding {@link RunIndex}
+	 * from the given {@link ScanIndex} if available.
+	 * @param scanIndex may be <code>null</code>
+	 * @param pipeline
+	 * @throws ScanParsingException
+	 * @throws IOException
+	 */
+	private final void parseDocument(ScanIndex scanIndex, ConversionPipeline pipeline) throws ScanParsingException, IOException {
+		List<RunIndex> runs = scanIndex==null ? Collections.emptyList() : scanIndex.getRuns();
+		int[] runNumber = {0};
+		createParser()
+			.handler("/runs/*", jsonParser->{
+				int run = runNumber[0]++;
+				parseRun(jsonParser, run<runs.size() ? runs.get(run) : null, pipeline);
+			})
+			.parseInput(scanData);
 	}
 
 	/**
 	 * This method parses an individual run from the SARIF <code>runs</code>
 	 * array using the following steps:
 	 * <ol>
-	 *   <li>Initialize a temporary disk-backed database</li>
+	 *   <li>Initialize a {@link RunDataStore}, which creates a temporary disk-backed 
+	 *       database only if the run data exceeds the configured in-memory size</li>
 	 *   <li>Parse SARIF data into a {@link RunData} object (which stores some 
-	 *       of the data in the disk-backed database</li>
-	 *   <li>Invoke {@link #parseResults(RunData)} to parse and process the 
-	 *       SARIF <code>results</code> array</li>
-	 *   <li>Close the temporary database once parsing has completed</li>
+	 *       of the data in the {@link RunDataStore}), passing each entry in
+	 *       the SARIF <code>results</code> array to the given {@link ConversionPipeline}</li>
+	 *   <li>Wait for the {@link ConversionPipeline} to finish processing all
+	 *       results for this run</li>
+	 *   <li>Close the {@link RunDataStore} once parsing has completed</li>
+	 * If a {@link RunIndex} is given, only the auxiliary run properties that it 
+	 * describes are expected to be present in the run.
 	 * @param jsonParser
+	 * @param runIndex may be <code>null</code>
+	 * @param pipeline
 	 * @throws IOException
 	 */
-	private final void parseRun(ExtendedJsonParser jsonParser) throws IOException {
-		try ( DB db = DBMaker.tempFileDB()
-				.closeOnJvmShutdown().fileDeleteAfterClose()
-				.fileMmapEnableIfSupported()
-				.make() ) {
-			RunData runData = RunData.parseRunData(db, jsonParser);
-			parseResults(runData);
+	private final void parseRun(ExtendedJsonParser jsonParser, RunIndex runIndex, ConversionPipeline pipeline) throws IOException {
+		try ( RunDataStore store = new RunDataStore(tempStorage) ) {
+			RunData runData = runIndex==null 
+					? RunData.parseRunData(store, jsonParser, pipeline)
+					: RunData.parseRunData(store, runIndex.getAuxiliaryPropertyNames(), pipeline, 
+						rd->rd.addHandlers(new StreamingJsonParser()).parseObjectProperties(jsonParser, "/"));
+			pipeline.finish();
+			LOG.debug("Processed run: {}", runData.getCacheStatistics());
 		}
 	}
 	
 	/**
-	 * This method re-parses the SARIF <code>results</code> array, based on the
-	 * input document {@link Region} previously collected in the given {@link RunData}
-	 * object. For each entry in the <code>results</code> array:
-	 * <ol>
-	 *  <li>The JSON contents are mapped to a {@link Result} object</li>
-	 *  <li>The {@link Result} and {@link RunData} objects are passed to the
-	 *      {@link VulnerabilitiesProducer#produceVulnerability(RunData, Result)} method to produce
-	 *      the actual Fortify vulnerability (if applicable)</li>
-	 * </ol>
-	 * @param runData
+	 * This method parses an individual run described by the given {@link RunIndex},
+	 * similar to {@link #parseRun(ExtendedJsonParser, RunIndex, ConversionPipeline)}, but only 
+	 * parsing the input document region for this run.
+	 * @param runIndex
+	 * @param pipeline
 	 * @throws IOException
 	 */
-	private final void parseResults(final RunData runData) throws IOException {
-		new SarifScanDataStreamingJsonParser()
-			.expectedStartTokens(JsonToken.START_ARRAY)
-			.handler("/*", Result.class, result->vulnerabilitiesProducer.produceVulnerability(runData, result))
-			.parse(scanData, runData.getResultsRegion());
+	private final void parseRun(RunIndex runIndex, ConversionPipeline pipeline) throws IOException {
+		try ( RunDataStore store = new RunDataStore(tempStorage); FileChannel channel = openDeferredRunDataChannel() ) {
+			long runStart = runIndex.getRunRegion().getStart();
+			RunData runData = RunData.parseRunData(store, runIndex.getAuxiliaryPropertyNames(), pipeline,
+				rd->rd.addHandlers(createParser()).parseRegion(scanData, runIndex.getRunRegion()),
+				channel==null ? null : (start, end)->read(channel, runStart+start, runStart+end));
+			pipeline.finish();
+			LOG.debug("Processed run: {}", runData.getCacheStatistics());
+		}
+	}
+	
+	/**
+	 * If enabled through the {@value #PROPERTY_DEFERRED_RUN_DATA} system property, open a 
+	 * {@link FileChannel} for reading rules and artifacts on demand; see {@link RunData} 
+	 * for details. As {@link RunData} records the input offsets reported by the JSON parser,
+	 * this is not supported if unused properties are being skipped.
+	 * @return {@link FileChannel} for reading rules and artifacts, or null if rules and 
+	 *         artifacts should be stored in the {@link RunDataStore}
+	 */
+	private final FileChannel openDeferredRunDataChannel() throws IOException {
+		return Boolean.getBoolean(PROPERTY_DEFERRED_RUN_DATA) && !Boolean.getBoolean(PROPERTY_SKIP_UNUSED_PROPERTIES) 
+				? SarifScanDataStreamingJsonParser.openFileChannel(scanData) : null;
+	}
+	
+	private static final byte[] read(FileChannel channel, long start, long end) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int)(end-start));
+		while ( buffer.hasRemaining() ) {
+			if ( channel.read(buffer, start+buffer.position())==-1 ) {
+				throw new EOFException("Unexpected end of input while reading region "+start+"-"+end);
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Create a {@link SarifScanDataStreamingJsonParser} instance. If enabled through the
+	 * {@value #PROPERTY_SKIP_UNUSED_PROPERTIES} system property, the parser skips the result 
+	 * and artifact properties that are not used for producing vulnerabilities, like graphs
+	 * and artifact contents, at the byte level. This is only beneficial if these
+	 * properties make up the majority of the input, so this is disabled by default.
+	 * @return New {@link SarifScanDataStreamingJsonParser} instance
+	 */
+	private static final SarifScanDataStreamingJsonParser createParser() {
+		SarifScanDataStreamingJsonParser parser = new SarifScanDataStreamingJsonParser();
+		if ( Boolean.getBoolean(PROPERTY_SKIP_UNUSED_PROPERTIES) ) {
+			parser
+				.skipProperties("results", "graphs", "graphTraversals", "stacks", 
+						"relatedLocations", "fixes", "webRequest", "webResponse", "attachments")
+				.skipProperties("artifacts", "contents");
+		}
+		return parser;
+	}
+	
+	private static final int getThreads(String propertyName) {
+		return Math.max(1, Integer.getInteger(propertyName, 1));
+	}
+	
+	private static final ThreadFactory createThreadFactory(String namePrefix) {
+		return runnable -> {
+			Thread thread = new Thread(runnable, namePrefix+THREAD_COUNTER.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+	
+	/**
+	 * Functional interface for tasks executed on a run worker thread.
+	 */
+	@FunctionalInterface
+	private static interface PipelineTask {
+		public void run(ConversionPipeline pipeline) throws ScanParsingException, IOException;
 	}
 }
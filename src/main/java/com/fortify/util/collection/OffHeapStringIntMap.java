@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.collection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class provides an open-addressing hash map from {@link String} keys to
+ * primitive <code>int</code> values, storing both the hash table and the UTF-8 
+ * encoded keys in direct (off-heap) {@link ByteBuffer} instances. Compared to 
+ * a regular {@link java.util.Map}, this avoids per-entry objects and boxing, 
+ * and lookups compare the given key directly against the stored UTF-8 bytes 
+ * without encoding or allocating anything.
+ * 
+ * The hash table uses linear probing with a maximum load factor of 0.5; each 
+ * slot stores the key hash, a reference to the encoded key, and the value. 
+ * Entries cannot be removed.
+ * 
+ * This class is not thread-safe while entries are being added. Once all entries 
+ * have been added and the map has been safely published, it may be read by 
+ * multiple threads concurrently without any locking, as lookups only use 
+ * absolute buffer reads.
+ * 
+ * @author Ruud Senden
+ */
+public final class OffHeapStringIntMap {
+	private static final int SLOT_SIZE = 12;
+	private static final int HASH_OFFSET = 0;
+	private static final int KEY_OFFSET = 4;
+	private static final int VALUE_OFFSET = 8;
+	private static final int MIN_CAPACITY = 16;
+	private ByteBuffer slots;
+	private ByteBuffer keys;
+	private int mask;
+	private int size = 0;
+	
+	/**
+	 * Create a new, empty map.
+	 */
+	public OffHeapStringIntMap() {
+		this(MIN_CAPACITY);
+	}
+	
+	/**
+	 * Create a new, empty map that can hold the given number 
+	 * of entries without resizing.
+	 * @param expectedSize
+	 */
+	public OffHeapStringIntMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while ( capacity/2 < expectedSize ) { capacity <<= 1; }
+		this.slots = allocate(capacity*SLOT_SIZE);
+		this.keys = allocate(capacity*16);
+		this.mask = capacity-1;
+	}
+	
+	/**
+	 * @return Number of entries in this map
+	 */
+	public final int size() {
+		return size;
+	}
+	
+	/**
+	 * Associate the given value with the given key, replacing any existing value.
+	 * @param key Non-null key
+	 * @param value
+	 */
+	public final void put(String key, int value) {
+		if ( (size+1)*2 > mask+1 ) {
+			resize((mask+1)*2);
+		}
+		int hash = hash(key);
+		int slot = findSlot(key, hash);
+		int pos = slot*SLOT_SIZE;
+		if ( slots.getInt(pos+KEY_OFFSET)==0 ) {
+			slots.putInt(pos+HASH_OFFSET, hash);
+			slots.putInt(pos+KEY_OFFSET, addKey(key));
+			size++;
+		}
+		slots.putInt(pos+VALUE_OFFSET, value);
+	}
+	
+	/**
+	 * Get the value associated with the given key.
+	 * @param key
+	 * @param defaultValue
+	 * @return Value associated with the given key, or the given default value 
+	 *         if the given key is <code>null</code> or not present in this map
+	 */
+	public final int get(String key, int defaultValue) {
+		if ( key==null ) { return defaultValue; }
+		int pos = findSlot(key, hash(key))*SLOT_SIZE;
+		return slots.getInt(pos+KEY_OFFSET)==0 ? defaultValue : slots.getInt(pos+VALUE_OFFSET);
+	}
+	
+	/**
+	 * Find either the slot containing the given key, or the empty 
+	 * slot where the given key should be inserted.
+	 */
+	private final int findSlot(String key, int hash) {
+		int slot = hash & mask;
+		while ( true ) {
+			int pos = slot*SLOT_SIZE;
+			int keyRef = slots.getInt(pos+KEY_OFFSET);
+			if ( keyRef==0 || (slots.getInt(pos+HASH_OFFSET)==hash && keyEquals(keyRef, key)) ) {
+				return slot;
+			}
+			slot = (slot+1) & mask;
+		}
+	}
+	
+	private final void resize(int capacity) {
+		ByteBuffer oldSlots = this.slots;
+		int oldCapacity = mask+1;
+		this.slots = allocate(capacity*SLOT_SIZE);
+		this.mask = capacity-1;
+		for ( int i = 0 ; i < oldCapacity ; i++ ) {
+			int oldPos = i*SLOT_SIZE;
+			int keyRef = oldSlots.getInt(oldPos+KEY_OFFSET);
+			if ( keyRef!=0 ) {
+				int hash = oldSlots.getInt(oldPos+HASH_OFFSET);
+				int slot = hash & mask;
+				while ( slots.getInt(slot*SLOT_SIZE+KEY_OFFSET)!=0 ) { slot = (slot+1) & mask; }
+				int pos = slot*SLOT_SIZE;
+				slots.putInt(pos+HASH_OFFSET, hash);
+				slots.putInt(pos+KEY_OFFSET, keyRef);
+				slots.putInt(pos+VALUE_OFFSET, oldSlots.getInt(oldPos+VALUE_OFFSET));
+			}
+		}
+	}
+	
+	/**
+	 * Append the given key to the key buffer, prefixed by its encoded length.
+	 * @return Key reference, being the key offset plus one (as 0 denotes an empty slot)
+	 */
+	private final int addKey(String key) {
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		if ( keys.remaining() < 4+bytes.length ) {
+			long required = (long)keys.position()+4+bytes.length;
+			long newCapacity = Math.max(required, 2L*keys.capacity());
+			if ( required > Integer.MAX_VALUE ) {
+				throw new IllegalStateException("Maximum key storage size exceeded");
+			}
+			ByteBuffer newKeys = allocate((int)Math.min(Integer.MAX_VALUE, newCapacity));
+			keys.flip();
+			newKeys.put(keys);
+			keys = newKeys;
+		}
+		int offset = keys.position();
+		keys.putInt(bytes.length);
+		keys.put(bytes);
+		return offset+1;
+	}
+	
+	/**
+	 * Compare the key identified by the given key reference with the 
+	 * given {@link String}, encoding the {@link String} on the fly in 
+	 * the same way as {@link String#getBytes(java.nio.charset.Charset)} 
+	 * (replacing unpaired surrogates with '?').
+	 */
+	private final boolean keyEquals(int keyRef, String key) {
+		int pos = keyRef-1;
+		int end = pos+4+keys.getInt(pos);
+		pos += 4;
+		int length = key.length();
+		for ( int i = 0 ; i < length ; i++ ) {
+			char c = key.charAt(i);
+			if ( c < 0x80 ) {
+				if ( pos>=end || keys.get(pos++)!=(byte)c ) { return false; }
+			} else if ( c < 0x800 ) {
+				if ( pos+2>end 
+						|| keys.get(pos++)!=(byte)(0xC0 | (c>>6)) 
+						|| keys.get(pos++)!=(byte)(0x80 | (c & 0x3F)) ) { return false; }
+			} else if ( Character.isSurrogate(c) ) {
+				if ( Character.isHighSurrogate(c) && i+1<length && Character.isLowSurrogate(key.charAt(i+1)) ) {
+					int cp = Character.toCodePoint(c, key.charAt(++i));
+					if ( pos+4>end 
+							|| keys.get(pos++)!=(byte)(0xF0 | (cp>>18))
+							|| keys.get(pos++)!=(byte)(0x80 | ((cp>>12) & 0x3F))
+							|| keys.get(pos++)!=(byte)(0x80 | ((cp>>6) & 0x3F))
+							|| keys.get(pos++)!=(byte)(0x80 | (cp & 0x3F)) ) { return false; }
+				} else if ( pos>=end || keys.get(pos++)!='?' ) { 
+					return false; 
+				}
+			} else {
+				if ( pos+3>end 
+						|| keys.get(pos++)!=(byte)(0xE0 | (c>>12))
+						|| keys.get(pos++)!=(byte)(0x80 | ((c>>6) & 0x3F))
+						|| keys.get(pos++)!=(byte)(0x80 | (c & 0x3F)) ) { return false; }
+			}
+		}
+		return pos==end;
+	}
+	
+	private static final int hash(String key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h>>>16);
+	}
+	
+	private static final ByteBuffer allocate(int size) {
+		return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+	}
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.compress;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.airlift.compress.zstd.ZstdInputStream;
+
+/**
+ * This class provides utility methods for transparently handling compressed
+ * input. The compression format is detected based on the magic bytes at the
+ * start of the input, so this doesn't rely on file names or extensions.
+ * 
+ * @author Ruud Senden
+ */
+public final class CompressionHelper {
+	private static final int BUFFER_SIZE = 64*1024;
+	
+	/**
+	 * Supported compression formats
+	 */
+	public static enum CompressionFormat {
+		NONE, GZIP, ZSTD;
+	}
+	
+	private CompressionHelper() {}
+	
+	/**
+	 * Detect the {@link CompressionFormat} based on the given header bytes.
+	 * @param header containing the first bytes of the input
+	 * @param length number of valid bytes in the header array
+	 * @return Detected {@link CompressionFormat}
+	 */
+	public static final CompressionFormat detectFormat(byte[] header, int length) {
+		if ( length>=2 && (header[0]&0xFF)==0x1F && (header[1]&0xFF)==0x8B ) {
+			return CompressionFormat.GZIP;
+		} else if ( length>=4 && (header[0]&0xFF)==0x28 && (header[1]&0xFF)==0xB5 && (header[2]&0xFF)==0x2F && (header[3]&0xFF)==0xFD ) {
+			return CompressionFormat.ZSTD;
+		} else {
+			return CompressionFormat.NONE;
+		}
+	}
+	
+	/**
+	 * Detect the {@link CompressionFormat} of the given {@link InputStream}; 
+	 * the given {@link InputStream} must support {@link InputStream#mark(int)}.
+	 * @param inputStream
+	 * @return Detected {@link CompressionFormat}
+	 * @throws IOException
+	 */
+	public static final CompressionFormat detectFormat(InputStream inputStream) throws IOException {
+		byte[] header = new byte[4];
+		inputStream.mark(header.length);
+		try {
+			return detectFormat(header, readFully(inputStream, header));
+		} finally {
+			inputStream.reset();
+		}
+	}
+	
+	/**
+	 * Wrap the given {@link InputStream} to decompress the input if it is 
+	 * compressed in any of the supported formats. Uncompressed input is
+	 * returned as-is (with buffering). Multi-member gzip input is decompressed
+	 * in parallel if possible; see {@link ParallelGzipInputStream}. 
+	 * @param inputStream
+	 * @return {@link InputStream} providing the decompressed input
+	 * @throws IOException
+	 */
+	public static final InputStream decompress(InputStream inputStream) throws IOException {
+		InputStream bufferedInputStream = new BufferedInputStream(inputStream, BUFFER_SIZE);
+		switch ( detectFormat(bufferedInputStream) ) {
+		case GZIP: return new ParallelGzipInputStream(bufferedInputStream);
+		case ZSTD: return new BufferedInputStream(new ZstdInputStream(bufferedInputStream), BUFFER_SIZE);
+		default: return bufferedInputStream;
+		}
+	}
+	
+	private static final int readFully(InputStream inputStream, byte[] buffer) throws IOException {
+		int total = 0;
+		while ( total<buffer.length ) {
+			int read = inputStream.read(buffer, total, buffer.length-total);
+			if ( read<0 ) { break; }
+			total += read;
+		}
+		return total;
+	}
+}
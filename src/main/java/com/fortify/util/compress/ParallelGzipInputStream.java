@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.compress;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * {@link InputStream} implementation for decompressing gzip input using a
+ * background read-ahead thread, such that consumers of this {@link InputStream}
+ * don't need to wait for decompression.
+ * 
+ * Multi-member gzip input in which every member specifies its compressed size
+ * (like the BGZF format produced by <code>bgzip</code>), is decompressed in
+ * parallel; the read-ahead thread reads the compressed members, and submits
+ * them to a pool of inflater threads. For other gzip input, the member size 
+ * can only be determined by decompressing the member, so the read-ahead thread
+ * decompresses this input sequentially.
+ * 
+ * Decompressed chunks are returned in input order. Memory usage is bounded
+ * by the maximum number of chunks that are queued or being decompressed,
+ * which is twice the number of inflater threads. 
+ * 
+ * @author Ruud Senden
+ */
+public final class ParallelGzipInputStream extends InputStream {
+	private static final int DEFAULT_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	private static final int CHUNK_SIZE = 64*1024;
+	/** Maximum uncompressed size of a single BGZF block */
+	private static final int MAX_BLOCK_SIZE = 64*1024;
+	private static final int FHCRC=2, FEXTRA=4, FNAME=8, FCOMMENT=16;
+	private static final byte[] EMPTY = new byte[0];
+	private static final Future<byte[]> END = CompletableFuture.completedFuture(null);
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+	private final InputStream in;
+	private final ExecutorService inflaters;
+	private final BlockingQueue<Future<byte[]>> chunks;
+	private final Thread readAheadThread;
+	private byte[] current = EMPTY;
+	private int position = 0;
+	private boolean eof = false;
+	private volatile boolean closed = false;
+	
+	public ParallelGzipInputStream(InputStream in) {
+		this(in, DEFAULT_THREADS);
+	}
+	
+	public ParallelGzipInputStream(InputStream in, int threads) {
+		this.in = in;
+		this.chunks = new ArrayBlockingQueue<>(threads*2);
+		this.inflaters = Executors.newFixedThreadPool(threads, r->createDaemonThread(r, "gzip-inflater"));
+		this.readAheadThread = createDaemonThread(this::readAhead, "gzip-read-ahead");
+		this.readAheadThread.start();
+	}
+	
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1)==-1 ? -1 : b[0] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ( closed ) { throw new IOException("Stream closed"); }
+		if ( len==0 ) { return 0; }
+		while ( position>=current.length ) {
+			if ( !nextChunk() ) { return -1; }
+		}
+		int count = Math.min(len, current.length-position);
+		System.arraycopy(current, position, b, off, count);
+		position += count;
+		return count;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return current.length-position;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if ( !closed ) {
+			closed = true;
+			readAheadThread.interrupt();
+			inflaters.shutdownNow();
+			chunks.clear();
+			in.close();
+		}
+	}
+	
+	private boolean nextChunk() throws IOException {
+		if ( eof ) { return false; }
+		try {
+			Future<byte[]> chunk = chunks.take();
+			if ( chunk==END ) {
+				eof = true;
+				return false;
+			}
+			current = chunk.get();
+			position = 0;
+			return true;
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+		} catch ( ExecutionException e ) {
+			Throwable cause = e.getCause();
+			throw cause instanceof IOException ? (IOException)cause : new IOException("Error decompressing gzip input", cause);
+		}
+	}
+	
+	/**
+	 * Run by the read-ahead thread; read all gzip members from the input,
+	 * and queue the corresponding decompressed chunks.
+	 */
+	private void readAhead() {
+		// No more blocks are submitted once the read-ahead thread ends, so the inflater
+		// threads terminate after inflating any pending blocks, without waiting for close()
+		try {
+			PushbackInputStream pin = new PushbackInputStream(in, 1);
+			boolean firstMember = true;
+			int b;
+			while ( !closed && (b = pin.read())!=-1 ) {
+				pin.unread(b);
+				ByteArrayOutputStream header = new ByteArrayOutputStream();
+				int blockSize = readHeader(pin, header, firstMember);
+				if ( blockSize<0 ) {
+					// Unable to determine member size, so we decompress the remaining input sequentially
+					inflateSequentially(new SequenceInputStream(new ByteArrayInputStream(header.toByteArray()), pin));
+					break;
+				} else if ( blockSize==0 ) {
+					break; // Trailing garbage after last member, ignored similar to GZIPInputStream
+				}
+				// Remaining block must at least hold the CRC32 and uncompressed size
+				if ( blockSize<header.size()+8 ) { throw new ZipException("Corrupt GZIP block"); }
+				byte[] block = readFully(pin, blockSize-header.size());
+				putChunk(inflaters.submit(()->inflateBlock(block)));
+				firstMember = false;
+			}
+			putChunk(END);
+		} catch ( InterruptedException | InterruptedIOException e ) {
+			// Stream was closed, nothing to do
+		} catch ( Throwable t ) {
+			CompletableFuture<byte[]> failed = new CompletableFuture<>();
+			failed.completeExceptionally(t);
+			try {
+				putChunk(failed);
+				putChunk(END);
+			} catch ( InterruptedException e ) {
+				// Stream was closed, nothing to do
+			}
+		} finally {
+			inflaters.shutdown();
+		}
+	}
+	
+	/**
+	 * Read the gzip member header into the given {@link ByteArrayOutputStream}. 
+	 * @return Total member size as specified by a BGZF extra field, -1 if the 
+	 *         member size is unknown, or 0 if the input doesn't contain another 
+	 *         gzip member
+	 */
+	private int readHeader(InputStream in, ByteArrayOutputStream header, boolean firstMember) throws IOException {
+		byte[] fixed = new byte[10];
+		int length = read(in, fixed);
+		header.write(fixed, 0, length);
+		if ( length<fixed.length || (fixed[0]&0xFF)!=0x1F || (fixed[1]&0xFF)!=0x8B || fixed[2]!=8 ) {
+			if ( firstMember ) { throw new ZipException("Not in GZIP format"); }
+			return 0;
+		}
+		int flags = fixed[3]&0xFF;
+		if ( (flags & FEXTRA)==0 || (flags & (FNAME|FCOMMENT|FHCRC))!=0 ) {
+			return -1;
+		}
+		byte[] xlenBytes = readFully(in, 2);
+		header.write(xlenBytes);
+		int xlen = readUnsignedShort(xlenBytes, 0);
+		byte[] extra = readFully(in, xlen);
+		header.write(extra);
+		for ( int i = 0 ; i+4<=xlen ; ) {
+			int slen = readUnsignedShort(extra, i+2);
+			if ( extra[i]=='B' && extra[i+1]=='C' && slen==2 && i+6<=xlen ) {
+				return readUnsignedShort(extra, i+4)+1;
+			}
+			i += 4+slen;
+		}
+		return -1;
+	}
+	
+	private void inflateSequentially(InputStream in) throws IOException, InterruptedException {
+		try ( GZIPInputStream gzipInputStream = new GZIPInputStream(in, CHUNK_SIZE) ) {
+			while ( !closed ) {
+				byte[] chunk = new byte[CHUNK_SIZE];
+				int length = 0, read = 0;
+				while ( length<CHUNK_SIZE && (read = gzipInputStream.read(chunk, length, CHUNK_SIZE-length))!=-1 ) {
+					length += read;
+				}
+				if ( length>0 ) {
+					putChunk(CompletableFuture.completedFuture(length==CHUNK_SIZE ? chunk : Arrays.copyOf(chunk, length)));
+				}
+				if ( read==-1 ) { break; }
+			}
+		}
+	}
+	
+	/**
+	 * Inflate a single BGZF block (excluding the header), consisting of the
+	 * compressed data followed by the CRC32 and uncompressed size.
+	 */
+	private static byte[] inflateBlock(byte[] block) throws IOException {
+		int compressedLength = block.length-8;
+		if ( compressedLength<0 ) { throw new ZipException("Corrupt GZIP block"); }
+		int expectedCrc = readInt(block, compressedLength);
+		int uncompressedLength = readInt(block, compressedLength+4);
+		// Uncompressed size is read from untrusted input, so check before allocating
+		if ( uncompressedLength<0 || uncompressedLength>MAX_BLOCK_SIZE ) { throw new ZipException("Corrupt GZIP block"); }
+		if ( uncompressedLength==0 ) { return EMPTY; }
+		byte[] result = new byte[uncompressedLength];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(block, 0, compressedLength);
+			int length = 0;
+			while ( length<uncompressedLength && !inflater.finished() ) {
+				int inflated = inflater.inflate(result, length, uncompressedLength-length);
+				if ( inflated==0 && (inflater.needsInput() || inflater.needsDictionary()) ) { break; }
+				length += inflated;
+			}
+			if ( length!=uncompressedLength ) { throw new ZipException("Corrupt GZIP block"); }
+		} catch ( DataFormatException e ) {
+			throw new ZipException("Corrupt GZIP block: "+e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(result, 0, result.length);
+		if ( (int)crc.getValue()!=expectedCrc ) { throw new ZipException("Corrupt GZIP block (CRC mismatch)"); }
+		return result;
+	}
+	
+	private void putChunk(Future<byte[]> chunk) throws InterruptedException {
+		if ( !closed ) { chunks.put(chunk); }
+	}
+	
+	private static byte[] readFully(InputStream in, int length) throws IOException {
+		byte[] result = new byte[length];
+		if ( read(in, result)<length ) { throw new EOFException("Unexpected end of GZIP input"); }
+		return result;
+	}
+	
+	private static int read(InputStream in, byte[] buffer) throws IOException {
+		int total = 0;
+		while ( total<buffer.length ) {
+			int read = in.read(buffer, total, buffer.length-total);
+			if ( read<0 ) { break; }
+			total += read;
+		}
+		return total;
+	}
+	
+	private static int readUnsignedShort(byte[] b, int offset) {
+		return (b[offset]&0xFF) | ((b[offset+1]&0xFF)<<8);
+	}
+	
+	private static int readInt(byte[] b, int offset) {
+		return readUnsignedShort(b, offset) | (readUnsignedShort(b, offset+2)<<16);
+	}
+	
+	private static Thread createDaemonThread(Runnable runnable, String name) {
+		Thread thread = new Thread(runnable, name+"-"+THREAD_COUNTER.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
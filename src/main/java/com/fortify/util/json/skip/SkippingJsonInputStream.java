@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.json.skip;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This {@link InputStream} implementation removes the contents of selected 
+ * JSON object and array values from the wrapped JSON input stream, before 
+ * the input is passed to a JSON parser. A value is removed if it is an 
+ * object or array, and its property name is configured as a skipped 
+ * property for the array that contains the parent object. For example, 
+ * with <code>results</code> mapped to <code>codeFlows</code>, 
+ * <code>{"results":[{"codeFlows":[...],"message":{...}}]}</code> is 
+ * passed on as <code>{"results":[{"codeFlows":[],"message":{...}}]}</code>.
+ * 
+ * Skipped values are found by scanning the raw bytes for quotes, escapes and
+ * brackets only; no tokens or strings are materialized for skipped content,
+ * and the JSON parser never sees the skipped content. Note that byte offsets 
+ * reported by the JSON parser refer to the filtered input, not the original 
+ * input.
+ * 
+ * Input is expected to be UTF-8 encoded (like SARIF); as all structural 
+ * characters are ASCII, multi-byte characters never need to be decoded.
+ * 
+ * @author Ruud Senden
+ */
+public final class SkippingJsonInputStream extends FilterInputStream {
+	private static final int BUFFER_SIZE = 64*1024;
+	private static final int NO_CODE = 0;
+	// Container code offset for objects that are array elements
+	private static final int ELEMENT = 1<<16;
+	// Non-zero for bytes that need to be looked at outside of strings
+	private static final byte[] STRUCTURAL = new byte[256];
+	// Non-zero for bytes that need to be looked at inside strings
+	private static final byte[] STRING_SPECIAL = new byte[256];
+	static {
+		for ( char c : "\"{}[]:,".toCharArray() ) { STRUCTURAL[c] = 1; }
+		STRING_SPECIAL['"'] = 1;
+		STRING_SPECIAL['\\'] = 1;
+	}
+	private final byte[][] names;
+	private final boolean[][] skippedNamesByArrayCode;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferPos = 0;
+	private int bufferLimit = 0;
+	private boolean eof = false;
+	
+	// Structural state
+	private int[] containerCodes = new int[64];
+	private boolean[] containerIsArray = new boolean[64];
+	private int depth = 0;
+	private boolean inString = false;
+	private boolean escapePending = false;
+	private boolean expectKey = false;
+	private int keyCode = NO_CODE;
+	private boolean skipNextValue = false;
+	
+	// Current key; keyStart is the buffer position of the first key byte, 
+	// keyPrefix holds any key bytes read before the last buffer refill
+	private int keyStart = 0;
+	private final byte[] keyPrefix;
+	private int keyPrefixLength = 0;
+	private boolean keyUnmatchable = false;
+	
+	// Skipped value state
+	private int skipDepth = 0;
+	private boolean skipInString = false;
+	private byte skipCloseChar;
+
+	/**
+	 * Create a new {@link SkippingJsonInputStream} instance.
+	 * @param in JSON {@link InputStream} to be filtered
+	 * @param skippedPropertiesByArrayName maps array property names to the set of 
+	 *        property names to be skipped on objects contained in such arrays 
+	 */
+	public SkippingJsonInputStream(InputStream in, Map<String, Set<String>> skippedPropertiesByArrayName) {
+		super(in);
+		List<String> nameList = new ArrayList<>(skippedPropertiesByArrayName.keySet());
+		skippedPropertiesByArrayName.values().forEach(set->set.forEach(name->{ if (!nameList.contains(name)) { nameList.add(name); } }));
+		// Name codes are 1-based indexes into the names array
+		this.names = nameList.stream().map(name->name.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+		this.keyPrefix = new byte[Arrays.stream(names).mapToInt(name->name.length).max().orElse(0)];
+		this.skippedNamesByArrayCode = new boolean[names.length+1][];
+		skippedPropertiesByArrayName.forEach((arrayName, skippedNames)->{
+			boolean[] skipped = new boolean[names.length+1];
+			skippedNames.forEach(name->skipped[nameList.indexOf(name)+1] = true);
+			skippedNamesByArrayCode[nameList.indexOf(arrayName)+1] = skipped;
+		});
+	}
+	
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		int read;
+		while ( (read = read(b, 0, 1))==0 ) {}
+		return read==-1 ? -1 : b[0] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if ( len==0 ) { return 0; }
+		int written = 0;
+		while ( written<len ) {
+			if ( bufferPos>=bufferLimit ) {
+				// Don't block for more input if we already have some output
+				if ( written>0 || !fill() ) { break; }
+			}
+			if ( skipDepth>0 ) {
+				bufferPos = skipValue(bufferPos, bufferLimit);
+				if ( skipDepth==0 ) { b[off+written++] = skipCloseChar; }
+			} else {
+				// Bytes outside of skipped values are passed on as-is, so copy in bulk
+				int end = scan(bufferPos, Math.min(bufferLimit, bufferPos+len-written));
+				System.arraycopy(buffer, bufferPos, b, off+written, end-bufferPos);
+				written += end-bufferPos;
+				bufferPos = end;
+			}
+		}
+		return written==0 ? -1 : written;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] b = new byte[(int)Math.min(n, BUFFER_SIZE)];
+		long remaining = n;
+		int read;
+		while ( remaining>0 && (read = read(b, 0, (int)Math.min(remaining, b.length)))!=-1 ) {
+			remaining -= read;
+		}
+		return n-remaining;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return 0;
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	@Override
+	public synchronized void mark(int readlimit) {}
+	
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+	
+	private final boolean fill() throws IOException {
+		if ( eof ) { return false; }
+		if ( inString && expectKey && !keyUnmatchable ) {
+			// Preserve key bytes read so far
+			int length = bufferLimit-keyStart;
+			if ( keyPrefixLength+length>keyPrefix.length ) {
+				keyUnmatchable = true;
+			} else {
+				System.arraycopy(buffer, keyStart, keyPrefix, keyPrefixLength, length);
+				keyPrefixLength += length;
+			}
+		}
+		int read = in.read(buffer, 0, buffer.length);
+		if ( read==-1 ) { eof = true; return false; }
+		bufferPos = 0;
+		bufferLimit = read;
+		keyStart = 0;
+		return true;
+	}
+	
+	/**
+	 * Skip bytes from the given buffer range until the end of the value being 
+	 * skipped, or until the end of the range.
+	 * @return buffer position after the last skipped byte
+	 */
+	private final int skipValue(int pos, int limit) {
+		final byte[] buf = buffer;
+		int depth = skipDepth;
+		boolean inString = skipInString;
+		int i = pos;
+		if ( escapePending && i<limit ) { escapePending = false; i++; }
+		while ( i<limit ) {
+			if ( inString ) {
+				while ( i<limit && STRING_SPECIAL[buf[i]&0xFF]==0 ) { i++; }
+				if ( i==limit ) { break; }
+				if ( buf[i++]=='"' ) {
+					inString = false; 
+				} else if ( i<limit ) { 
+					i++; // Skip escaped character
+				} else { 
+					escapePending = true; 
+				}
+			} else {
+				while ( i<limit && STRUCTURAL[buf[i]&0xFF]==0 ) { i++; }
+				if ( i==limit ) { break; }
+				byte c = buf[i++];
+				if ( c=='"' ) {
+					inString = true;
+				} else if ( c=='{' || c=='[' ) {
+					depth++;
+				} else if ( (c=='}' || c==']') && --depth==0 ) {
+					break;
+				}
+			}
+		}
+		skipDepth = depth;
+		skipInString = inString;
+		return i;
+	}
+	
+	/**
+	 * Process bytes from the given buffer range outside of skipped values,
+	 * stopping after any byte that starts a value to be skipped.
+	 * @return buffer position after the last processed byte
+	 */
+	private final int scan(int pos, int limit) {
+		final byte[] buf = buffer;
+		int i = pos;
+		if ( escapePending && i<limit ) { escapePending = false; i++; }
+		while ( i<limit ) {
+			if ( inString ) {
+				while ( i<limit && STRING_SPECIAL[buf[i]&0xFF]==0 ) { i++; }
+				if ( i==limit ) { break; }
+				if ( buf[i++]=='"' ) {
+					inString = false;
+					if ( expectKey ) { keyCode = getNameCode(buf, keyStart, i-1); }
+				} else {
+					keyUnmatchable = true; // Names containing escapes are never matched
+					if ( i<limit ) { i++; } else { escapePending = true; }
+				}
+			} else {
+				while ( i<limit && STRUCTURAL[buf[i]&0xFF]==0 ) { i++; }
+				if ( i<limit && process(buf[i++], i) ) { break; }
+			}
+		}
+		return i;
+	}
+	
+	/**
+	 * Process the given structural byte outside of strings and skipped values. 
+	 * @param c byte to be processed
+	 * @param next buffer position of the next byte
+	 * @return true if the given byte starts a value to be skipped
+	 */
+	private final boolean process(byte c, int next) {
+		switch ( c ) {
+		case '"':
+			inString = true;
+			skipNextValue = false;
+			if ( expectKey ) {
+				keyStart = next;
+				keyPrefixLength = 0;
+				keyUnmatchable = false;
+			}
+			break;
+		case ':':
+			expectKey = false;
+			skipNextValue = isSkipped(keyCode);
+			break;
+		case ',':
+			expectKey = depth>0 && !containerIsArray[depth-1];
+			keyCode = NO_CODE;
+			skipNextValue = false;
+			break;
+		case '{': case '[':
+			if ( skipNextValue ) {
+				skipNextValue = false;
+				skipDepth = 1;
+				skipInString = false;
+				skipCloseChar = (byte)(c=='{' ? '}' : ']');
+				keyCode = NO_CODE;
+				return true;
+			}
+			push(c=='[', getValueContainerCode());
+			expectKey = c=='{';
+			keyCode = NO_CODE;
+			break;
+		case '}': case ']':
+			if ( depth>0 ) { depth--; }
+			expectKey = false;
+			keyCode = NO_CODE;
+			skipNextValue = false;
+			break;
+		default:
+			break;
+		}
+		return false;
+	}
+	
+	private final int getValueContainerCode() {
+		if ( depth>0 && containerIsArray[depth-1] ) {
+			int arrayCode = containerCodes[depth-1];
+			return arrayCode>NO_CODE && arrayCode<ELEMENT ? ELEMENT+arrayCode : NO_CODE;
+		}
+		return keyCode;
+	}
+	
+	private final boolean isSkipped(int keyCode) {
+		if ( keyCode==NO_CODE || depth==0 ) { return false; }
+		int containerCode = containerCodes[depth-1];
+		if ( containerCode<=ELEMENT ) { return false; }
+		boolean[] skipped = skippedNamesByArrayCode[containerCode-ELEMENT];
+		return skipped!=null && skipped[keyCode];
+	}
+	
+	private final void push(boolean isArray, int code) {
+		if ( depth==containerCodes.length ) {
+			containerCodes = Arrays.copyOf(containerCodes, depth*2);
+			containerIsArray = Arrays.copyOf(containerIsArray, depth*2);
+		}
+		containerCodes[depth] = code;
+		containerIsArray[depth] = isArray;
+		depth++;
+	}
+	
+	/**
+	 * Get the code for the key consisting of the current key prefix and
+	 * the given buffer range.
+	 */
+	private final int getNameCode(byte[] buf, int start, int end) {
+		if ( keyUnmatchable ) { return NO_CODE; }
+		int length = keyPrefixLength+end-start;
+		for ( int n = 0 ; n < names.length ; n++ ) {
+			byte[] name = names[n];
+			if ( name.length==length && matches(name, buf, start) ) {
+				return n+1;
+			}
+		}
+		return NO_CODE;
+	}
+	
+	private final boolean matches(byte[] name, byte[] buf, int start) {
+		for ( int i = 0 ; i < name.length ; i++ ) {
+			byte b = i<keyPrefixLength ? keyPrefix[i] : buf[start+i-keyPrefixLength];
+			if ( name[i]!=b ) { return false; }
+		}
+		return true;
+	}
+}
@@ -0,0 +1,447 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.json.structural;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * This class scans a UTF-8 encoded JSON document to find the boundaries of the 
+ * values at a given set of paths, without tokenizing the document. Paths use 
+ * the same syntax as streaming JSON parser handlers; object properties are 
+ * identified by their name, array entries by <code>*</code>, for example 
+ * <code>/runs/&#42;/results</code>. For every value at one of the given paths,
+ * the configured {@link ValueHandler} is invoked with the byte offsets of that 
+ * value, and for arrays the number of array entries. Handlers are invoked in
+ * the order in which values end, so nested values are reported before the 
+ * values that contain them.
+ * 
+ * The input is processed in blocks of 64 bytes. For each block, bit masks 
+ * marking quotes, backslashes, brackets, colons and commas are computed using 
+ * SWAR (SIMD within a register) operations on 8-byte words. Escaped quotes and
+ * string contents are then masked out using branch-free carry and prefix-XOR
+ * arithmetic (as described in "Parsing Gigabytes of JSON per Second" by 
+ * Langdale and Lemire), leaving a bit mask of structural characters. Only 
+ * these structural characters are processed individually, so scanning cost 
+ * mostly depends on the number of structural characters rather than on the 
+ * number of bytes. Containers that cannot contain any of the given paths are
+ * skipped by counting opening and closing brackets per block; individual 
+ * brackets are only processed for the block in which such a container ends.
+ * 
+ * This scanner only checks that brackets are properly balanced (for skipped 
+ * containers, only that the number of opening and closing brackets match); 
+ * other syntax errors are not detected. Callers should expect such errors to be reported 
+ * once the relevant parts of the document are actually parsed.
+ * 
+ * @author Ruud Senden
+ */
+public final class JsonStructuralScanner {
+	private static final int BLOCK_SIZE = 64;
+	private static final int BUFFER_SIZE = 256*1024;
+	// Number of bytes kept in the buffer before the current block, for looking up property names
+	private static final int LOOKBEHIND = 4096;
+	private static final long ONES = 0x0101010101010101L;
+	private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+	private static final long EVEN_BITS = 0x5555555555555555L;
+	private static final long ODD_BITS = ~EVEN_BITS;
+	private static final long QUOTES = ONES*'"';
+	private static final long BACKSLASHES = ONES*'\\';
+	private static final long OPEN_BRACKETS = ONES*'{'; // '[' | 0x20 == '{'
+	private static final long CLOSE_BRACKETS = ONES*'}'; // ']' | 0x20 == '}'
+	private static final long LOWERCASE = ONES*0x20;
+	private static final long COLONS = ONES*':';
+	private static final long COMMAS = ONES*',';
+	
+	private final Set<String> paths;
+	private final Set<String> trackedPaths;
+	
+	// Input state
+	private InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final ByteBuffer bufferWords = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+	private long bufferOffset;
+	private int pos;
+	private int limit;
+	private boolean eof;
+	
+	// Block state
+	private long prevInString;
+	private long prevEndsOddBackslash;
+	
+	// Container state
+	private int depth;
+	private int skipNesting;
+	private boolean[] isArray = new boolean[64];
+	private String[] containerPaths = new String[64];
+	private String[] elementPaths = new String[64];
+	private long[] starts = new long[64];
+	private int[] commas = new int[64];
+	private int[] children = new int[64];
+	private String pendingPath;
+	private String scalarPath;
+	private long scalarStart;
+	private ValueHandler handler;
+	
+	/**
+	 * Create a new scanner for the given paths.
+	 * @param paths for which to report values
+	 */
+	public JsonStructuralScanner(Set<String> paths) {
+		this.paths = Collections.unmodifiableSet(new HashSet<>(paths));
+		this.trackedPaths = new HashSet<>();
+		trackedPaths.add("");
+		for ( String path : paths ) {
+			for ( int i = path.indexOf('/', 1) ; i > 0 ; i = path.indexOf('/', i+1) ) {
+				trackedPaths.add(path.substring(0, i));
+			}
+		}
+		trackedPaths.addAll(paths);
+	}
+	
+	/**
+	 * Scan the given {@link InputStream}, invoking the given {@link ValueHandler}
+	 * for every value at one of the configured paths.
+	 * @param in JSON input
+	 * @param handler invoked for every matching value 
+	 * @throws IOException if an I/O error occurs, if the brackets in the input document 
+	 *         are unbalanced, or if thrown by the given handler
+	 */
+	public final void scan(InputStream in, ValueHandler handler) throws IOException {
+		this.in = in;
+		this.handler = handler;
+		this.bufferOffset = 0;
+		this.pos = this.limit = 0;
+		this.eof = false;
+		this.prevInString = this.prevEndsOddBackslash = 0;
+		this.depth = this.skipNesting = 0;
+		this.pendingPath = this.scalarPath = null;
+		while ( fill() ) {
+			if ( limit-pos>=BLOCK_SIZE ) {
+				processBlock(buffer, pos, BLOCK_SIZE);
+				pos += BLOCK_SIZE;
+			} else if ( eof ) {
+				processBlock(buffer, pos, limit-pos);
+				pos = limit;
+			}
+		}
+		if ( depth!=0 || skipNesting!=0 ) {
+			throw new IOException("Unexpected end of JSON input");
+		}
+	}
+	
+	/**
+	 * Ensure that at least a full block is available, unless the end of 
+	 * input has been reached. 
+	 * @return false if all input has been processed
+	 */
+	private final boolean fill() throws IOException {
+		if ( limit-pos>=BLOCK_SIZE ) { return true; }
+		if ( eof ) { return pos<limit; }
+		int keepFrom = Math.max(0, pos-LOOKBEHIND);
+		if ( buffer.length-limit<BLOCK_SIZE ) {
+			System.arraycopy(buffer, keepFrom, buffer, 0, limit-keepFrom);
+			bufferOffset += keepFrom;
+			pos -= keepFrom;
+			limit -= keepFrom;
+		}
+		while ( limit-pos<BLOCK_SIZE && !eof ) {
+			int read = in.read(buffer, limit, buffer.length-limit);
+			if ( read==-1 ) { eof = true; } else { limit += read; }
+		}
+		return pos<limit;
+	}
+	
+	private final void processBlock(byte[] buf, int start, int length) throws IOException {
+		ByteBuffer words = bufferWords;
+		int wordsStart = start;
+		if ( length<BLOCK_SIZE ) {
+			// Pad last block with spaces
+			byte[] block = new byte[BLOCK_SIZE];
+			Arrays.fill(block, (byte)' ');
+			System.arraycopy(buf, start, block, 0, length);
+			words = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+			wordsStart = 0;
+		}
+		long quotes = 0, backslashes = 0, opens = 0, closes = 0, separators = 0;
+		for ( int w = 0 ; w < 8 ; w++ ) {
+			long word = words.getLong(wordsStart+w*8);
+			long lower = word | LOWERCASE;
+			int shift = w*8;
+			quotes |= gather(zeroBytes(word^QUOTES)) << shift;
+			long backslashBytes = zeroBytes(word^BACKSLASHES);
+			if ( backslashBytes!=0 ) {
+				backslashes |= gather(backslashBytes) << shift;
+			}
+			opens |= gather(zeroBytes(lower^OPEN_BRACKETS)) << shift;
+			closes |= gather(zeroBytes(lower^CLOSE_BRACKETS)) << shift;
+			separators |= gather(~(nonZeroBytes(word^COLONS) & nonZeroBytes(word^COMMAS))) << shift;
+		}
+		long escaped = backslashes==0 && prevEndsOddBackslash==0 ? 0 : findEscapedCharacters(backslashes);
+		long inString = prefixXor(quotes & ~escaped) ^ prevInString;
+		prevInString = inString >> 63;
+		opens &= ~inString;
+		closes &= ~inString;
+		long structural = (opens | closes | separators) & ~inString;
+		while ( structural!=0 ) {
+			if ( skipNesting>0 ) {
+				structural = skip(buf, start, structural, opens, closes);
+			} else {
+				int bit = Long.numberOfTrailingZeros(structural);
+				structural &= structural-1;
+				process(buf[start+bit], bufferOffset+start+bit);
+			}
+		}
+	}
+	
+	/**
+	 * Skip the contents of a container that doesn't contain any of the configured paths, 
+	 * by only tracking bracket nesting. If the given structural characters don't contain 
+	 * enough closing brackets to end the container, the nesting level is updated based 
+	 * on bracket counts without processing individual brackets. 
+	 * @return Remaining structural characters to be processed
+	 */
+	private final long skip(byte[] buf, int start, long structural, long opens, long closes) throws IOException {
+		long brackets = structural & (opens | closes);
+		int closeCount = Long.bitCount(brackets & closes);
+		if ( closeCount<skipNesting ) {
+			skipNesting += Long.bitCount(brackets & opens)-closeCount;
+			return 0;
+		}
+		while ( brackets!=0 ) {
+			int bit = Long.numberOfTrailingZeros(brackets);
+			brackets &= brackets-1;
+			if ( (opens & (1L << bit))!=0 ) {
+				skipNesting++;
+			} else if ( --skipNesting==0 ) {
+				close(buf[start+bit]==']', bufferOffset+start+bit);
+				return structural & -(1L << bit) << 1;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Determine the characters escaped by odd-length backslash sequences.
+	 */
+	private final long findEscapedCharacters(long backslashes) {
+		long startEdges = backslashes & ~(backslashes << 1);
+		long evenStartMask = EVEN_BITS ^ prevEndsOddBackslash;
+		long evenStarts = startEdges & evenStartMask;
+		long oddStarts = startEdges & ~evenStartMask;
+		long evenCarries = backslashes + evenStarts;
+		long oddCarries = backslashes + oddStarts;
+		long endsOddBackslash = Long.compareUnsigned(oddCarries, backslashes)<0 ? 1 : 0;
+		oddCarries |= prevEndsOddBackslash;
+		prevEndsOddBackslash = endsOddBackslash;
+		long evenCarryEnds = evenCarries & ~backslashes;
+		long oddCarryEnds = oddCarries & ~backslashes;
+		return (evenCarryEnds & ODD_BITS) | (oddCarryEnds & EVEN_BITS);
+	}
+	
+	private final void process(byte c, long offset) throws IOException {
+		switch ( c ) {
+		case '{': case '[': open(c=='[', offset); break;
+		case '}': case ']': close(c==']', offset); break;
+		case ':': colon(offset); break;
+		case ',': comma(offset); break;
+		default: break;
+		}
+	}
+	
+	private final void open(boolean array, long offset) {
+		String path = null;
+		if ( depth==0 ) {
+			path = "";
+		} else {
+			children[depth-1]++;
+			path = isArray[depth-1] ? elementPaths[depth-1] : pendingPath;
+		}
+		scalarPath = null;
+		pendingPath = null;
+		push(array, path, offset);
+		if ( path==null ) { skipNesting = 1; }
+	}
+	
+	private final void close(boolean array, long offset) throws IOException {
+		if ( depth==0 || isArray[depth-1]!=array ) {
+			throw new IOException("Unbalanced JSON brackets at offset "+offset);
+		}
+		emitScalar(offset);
+		depth--;
+		String path = containerPaths[depth];
+		if ( path!=null && paths.contains(path) ) {
+			int entries = array ? commas[depth]+(hasEntries(offset) ? 1 : 0) : 0;
+			handler.value(path, starts[depth], offset+1, entries);
+		}
+		pendingPath = null;
+	}
+	
+	private final void colon(long offset) {
+		if ( depth>0 && !isArray[depth-1] && containerPaths[depth-1]!=null ) {
+			String name = getPropertyName(offset);
+			String path = name==null ? null : containerPaths[depth-1]+"/"+name;
+			if ( path!=null && trackedPaths.contains(path) ) {
+				pendingPath = path;
+				if ( paths.contains(path) ) {
+					// Value may be a scalar; if so, value ends at next comma or closing bracket
+					scalarPath = path;
+					scalarStart = offset+1;
+				}
+			}
+		}
+	}
+	
+	private final void comma(long offset) throws IOException {
+		if ( depth>0 ) { commas[depth-1]++; }
+		emitScalar(offset);
+		pendingPath = null;
+	}
+	
+	private final void emitScalar(long end) throws IOException {
+		if ( scalarPath!=null ) {
+			String path = scalarPath;
+			scalarPath = null;
+			handler.value(path, scalarStart, end, 0);
+		}
+	}
+	
+	private final boolean hasEntries(long closeOffset) {
+		int d = depth;
+		if ( commas[d]>0 || children[d]>0 ) { return true; }
+		int from = (int)(starts[d]+1-bufferOffset);
+		int to = (int)(closeOffset-bufferOffset);
+		if ( from<0 ) { return true; } // No longer in buffer; can only be the case for non-empty arrays
+		for ( int i = from ; i < to ; i++ ) {
+			byte b = buffer[i];
+			if ( b!=' ' && b!='\t' && b!='\n' && b!='\r' ) { return true; }
+		}
+		return false;
+	}
+	
+	/**
+	 * Get the property name preceding the colon at the given offset, or null if the 
+	 * property name is not available in the buffer.
+	 */
+	private final String getPropertyName(long colonOffset) {
+		int end = (int)(colonOffset-bufferOffset)-1;
+		while ( end>=0 && isWhitespace(buffer[end]) ) { end--; }
+		if ( end<0 || buffer[end]!='"' ) { return null; }
+		for ( int i = end-1 ; i >= 0 ; i-- ) {
+			if ( buffer[i]=='"' && !isEscaped(i) ) {
+				return new String(buffer, i+1, end-i-1, StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+	
+	private final boolean isEscaped(int index) {
+		int backslashes = 0;
+		for ( int i = index-1 ; i >= 0 && buffer[i]=='\\' ; i-- ) { backslashes++; }
+		return backslashes%2==1;
+	}
+	
+	private final void push(boolean array, String path, long offset) {
+		if ( depth==isArray.length ) {
+			isArray = Arrays.copyOf(isArray, depth*2);
+			containerPaths = Arrays.copyOf(containerPaths, depth*2);
+			elementPaths = Arrays.copyOf(elementPaths, depth*2);
+			starts = Arrays.copyOf(starts, depth*2);
+			commas = Arrays.copyOf(commas, depth*2);
+			children = Arrays.copyOf(children, depth*2);
+		}
+		isArray[depth] = array;
+		containerPaths[depth] = path;
+		elementPaths[depth] = array && path!=null && trackedPaths.contains(path+"/*") ? path+"/*" : null;
+		starts[depth] = offset;
+		commas[depth] = 0;
+		children[depth] = 0;
+		depth++;
+	}
+	
+	private static final boolean isWhitespace(byte b) {
+		return b==' ' || b=='\t' || b=='\n' || b=='\r';
+	}
+	
+	/**
+	 * @return Word with the high bit of each byte set if that byte is non-zero; 
+	 *         the lower 7 bits of each byte are undefined 
+	 */
+	private static final long nonZeroBytes(long x) {
+		return ((x & LOW7) + LOW7) | x;
+	}
+	
+	/**
+	 * @return Word with the high bit of each byte set if that byte is zero, 
+	 *         all other bits cleared
+	 */
+	private static final long zeroBytes(long x) {
+		return ~(nonZeroBytes(x) | LOW7);
+	}
+	
+	/**
+	 * @return 8-bit mask with bit i set if the high bit of byte i of the given 
+	 *         word is set; the lower 7 bits of each byte are ignored 
+	 */
+	private static final long gather(long x) {
+		return (((x & ~LOW7) >>> 7) * 0x0102040810204080L) >>> 56;
+	}
+	
+	/**
+	 * @return mask with bit i set if an odd number of bits at positions <= i are set
+	 */
+	private static final long prefixXor(long x) {
+		x ^= x << 1;
+		x ^= x << 2;
+		x ^= x << 4;
+		x ^= x << 8;
+		x ^= x << 16;
+		x ^= x << 32;
+		return x;
+	}
+	
+	/**
+	 * Functional interface for handling values found by {@link JsonStructuralScanner}.
+	 */
+	@FunctionalInterface
+	public static interface ValueHandler {
+		/**
+		 * @param path of the value
+		 * @param start byte offset of the value; for scalar values, this may include
+		 *        leading whitespace
+		 * @param end byte offset directly after the value; for scalar values, this
+		 *        may include trailing whitespace
+		 * @param entries number of array entries if the value is an array, 0 otherwise
+		 * @throws IOException
+		 */
+		public void value(String path, long start, long end, int entries) throws IOException;
+	}
+}
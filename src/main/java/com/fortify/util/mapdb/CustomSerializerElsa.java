@@ -87,6 +87,9 @@ public class CustomSerializerElsa<T> extends GroupSerializerObjectArray<T> {
 	private static final void addReferencedClasses(Set<Class<?>> result, Class<?> clazz) {
 		if ( clazz!=null && !Object.class.equals(clazz) ) {
 			result.add(clazz);
+			if ( clazz.isArray() && !result.contains(clazz.getComponentType()) ) {
+				addReferencedClasses(result, clazz.getComponentType());
+			}
 			addDeclaredFieldClasses(result, clazz);
 			addReferencedClasses(result, clazz.getSuperclass());
 		}
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.mapdb;
+
+import java.util.function.Supplier;
+
+import org.mapdb.DB;
+
+/**
+ * {@link Supplier} for temporary MapDB {@link DB} instances. Users of 
+ * this interface pass each {@link DB} instance that they obtained through
+ * {@link #get()} to {@link #release(DB)} once they no longer need it, 
+ * allowing implementations to recycle {@link DB} instances. While writing 
+ * data to a {@link DB} instance, users should periodically call 
+ * {@link #checkQuota()}.
+ * 
+ * @author Ruud Senden
+ */
+@FunctionalInterface
+public interface TempDBSupplier extends Supplier<DB> {
+	/**
+	 * Release the given {@link DB} instance, which was obtained through 
+	 * {@link #get()}. The default implementation simply closes the given
+	 * {@link DB} instance.
+	 * @param db
+	 */
+	public default void release(DB db) {
+		db.close();
+	}
+	
+	/**
+	 * Check whether the temporary storage used through this supplier is 
+	 * still within the configured limits. The default implementation 
+	 * doesn't impose any limits.
+	 * @throws java.io.UncheckedIOException if the configured limits have been exceeded
+	 */
+	public default void checkQuota() {}
+}
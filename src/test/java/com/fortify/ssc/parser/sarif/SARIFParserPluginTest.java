@@ -24,6 +24,8 @@
  ******************************************************************************/
 package com.fortify.ssc.parser.sarif;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -32,8 +34,11 @@ import java.io.InputStream;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.function.Predicate;
 
@@ -133,6 +138,56 @@ class SARIFParserPluginTest {
 		// TODO Check actual output
 	}
 	
+	@Test
+	void testCodeFlowFields() throws Exception {
+		// Physical locations only; fields that are not available are not set
+		Map<String, Object> fields = parseVulnerabilityFields("EightBall.xml.sarif").get(0);
+		assertEquals("EightBall.java", fields.get("setSourceFile"));
+		assertEquals(4, fields.get("setSourceLine"));
+		assertFalse(fields.containsKey("setSource"));
+		assertFalse(fields.containsKey("setSink"));
+		assertEquals("EightBall.java:4 -> EightBall.java:12", fields.get(CustomVulnAttribute.dataFlow.name()));
+		
+		// Leading locations that reference run.threadFlowLocations are resolved
+		String fileName = "/C:/WORK/Programs/_Fortify/SCA/19.2.0/Samples/basic/eightball/EightBall.java";
+		fields = parseVulnerabilityFields("EightBall.fpr.sarif").get(5);
+		assertEquals("main(0)", fields.get("setSource"));
+		assertEquals(fileName, fields.get("setSourceFile"));
+		assertEquals(4, fields.get("setSourceLine"));
+		assertEquals("FileReader(0)", fields.get("setSink"));
+		assertEquals(fileName+":4 -> "+fileName+":6 -> "+fileName+":8 -> "+fileName+":8 -> "+fileName+":12", fields.get(CustomVulnAttribute.dataFlow.name()));
+		
+		// Logical locations only
+		fields = parseVulnerabilityFields("github.com_microsoft_sarif-sdk_blob_master_src_Test.FunctionalTests.Sarif_v2_ConverterTestData_ContrastSecurity_WebGoat.xml.sarif").get(0);
+		assertEquals("System.Web.HttpRequest.get_Form()", fields.get("setSource"));
+		assertFalse(fields.containsKey("setSourceFile"));
+		assertFalse(fields.containsKey("setSourceLine"));
+		assertEquals("System.Data.Common.DbCommand.set_CommandText(System.String)", fields.get("setSink"));
+		assertEquals("System.Web.HttpRequest.get_Form() -> System.Collections.Specialized.NameValueCollection.Get(System.String)"
+				+ " -> System.String.Concat(System.String,System.String,System.String) -> System.Data.Common.DbCommand.set_CommandText(System.String)"
+				+ " -> System.Data.Common.DbCommand.set_CommandText(System.String)", fields.get(CustomVulnAttribute.dataFlow.name()));
+	}
+	
+	// Returns the values passed to each StaticVulnerabilityBuilder setter, by setter or custom attribute name
+	private final List<Map<String, Object>> parseVulnerabilityFields(String file) throws Exception {
+		List<Map<String, Object>> result = new ArrayList<>();
+		new SARIFParserPlugin().parseVulnerabilities(getScanData("2.1.0/"+file), instanceId->{
+			Map<String, Object> fields = new LinkedHashMap<>();
+			result.add(fields);
+			return (StaticVulnerabilityBuilder) Proxy.newProxyInstance(
+					SARIFParserPluginTest.class.getClassLoader(), 
+					new Class[] { StaticVulnerabilityBuilder.class }, (proxy, method, args)->{
+						if ( "setStringCustomAttributeValue".equals(method.getName()) ) {
+							fields.put(String.valueOf(args[0]), args[1]);
+						} else if ( args!=null && args.length==1 ) {
+							fields.put(method.getName(), args[0]);
+						}
+						return null;
+					});
+		});
+		return result;
+	}
+	
 	public static List<String> getSampleFiles2_1_0() {
 		return Arrays.asList(SAMPLE_FILES_2_1_0);
 	}
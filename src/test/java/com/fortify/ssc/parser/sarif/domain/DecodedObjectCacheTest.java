@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.Test;
+
+public class DecodedObjectCacheTest {
+	@Test
+	void testHitsAndMisses() {
+		DecodedObjectCache<String> cache = new DecodedObjectCache<>("test", 10);
+		AtomicInteger loads = new AtomicInteger();
+		IntFunction<String> loader = i -> { loads.incrementAndGet(); return "value"+i; };
+		assertEquals("value1", cache.get(1, loader));
+		assertEquals("value1", cache.get(1, loader));
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(null, cache.get(2, i -> null));
+		assertEquals(null, cache.get(2, i -> null));
+		assertEquals(3, cache.getMisses());
+	}
+	
+	@Test
+	void testFrequentlyUsedEntriesSurviveScan() {
+		DecodedObjectCache<String> cache = new DecodedObjectCache<>("test", 10);
+		AtomicInteger loads = new AtomicInteger();
+		IntFunction<String> loader = i -> { loads.incrementAndGet(); return "value"+i; };
+		for ( int i = 0 ; i < 5 ; i++ ) {
+			cache.get(i, loader);
+			cache.get(i, loader);
+		}
+		// Access many entries only once; these shouldn't evict the frequently used entries
+		for ( int i = 100 ; i < 1000 ; i++ ) {
+			cache.get(i, loader);
+		}
+		loads.set(0);
+		for ( int i = 0 ; i < 5 ; i++ ) {
+			assertEquals("value"+i, cache.get(i, loader));
+		}
+		assertEquals(0, loads.get());
+	}
+}
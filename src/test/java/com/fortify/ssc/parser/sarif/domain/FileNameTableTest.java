@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.mapdb.DBMaker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortify.ssc.parser.sarif.parser.SarifScanDataStreamingJsonParser;
+import com.fortify.ssc.parser.sarif.parser.TestScanData;
+
+/**
+ * Verify resolution of full file names by {@link FileNameTable}.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class FileNameTableTest {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String RUN = "{\"version\":\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":{\"name\":\"Test\"}},"
+			+ "\"originalUriBaseIds\":{"
+			+ "\"ROOT\":{\"uri\":\"file:///work/\"},\"SRC\":{\"uri\":\"src/\",\"uriBaseId\":\"ROOT\"},"
+			+ "\"A\":{\"uri\":\"a/\",\"uriBaseId\":\"B\"},\"B\":{\"uri\":\"b/\",\"uriBaseId\":\"A\"}},"
+			+ "\"artifacts\":[{\"location\":{\"uri\":\"Main.java\",\"uriBaseId\":\"SRC\"}},{\"length\":1}],"
+			+ "\"results\":[]}]}";
+	
+	@Test
+	void testFullFileNames() throws Exception {
+		AtomicInteger runCount = new AtomicInteger();
+		new SarifScanDataStreamingJsonParser()
+			.handler("/runs/*", jp->{
+				try ( RunDataStore store = new RunDataStore(()->DBMaker.memoryDB().make()) ) {
+					assertFullFileNames(RunData.parseRunData(store, jp, (runData, result)->{}));
+					runCount.incrementAndGet();
+				}
+			})
+			.parseInput(TestScanData.fromString(RUN));
+		assertEquals(1, runCount.get());
+	}
+	
+	private static void assertFullFileNames(RunData runData) throws IOException {
+		FileNameTable table = new FileNameTable(runData);
+		String main = Paths.get(URI.create("file:///work/src/Main.java")).toString();
+		String other = Paths.get(URI.create("file:///work/src/Other.java")).toString();
+		for ( int i = 0 ; i < 2 ; i++ ) {
+			// Existing artifact overrides the location uri, unless resolving by location only
+			ArtifactLocation location = artifactLocation("{\"uri\":\"Other.java\",\"uriBaseId\":\"SRC\",\"index\":0}");
+			assertEquals(main, table.getFullFileName(location));
+			assertEquals(other, table.getFullFileNameByLocation(location));
+			assertEquals(main, runData.resolveFullFileName(location));
+			assertEquals(other, runData.getFullFileName(location));
+			
+			// Missing artifact, or artifact without location, falls back to the location uri
+			assertEquals(other, table.getFullFileName(artifactLocation("{\"uri\":\"Other.java\",\"uriBaseId\":\"SRC\",\"index\":7}")));
+			assertEquals(other, table.getFullFileName(artifactLocation("{\"uri\":\"Other.java\",\"uriBaseId\":\"SRC\",\"index\":1}")));
+			assertNull(table.getFullFileName(artifactLocation("{\"index\":1}")));
+			
+			// The base id that closes a cycle is ignored
+			assertEquals(URI.create("b/a/"), table.resolveBaseUri("A"));
+			assertEquals(URI.create("a/b/"), table.resolveBaseUri("B"));
+			assertEquals("b/a/Cyclic.java", table.getFullFileName(artifactLocation("{\"uri\":\"Cyclic.java\",\"uriBaseId\":\"A\"}")));
+			assertNull(table.resolveBaseUri("UNKNOWN"));
+		}
+	}
+	
+	private static ArtifactLocation artifactLocation(String json) throws IOException {
+		return MAPPER.readValue(json, ArtifactLocation.class);
+	}
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verify that {@link MessageRenderer} produces exactly the same output as the 
+ * regular expression based implementation that it replaces.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class MessageRendererTest {
+	private static final String ALPHABET = "[]()\\{}019a \n\r\u2028";
+	private static final String[][] ARGS = { null, {}, {"r0"}, {"[r0](x)", "{0}", null, "\\[r3\\]"} };
+	
+	@Test
+	void testExplicitCases() {
+		assertRender("Prohibited term used in para[0]\\spans[2].", "Prohibited term used in [para\\[0\\]\\\\spans\\[2\\]](1).", null);
+		assertRender("Link text and more", "[Link text](http://x/y) and more", null);
+		assertRender("Nested [a] b", "[Nested \\[a\\]](1) b", null);
+		assertRender("[no destination]", "[no destination]", null);
+		assertRender("[split](\nacross lines)", "[split](\nacross lines)", null);
+		assertRender("Hello r0 and {1}", "Hello {0} and {1}", new String[] {"r0"});
+		assertRender("Leading zero {00} and {01}", "Leading zero {00} and {01}", new String[] {"r0", "r1"});
+		assertRender("Arg link text, {1}", "Arg {0}, {1}", new String[] {"[link text](1)", null});
+	}
+	
+	@Test
+	void testRandomEquivalence() {
+		Random random = new Random(42);
+		for ( int i = 0 ; i < 200000 ; i++ ) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(24);
+			for ( int j = 0 ; j < length ; j++ ) {
+				sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+			}
+			String text = sb.toString();
+			for ( String[] args : ARGS ) {
+				assertRender(legacyReplaceLinks(legacyResolveArgs(text, args)), text, args);
+			}
+		}
+	}
+	
+	private static void assertRender(String expected, String text, String[] args) {
+		assertEquals(expected, MessageRenderer.render(text, args), ()->"Input: "+StringUtils.wrap(text, '\''));
+		assertEquals(legacyResolveArgs(text, args), MessageRenderer.substituteArgs(text, args), ()->"Input: "+StringUtils.wrap(text, '\''));
+		assertEquals(legacyReplaceLinks(text), MessageRenderer.renderMarkup(text), ()->"Input: "+StringUtils.wrap(text, '\''));
+	}
+	
+	private static final String legacyResolveArgs(String text, String[] args) {
+		String[] placeholders = args==null ? null 
+				: IntStream.rangeClosed(0, args.length-1).mapToObj(i->String.format("{%d}", i)).toArray(String[]::new);
+		return StringUtils.replaceEach(text, placeholders, args);
+	}
+	
+	private static final String legacyReplaceLinks(String text) {
+		text = text.replaceAll("(?<!\\\\)\\[(.*?)(?<!\\\\)\\]\\(.*?\\)", "$1");
+		text = text.replaceAll("\\\\\\[", "[");
+		text = text.replaceAll("\\\\\\]", "]");
+		text = text.replaceAll("\\\\\\\\", "\\\\");
+		return text;
+	}
+}
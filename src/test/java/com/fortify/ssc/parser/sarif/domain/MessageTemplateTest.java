@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verify that {@link MessageTemplate} renders messages exactly like 
+ * {@link MessageRenderer}.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class MessageTemplateTest {
+	private static final String[] TOKENS = { "[", "]", "(", ")", "\\", "\n", "a", " ", "{0}", "{1}", "{2}", "{01}", "{", "}", "\uE001" };
+	private static final String[] ARG_VALUES = { null, "", "r", "arg value", "[x](y)", "\\", ")", "{1}", "\n" };
+	
+	@Test
+	void testExplicitCases() {
+		assertRender("Call to foo on line 12.", "Call to [{0}](1) on line {1}.", "foo", "12");
+		assertRender("Call to [x](1) on line 12.", "Call to [{0}](1) on line {1}.", "[x](y)", "12");
+		assertRender("Link to  and {1}", "Link to [](http://{0}) and {1}", "host");
+		assertRender("Link to x) and {1}", "Link to [](http://{0}) and {1}", "host)x");
+		assertRender("No placeholders", "No [placeholders](1)");
+	}
+	
+	@Test
+	void testRandomEquivalence() {
+		Random random = new Random(42);
+		for ( int i = 0 ; i < 100000 ; i++ ) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(12);
+			for ( int j = 0 ; j < length ; j++ ) {
+				sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+			}
+			MessageTemplate template = MessageTemplate.compile(sb.toString());
+			for ( int j = 0 ; j < 5 ; j++ ) {
+				String[] args = random.nextInt(5)==0 ? null : new String[random.nextInt(4)];
+				for ( int k = 0 ; args!=null && k < args.length ; k++ ) {
+					args[k] = ARG_VALUES[random.nextInt(ARG_VALUES.length)];
+				}
+				String text = sb.toString();
+				assertEquals(MessageRenderer.render(text, args), template.render(args), ()->"Template: "+text);
+			}
+		}
+	}
+	
+	private static void assertRender(String expected, String text, String... args) {
+		assertEquals(expected, MessageRenderer.render(text, args));
+		assertEquals(expected, MessageTemplate.compile(text).render(args));
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Simple benchmark comparing {@link ResultDecoder} against Jackson databind
+ * for decoding a synthetic SARIF <code>results</code> array. This is not run
+ * as part of the test suite; run the {@link #main(String[])} method manually,
+ * optionally passing the number of results to generate. For each iteration,
+ * elapsed time and allocated bytes (as reported by the HotSpot thread MXBean)
+ * are printed for both approaches.
+ */
+public class ResultDecoderBenchmark {
+	private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	
+	public static void main(String[] args) throws IOException {
+		int count = args.length>0 ? Integer.parseInt(args[0]) : 200000;
+		byte[] input = createResults(count);
+		System.out.printf("Decoding %d results (%d bytes)%n", count, input.length);
+		for ( int i = 0 ; i < 5 ; i++ ) {
+			run("databind", input, jp->jp.readValueAs(Result.class));
+			run("decoder ", input, new ResultDecoder(Result.MAPPED_PROPERTY_NAMES)::decode);
+		}
+	}
+	
+	private static void run(String name, byte[] input, Decoder decoder) throws IOException {
+		com.sun.management.ThreadMXBean mxBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long allocatedStart = mxBean.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		int decoded = 0;
+		try ( JsonParser jp = MAPPER.getFactory().createParser(input) ) {
+			jp.nextToken();
+			while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+				if ( decoder.decode(jp)!=null ) { decoded++; }
+			}
+		}
+		long elapsedMillis = (System.nanoTime()-start)/1000000;
+		long allocatedMB = (mxBean.getThreadAllocatedBytes(threadId)-allocatedStart)/(1024*1024);
+		System.out.printf("%s: %d results in %d ms, %d MB allocated%n", name, decoded, elapsedMillis, allocatedMB);
+	}
+	
+	private static byte[] createResults(int count) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write('[');
+		for ( int i = 0 ; i < count ; i++ ) {
+			if ( i>0 ) { out.write(','); }
+			out.write(String.format("{\"ruleId\":\"RULE%d\",\"ruleIndex\":%d,\"level\":\"warning\","
+				+ "\"message\":{\"text\":\"Potential issue {0} in [file](%d)\",\"arguments\":[\"arg%d\"]},"
+				+ "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"src/dir%d/File%d.java\",\"uriBaseId\":\"SRCROOT\"},"
+				+ "\"region\":{\"startLine\":%d,\"startColumn\":5,\"endLine\":%d,\"snippet\":{\"text\":\"String s = request.getParameter(x);\"}}}},"
+				+ "{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"src/Other.java\"},\"region\":{\"startLine\":1}}}],"
+				+ "\"partialFingerprints\":{\"primaryLocationLineHash\":\"%08x:1\"},"
+				+ "\"codeFlows\":[{\"threadFlows\":[{\"locations\":[{\"location\":{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"src/A.java\"},\"region\":{\"startLine\":10}},\"message\":{\"text\":\"source\"}}},"
+				+ "{\"location\":{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"src/B.java\"},\"region\":{\"startLine\":20}},\"message\":{\"text\":\"sink\"}}}]}]}],"
+				+ "\"properties\":{\"Confidence\":\"4.0\",\"InstanceSeverity\":3.0,\"tags\":[\"security\",\"external/cwe/cwe-%d\"]}}",
+				i%50, i%50, i, i, i%100, i, i%1000+1, i%1000+3, i, i%900).getBytes(StandardCharsets.UTF_8));
+		}
+		out.write(']');
+		return out.toByteArray();
+	}
+	
+	@FunctionalInterface
+	private static interface Decoder {
+		public Result decode(JsonParser jp) throws IOException;
+	}
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class ResultDecoderTest {
+	private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	private static final String[] SAMPLE_FILES_2_1_0 = {
+			"EightBall.fpr.sarif",
+			"EightBall.xml.sarif",
+			"WebGoat5.0.xml.sarif",
+			"spec-minimal.sarif", 
+			"spec-minimal-without-source.sarif",
+			"spec-minimal-with-source.sarif",
+			"spec-comprehensive.sarif",
+			"github.com_microsoft_sarif-sdk_blob_master_src_Samples_Sarif.WorkItems.Sample_SampleTestFiles_Current.sarif",
+			"github.com_microsoft_sarif-sdk_blob_master_src_Test.FunctionalTests.Sarif_v2_ConverterTestData_ContrastSecurity_WebGoat.xml.sarif"
+	};
+	
+	@ParameterizedTest
+	@MethodSource("getSampleFiles2_1_0")
+	void testDecodeSampleResults(String file) throws IOException {
+		try ( InputStream is = ClassLoader.getSystemResourceAsStream("2.1.0/"+file) ) {
+			for ( JsonNode run : MAPPER.readTree(is).path("runs") ) {
+				for ( JsonNode result : run.path("results") ) {
+					assertDecodedEquals(result.toString());
+				}
+			}
+		}
+	}
+	
+	@Test
+	void testDecodeCoercedValues() throws IOException {
+		assertDecodedEquals("{\"ruleIndex\":\"3\",\"level\":\"error\",\"rule\":{\"id\":7,\"index\":2},"
+				+ "\"message\":{\"text\":5,\"arguments\":[\"a\",1,null]},\"codeFlows\":[{\"threadFlows\":[]}],"
+				+ "\"locations\":[{\"id\":2,\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"\",\"index\":1}}},{}],"
+				+ "\"fingerprints\":{\"a\":\"b\",\"c\":null},"
+				+ "\"properties\":{\"a\":1.50,\"b\":[1,{\"c\":true}],\"d\":12345678901,\"e\":null}}");
+		assertDecodedEquals("{\"locations\":[],\"analysisTarget\":{\"uri\":\"file:///src/a%20b.c\",\"uriBaseId\":\"SRC\"}}");
+		assertDecodedEquals("{\"locations\":null,\"message\":null,\"properties\":null}");
+	}
+	
+	@Test
+	void testDecodeCodeFlows() throws IOException {
+		StringBuilder locations = new StringBuilder();
+		for ( int i = 1 ; i <= 1000 ; i++ ) {
+			if ( i>1 ) { locations.append(','); }
+			locations.append("{\"location\":{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"A.java\"},\"region\":{\"startLine\":").append(i).append("}},")
+				.append("\"logicalLocations\":[{\"name\":\"n").append(i).append("\",\"fullyQualifiedName\":\"f").append(i).append("\"},{\"name\":\"x\"}],")
+				.append("\"message\":{\"text\":\"m").append(i).append("\"}},\"stack\":{\"frames\":[{}]},\"kinds\":[\"call\"]}");
+		}
+		String json = "{\"codeFlows\":[{\"message\":{\"text\":\"x\"},\"threadFlows\":[{\"locations\":[]},{\"id\":\"t\",\"locations\":["+locations+"]},"
+				+ "{\"locations\":[{\"location\":{}}]}]},{\"threadFlows\":[{\"locations\":[{}]}]}]}";
+		assertDecodedEquals(json);
+		try ( JsonParser jp = MAPPER.getFactory().createParser(json) ) {
+			jp.nextToken();
+			CodeFlowSummary summary = new ResultDecoder().decode(jp).getCodeFlowSummary();
+			assertEquals(1000, summary.getLocationCount());
+			assertEquals(CodeFlowSummary.MAX_TRACE_STEPS, summary.getTrace().length);
+			assertEquals("f1", summary.getSource().getFunction());
+			assertEquals(Integer.valueOf(1), summary.getSource().getStartLine());
+			assertEquals("f1000", summary.getSink().getFunction());
+			assertEquals("m1000", summary.getSink().getMessage());
+			assertEquals(Integer.valueOf(1000), summary.getSink().getStartLine());
+		}
+		assertDecodedEquals("{\"codeFlows\":[{\"threadFlows\":[{\"locations\":[{\"location\":{\"logicalLocations\":[{\"name\":\"n\"}]}},{\"index\":0}]}]}]}");
+		try ( JsonParser jp = MAPPER.getFactory().createParser("{\"codeFlows\":[{\"threadFlows\":[{\"locations\":[]}]},5],\"ruleId\":\"r\"}") ) {
+			jp.nextToken();
+			Result result = new ResultDecoder().decode(jp);
+			assertNull(result.getCodeFlowSummary());
+			assertEquals("r", result.getRuleId());
+		}
+	}
+	
+	private void assertDecodedEquals(String json) throws IOException {
+		JsonNode expected = MAPPER.valueToTree(MAPPER.readValue(json, Result.class));
+		// ResultDecoder only decodes the first location
+		if ( expected.get("locations") instanceof ArrayNode ) {
+			ArrayNode locations = (ArrayNode)expected.get("locations");
+			while ( locations.size()>1 ) { locations.remove(1); }
+			((ObjectNode)expected).set("locations", locations);
+		}
+		try ( JsonParser jp = MAPPER.getFactory().createParser(json) ) {
+			jp.nextToken();
+			assertEquals(expected, MAPPER.valueToTree(new ResultDecoder().decode(jp)));
+		}
+		// Property bag entries other than the given property names should be skipped
+		if ( expected.get("properties") instanceof ObjectNode ) {
+			((ObjectNode)expected.get("properties")).retain("a", "Confidence");
+		}
+		try ( JsonParser jp = MAPPER.getFactory().createParser(json) ) {
+			jp.nextToken();
+			assertEquals(expected, MAPPER.valueToTree(new ResultDecoder(new HashSet<>(Arrays.asList("a", "Confidence"))).decode(jp)));
+		}
+	}
+	
+	public static List<String> getSampleFiles2_1_0() {
+		return Arrays.asList(SAMPLE_FILES_2_1_0);
+	}
+}
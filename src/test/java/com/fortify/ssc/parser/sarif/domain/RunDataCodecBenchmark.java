@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortify.util.mapdb.CustomSerializerElsa;
+
+/**
+ * Simple benchmark comparing {@link RunDataCodec} against {@link CustomSerializerElsa}
+ * for serializing and deserializing synthetic rules and results. This is not run
+ * as part of the test suite; run the {@link #main(String[])} method manually,
+ * optionally passing the number of objects to generate. For each iteration,
+ * elapsed time and total serialized size are printed for each serializer.
+ */
+public class RunDataCodecBenchmark {
+	private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	
+	public static void main(String[] args) throws IOException {
+		int count = args.length>0 ? Integer.parseInt(args[0]) : 100000;
+		List<ReportingDescriptor> rules = new ArrayList<>();
+		List<Result> results = new ArrayList<>();
+		for ( int i = 0 ; i < count ; i++ ) {
+			rules.add(MAPPER.readValue(String.format("{\"id\":\"RULE%d\",\"guid\":\"%08x-0000-0000-0000-000000000000\",\"name\":\"Rule name %d\","
+				+ "\"shortDescription\":{\"text\":\"Short description for rule %d\"},"
+				+ "\"fullDescription\":{\"text\":\"Full description for rule %d, which is usually a lot longer than the short description.\"},"
+				+ "\"defaultConfiguration\":{\"level\":\"error\"},\"helpUri\":\"https://example.com/rules/%d\","
+				+ "\"properties\":{\"Type\":\"Type %d\",\"Kingdom\":\"Input Validation and Representation\",\"Accuracy\":\"4.0\",\"Impact\":\"5.0\",\"Probability\":\"3.0\",\"tags\":[\"security\",\"external/cwe/cwe-%d\"]}}",
+				i, i, i, i%500, i%500, i, i%500, i%900), ReportingDescriptor.class));
+			results.add(MAPPER.readValue(String.format("{\"ruleId\":\"RULE%d\",\"ruleIndex\":%d,\"level\":\"warning\","
+				+ "\"message\":{\"text\":\"Potential issue {0} in [file](%d)\",\"arguments\":[\"arg%d\"]},"
+				+ "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"src/dir%d/File%d.java\",\"uriBaseId\":\"SRCROOT\"}}}],"
+				+ "\"partialFingerprints\":{\"primaryLocationLineHash\":\"%08x:1\"},"
+				+ "\"properties\":{\"Confidence\":\"4.0\",\"InstanceSeverity\":3.0}}",
+				i%50, i%50, i, i, i%100, i, i), Result.class));
+		}
+		System.out.printf("Serializing %d rules and %d results%n", count, count);
+		for ( int i = 0 ; i < 5 ; i++ ) {
+			RunDataCodec codec = new RunDataCodec(false);
+			RunDataCodec compressingCodec = new RunDataCodec(true);
+			run("rules,   elsa ", new CustomSerializerElsa<>(ReportingDescriptor.class), rules);
+			run("rules,   codec", codec.getRuleSerializer(), rules);
+			run("rules,   lz4  ", compressingCodec.getRuleSerializer(), rules);
+			run("results, elsa ", new CustomSerializerElsa<>(Result.class), results);
+			run("results, codec", codec.getResultSerializer(), results);
+			run("results, lz4  ", compressingCodec.getResultSerializer(), results);
+		}
+	}
+	
+	private static <T> void run(String name, Serializer<T> serializer, List<T> values) throws IOException {
+		List<byte[]> serialized = new ArrayList<>(values.size());
+		long size = 0;
+		long start = System.nanoTime();
+		for ( T value : values ) {
+			DataOutput2 out = new DataOutput2();
+			serializer.serialize(out, value);
+			serialized.add(out.copyBytes());
+			size += out.pos;
+		}
+		long serializeMillis = (System.nanoTime()-start)/1000000;
+		start = System.nanoTime();
+		int deserialized = 0;
+		for ( byte[] bytes : serialized ) {
+			if ( serializer.deserialize(new DataInput2.ByteArray(bytes), bytes.length)!=null ) { deserialized++; }
+		}
+		long deserializeMillis = (System.nanoTime()-start)/1000000;
+		System.out.printf("%s: %d bytes, serialize %d ms, deserialize %d objects in %d ms%n", name, size, serializeMillis, deserialized, deserializeMillis);
+	}
+}
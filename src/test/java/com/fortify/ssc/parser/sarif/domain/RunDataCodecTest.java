@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mapdb.DataInput2;
+import org.mapdb.DataOutput2;
+import org.mapdb.Serializer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RunDataCodecTest {
+	private static final ObjectMapper MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	
+	@ParameterizedTest
+	@MethodSource("com.fortify.ssc.parser.sarif.domain.ResultDecoderTest#getSampleFiles2_1_0")
+	void testRoundTripSampleRunData(String file) throws IOException {
+		for ( boolean compress : new boolean[] {false, true} ) {
+			try ( InputStream is = ClassLoader.getSystemResourceAsStream("2.1.0/"+file) ) {
+				for ( JsonNode run : MAPPER.readTree(is).path("runs") ) {
+					RunDataCodec codec = new RunDataCodec(compress);
+					for ( JsonNode rule : run.path("tool").path("driver").path("rules") ) {
+						assertRoundTrip(codec.getRuleSerializer(), MAPPER.treeToValue(rule, ReportingDescriptor.class));
+					}
+					for ( JsonNode artifact : run.path("artifacts") ) {
+						assertRoundTrip(codec.getArtifactSerializer(), MAPPER.treeToValue(artifact, Artifact.class));
+					}
+					for ( JsonNode result : run.path("results") ) {
+						assertRoundTrip(codec.getResultSerializer(), MAPPER.treeToValue(result, Result.class));
+					}
+				}
+			}
+		}
+	}
+	
+	@Test
+	void testRoundTripValues() throws IOException {
+		RunDataCodec codec = new RunDataCodec(false);
+		assertRoundTrip(codec.getResultSerializer(), MAPPER.readValue("{\"ruleIndex\":-1,\"kind\":\"fail\",\"rule\":{\"id\":\"r\",\"index\":0},"
+				+ "\"message\":{\"id\":\"m\",\"arguments\":[\"\",null,\"\\u00e9\\ud83d\\ude00\"]},"
+				+ "\"locations\":[{\"id\":-2,\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"a%20b.c\",\"index\":-1}}},{}],"
+				+ "\"fingerprints\":{\"a\":\"b\",\"c\":null},\"partialFingerprints\":{},"
+				+ "\"properties\":{\"a\":1.50,\"b\":[1,{\"c\":true,\"d\":false}],\"d\":12345678901,\"e\":null,"
+				+ "\"f\":123456789012345678901234567890,\"g\":-7,\"h\":[]}}", Result.class));
+		assertRoundTrip(codec.getResultSerializer(), new Result());
+		assertRoundTrip(codec.getRuleSerializer(), MAPPER.readValue("{\"id\":\"r\",\"defaultConfiguration\":null,"
+				+ "\"messageStrings\":{\"default\":{\"text\":\"t\"},\"other\":null},\"helpUri\":\"http://example.com/a?b#c\"}", ReportingDescriptor.class));
+		assertRoundTrip(codec.getRuleSerializer(), MAPPER.readValue("{\"defaultConfiguration\":{\"level\":\"none\"}}", ReportingDescriptor.class));
+		assertRoundTrip(codec.getArtifactSerializer(), new Artifact());
+	}
+	
+	@Test
+	void testRoundTripCodeFlows() throws IOException {
+		StringBuilder locations = new StringBuilder("{\"index\":0}");
+		for ( int i = 0 ; i < 12 ; i++ ) {
+			locations.append(",{\"location\":{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"f"+i+".java\",\"uriBaseId\":\"SRC\",\"index\":"+i+"},"
+					+ "\"region\":{\"startLine\":"+(i+1)+"}},\"logicalLocations\":[{\"name\":\"m"+i+"\"}],\"message\":{\"text\":\"step "+i+"\"}}}");
+		}
+		locations.append(",{\"location\":{\"message\":{\"text\":\"sink\"}}},{\"index\":1}");
+		Result result = MAPPER.readValue("{\"ruleId\":\"r\",\"codeFlows\":[{\"threadFlows\":[{\"locations\":["+locations+"]}]}]}", Result.class);
+		for ( boolean compress : new boolean[] {false, true} ) {
+			RunDataCodec codec = new RunDataCodec(compress);
+			Serializer<Result> serializer = codec.getResultSerializer();
+			assertRoundTrip(serializer, result);
+			DataOutput2 out = new DataOutput2();
+			serializer.serialize(out, result);
+			CodeFlowSummary summary = serializer.deserialize(new DataInput2.ByteArray(out.copyBytes()), out.pos).getCodeFlowSummary();
+			assertEquals(15, summary.getLocationCount());
+			assertEquals(CodeFlowSummary.MAX_TRACE_STEPS, summary.getTrace().length);
+			assertEquals(0, summary.getSource().getIndex());
+			assertEquals("m0", summary.getTrace()[1].getFunction());
+			assertEquals(1, summary.getTrace()[1].getStartLine());
+			assertEquals("SRC", summary.getTrace()[1].getArtifactLocation().getUriBaseId());
+			assertEquals(1, summary.getSink().getIndex());
+		}
+	}
+	
+	@Test
+	void testCompression() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for ( int i = 0 ; i < 100 ; i++ ) { text.append("Repeated rule description text. "); }
+		ReportingDescriptor rule = MAPPER.readValue("{\"id\":\"r\",\"fullDescription\":{\"text\":\""+text+"\"}}", ReportingDescriptor.class);
+		int uncompressedSize = assertRoundTrip(new RunDataCodec(false).getRuleSerializer(), rule);
+		int compressedSize = assertRoundTrip(new RunDataCodec(true).getRuleSerializer(), rule);
+		assertTrue(compressedSize*4<uncompressedSize, "Expected compressed size "+compressedSize+" to be much smaller than "+uncompressedSize);
+	}
+	
+	@Test
+	void testDictionary() throws IOException {
+		RunDataCodec codec = new RunDataCodec(false);
+		Result result = MAPPER.readValue("{\"ruleId\":\"SomeRuleId\",\"properties\":{\"kingdom\":\"Input Validation and Representation\"}}", Result.class);
+		int firstSize = assertRoundTrip(codec.getResultSerializer(), result);
+		int secondSize = assertRoundTrip(codec.getResultSerializer(), result);
+		assertEquals(3, codec.getDictionarySize());
+		assertEquals(firstSize, secondSize);
+		assertTrue(firstSize<20, "Expected dictionary references only, got "+firstSize+" bytes");
+	}
+	
+	private <T> int assertRoundTrip(Serializer<T> serializer, T value) throws IOException {
+		DataOutput2 out = new DataOutput2();
+		serializer.serialize(out, value);
+		T deserialized = serializer.deserialize(new DataInput2.ByteArray(out.copyBytes()), out.pos);
+		assertEquals(MAPPER.valueToTree(value), MAPPER.valueToTree(deserialized));
+		return out.pos;
+	}
+}
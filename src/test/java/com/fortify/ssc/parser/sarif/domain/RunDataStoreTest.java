@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.domain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+
+import com.fortify.util.mapdb.TempDBSupplier;
+
+public class RunDataStoreTest {
+	private final List<DB> released = new ArrayList<>();
+	private final TempDBSupplier dbSupplier = new TempDBSupplier() {
+		@Override
+		public DB get() {
+			return DBMaker.memoryDB().make();
+		}
+		
+		@Override
+		public void release(DB db) {
+			released.add(db);
+			db.close();
+		}
+	};
+	
+	@Test
+	void testSpillAfterMaxInMemoryEntries() {
+		try ( RunDataStore store = new RunDataStore(dbSupplier, 10) ) {
+			List<String> rules = store.createList("rules", Serializer.STRING);
+			List<String> artifacts = store.createList("artifacts", Serializer.STRING);
+			for ( int i = 0 ; i < 5 ; i++ ) {
+				rules.add("rule"+i);
+				artifacts.add("artifact"+i);
+			}
+			assertFalse(store.isSpilled());
+			assertEntries(rules, "rule", 5);
+			assertEntries(artifacts, "artifact", 5);
+			
+			// Exceeding the maximum moves all collections to disk
+			rules.add("rule5");
+			assertTrue(store.isSpilled());
+			assertEntries(rules, "rule", 6);
+			assertEntries(artifacts, "artifact", 5);
+			
+			for ( int i = 6 ; i < 100 ; i++ ) {
+				rules.add("rule"+i);
+			}
+			artifacts.add("artifact5");
+			assertEntries(rules, "rule", 100);
+			assertEntries(artifacts, "artifact", 6);
+			
+			// Collections created after spilling are disk-backed from the start
+			List<String> results = store.createList("results", Serializer.STRING);
+			results.add("result0");
+			assertEntries(results, "result", 1);
+		}
+		assertEquals(1, released.size());
+	}
+	
+	@Test
+	void testNoInMemoryEntries() {
+		try ( RunDataStore store = new RunDataStore(dbSupplier, 0) ) {
+			List<String> rules = store.createList("rules", Serializer.STRING);
+			assertTrue(store.isSpilled());
+			rules.add("rule0");
+			rules.add("rule1");
+			assertEntries(rules, "rule", 2);
+		}
+		assertEquals(1, released.size());
+	}
+	
+	@Test
+	void testNoSpill() {
+		try ( RunDataStore store = new RunDataStore(dbSupplier, 10) ) {
+			List<String> rules = store.createList("rules", Serializer.STRING);
+			rules.add("rule0");
+			assertFalse(store.isSpilled());
+			assertEntries(rules, "rule", 1);
+		}
+		assertTrue(released.isEmpty());
+	}
+	
+	private static final void assertEntries(List<String> list, String prefix, int expectedSize) {
+		assertEquals(expectedSize, list.size());
+		for ( int i = 0 ; i < expectedSize ; i++ ) {
+			assertEquals(prefix+i, list.get(i));
+		}
+		List<String> iterated = new ArrayList<>();
+		list.iterator().forEachRemaining(iterated::add);
+		assertEquals(expectedSize, iterated.size());
+		assertEquals(prefix+(expectedSize-1), iterated.get(expectedSize-1));
+	}
+}
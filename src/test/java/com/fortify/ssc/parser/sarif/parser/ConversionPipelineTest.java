@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fortify.ssc.parser.sarif.domain.Result;
+import com.fortify.ssc.parser.sarif.domain.RunData;
+
+public class ConversionPipelineTest {
+	private static final int BATCH_SIZE = 3;
+	private static final int MAX_PENDING_BATCHES = 2;
+	private final List<Result> results = new ArrayList<>();
+	private final Map<Result, Integer> indexes = new IdentityHashMap<>();
+	private ExecutorService executor;
+	
+	@BeforeEach
+	void setUp() {
+		for ( int i = 0 ; i < 50 ; i++ ) {
+			Result result = new Result();
+			results.add(result);
+			indexes.put(result, i);
+		}
+		executor = Executors.newFixedThreadPool(4);
+	}
+	
+	@AfterEach
+	void tearDown() throws Exception {
+		executor.shutdownNow();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	void testSequentialConversion() throws Exception {
+		List<Integer> emitted = new ArrayList<>();
+		ConversionPipeline pipeline = new ConversionPipeline(converter(null), null, MAX_PENDING_BATCHES, BATCH_SIZE, v->emitted.add(Integer.valueOf(v.getInstanceId())));
+		results.forEach(r->pipeline.accept(null, r));
+		pipeline.finish();
+		assertEquals(expectedIds(results.size()), emitted);
+	}
+	
+	@Test
+	void testSlowConversionEmitsInInputOrder() throws Exception {
+		List<Integer> emitted = new ArrayList<>();
+		// Earlier results are slower to convert, so later batches usually complete first
+		BiFunction<RunData, Result, ConvertedVulnerability> converter = converter(i->sleep((results.size()-i)%7));
+		ConversionPipeline pipeline = new ConversionPipeline(converter, executor, MAX_PENDING_BATCHES, BATCH_SIZE, v->emitted.add(Integer.valueOf(v.getInstanceId())));
+		results.forEach(r->pipeline.accept(null, r));
+		pipeline.finish();
+		assertEquals(expectedIds(results.size()), emitted);
+	}
+	
+	@Test
+	void testBackPressure() throws Exception {
+		CountDownLatch gate = new CountDownLatch(1);
+		AtomicInteger accepted = new AtomicInteger();
+		List<Integer> emitted = new ArrayList<>();
+		ConversionPipeline pipeline = new ConversionPipeline(converter(i->await(gate)), executor, MAX_PENDING_BATCHES, BATCH_SIZE, v->emitted.add(Integer.valueOf(v.getInstanceId())));
+		Thread producer = new Thread(()->{
+			for ( Result result : results ) {
+				pipeline.accept(null, result);
+				accepted.incrementAndGet();
+			}
+		});
+		producer.start();
+		producer.join(500);
+		// Dispatching the batch after the pending ones blocks while accepting its last result
+		assertTrue(producer.isAlive());
+		assertEquals((MAX_PENDING_BATCHES+1)*BATCH_SIZE-1, accepted.get());
+		gate.countDown();
+		producer.join(10000);
+		pipeline.finish();
+		assertEquals(results.size(), accepted.get());
+		assertEquals(expectedIds(results.size()), emitted);
+	}
+	
+	@Test
+	void testIOExceptionPropagatedByFinish() throws Exception {
+		IOException error = new IOException("Conversion failed");
+		List<Integer> emitted = new ArrayList<>();
+		ConversionPipeline pipeline = new ConversionPipeline(converter(i->{ if ( i==7 ) { throw new UncheckedIOException(error); } }), 
+				executor, MAX_PENDING_BATCHES, BATCH_SIZE, v->emitted.add(Integer.valueOf(v.getInstanceId())));
+		results.forEach(r->pipeline.accept(null, r));
+		assertSame(error, assertThrows(IOException.class, pipeline::finish));
+		// Only the batches preceding the failed batch have been passed downstream
+		assertEquals(expectedIds(6), emitted);
+	}
+	
+	@Test
+	void testRuntimeExceptionPropagatedByFinish() throws Exception {
+		IllegalStateException error = new IllegalStateException("Conversion failed");
+		List<Integer> emitted = new ArrayList<>();
+		ConversionPipeline pipeline = new ConversionPipeline(converter(i->{ if ( i==20 ) { throw error; } }), 
+				executor, MAX_PENDING_BATCHES, BATCH_SIZE, v->emitted.add(Integer.valueOf(v.getInstanceId())));
+		results.forEach(r->pipeline.accept(null, r));
+		assertSame(error, assertThrows(IllegalStateException.class, pipeline::finish));
+		assertEquals(expectedIds(18), emitted);
+	}
+	
+	private BiFunction<RunData, Result, ConvertedVulnerability> converter(IndexAction action) {
+		return (runData, result)->{
+			int index = indexes.get(result);
+			if ( action!=null ) { action.run(index); }
+			ConvertedVulnerability vulnerability = new ConvertedVulnerability();
+			vulnerability.setInstanceId(String.valueOf(index));
+			return vulnerability;
+		};
+	}
+	
+	private static final List<Integer> expectedIds(int count) {
+		return IntStream.range(0, count).boxed().collect(Collectors.toList());
+	}
+	
+	private static final void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private static final void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	@FunctionalInterface
+	private static interface IndexAction {
+		void run(int index);
+	}
+}
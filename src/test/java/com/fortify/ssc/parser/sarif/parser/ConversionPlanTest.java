@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verify the code flow fields set by {@link ConversionPlan} for results
+ * that reference run-level thread flow locations.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class ConversionPlanTest {
+	private static final String STEP = "{\"location\":{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"Main.java\"},\"region\":{\"startLine\":12}},"
+			+ "\"message\":{\"text\":\"sink\"}}}";
+	private static final String CODE_FLOW_RUN = "{\"version\":\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":{\"name\":\"Test\"}},"
+			+ "\"results\":["
+			+ "{\"ruleId\":\"r\",\"message\":{\"text\":\"Resolved\"},\"codeFlows\":[{\"threadFlows\":[{\"locations\":[{\"index\":0},"+STEP+"]}]}]},"
+			+ "{\"ruleId\":\"r\",\"message\":{\"text\":\"Unresolved\"},\"codeFlows\":[{\"threadFlows\":[{\"locations\":[{\"index\":5},"+STEP+"]}]}]}],"
+			+ "\"threadFlowLocations\":[{\"location\":{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"Main.java\"},\"region\":{\"startLine\":4}},"
+			+ "\"message\":{\"text\":\"main\"}}}]}]}";
+	
+	@Test
+	void testThreadFlowLocationReferences() throws Exception {
+		List<ConvertedVulnerability> vulns = MappingProfilesTest.convert(CODE_FLOW_RUN);
+		assertEquals(2, vulns.size());
+		ConvertedVulnerability resolved = vulns.get(0);
+		assertEquals("main", resolved.getSource());
+		assertEquals("Main.java", resolved.getSourceFile());
+		assertEquals(4, resolved.getSourceLine());
+		assertEquals("sink", resolved.getSink());
+		assertEquals("Main.java:4 -> Main.java:12", resolved.getDataFlow());
+		
+		// Source fields are left unset if the leading location cannot be resolved
+		ConvertedVulnerability unresolved = vulns.get(1);
+		assertNull(unresolved.getSource());
+		assertNull(unresolved.getSourceFile());
+		assertNull(unresolved.getSourceLine());
+		assertEquals("sink", unresolved.getSink());
+		assertEquals("? -> Main.java:12", unresolved.getDataFlow());
+	}
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+import org.mapdb.DBMaker;
+
+import com.fortify.plugin.api.VulnerabilityHandler;
+import com.fortify.util.ssc.parser.HandleDuplicateIdVulnerabilityHandler;
+
+/**
+ * Verify that {@link DuplicateIdVulnerabilityHandler} and {@link InstanceIdSet}
+ * handle duplicate instance id's exactly like {@link HandleDuplicateIdVulnerabilityHandler}.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class DuplicateIdVulnerabilityHandlerTest {
+	@Test
+	void testInstanceIdSet() {
+		Random random = new Random(42);
+		Set<String> expected = new HashSet<>();
+		try ( InstanceIdSet actual = new InstanceIdSet(()->DBMaker.memoryDB().make(), 1000) ) {
+			for ( int i = 0 ; i < 50000 ; i++ ) {
+				String id = getId(random, 30000);
+				assertEquals(expected.add(id), actual.add(id), id);
+			}
+			assertEquals(expected.size(), actual.size());
+		}
+	}
+	
+	@Test
+	void testPrefixCollisions() {
+		try ( InstanceIdSet set = new InstanceIdSet(()->DBMaker.memoryDB().make(), 2) ) {
+			String prefix = DigestUtils.sha256Hex("prefix").substring(0, 32);
+			for ( int i = 0 ; i < 10 ; i++ ) {
+				assertTrue(set.add(prefix+DigestUtils.sha256Hex("suffix"+i).substring(32)));
+			}
+			for ( int i = 0 ; i < 10 ; i++ ) {
+				assertFalse(set.add(prefix+DigestUtils.sha256Hex("suffix"+i).substring(32)));
+			}
+			assertEquals(10, set.size());
+		}
+	}
+	
+	@Test
+	void testSupportedIds() {
+		assertTrue(InstanceIdSet.isSupported(DigestUtils.sha256Hex("id")));
+		assertFalse(InstanceIdSet.isSupported(null));
+		assertFalse(InstanceIdSet.isSupported(DigestUtils.sha256Hex("id").toUpperCase()));
+		assertFalse(InstanceIdSet.isSupported(DigestUtils.sha256Hex("id")+"-1"));
+		assertFalse(InstanceIdSet.isSupported(DigestUtils.sha256Hex("id").substring(1)+"\u0661"));
+	}
+	
+	@Test
+	void testDuplicateIds() {
+		Random random = new Random(42);
+		List<String> expected = new ArrayList<>();
+		List<String> actual = new ArrayList<>();
+		VulnerabilityHandler expectedHandler = new HandleDuplicateIdVulnerabilityHandler(collect(expected));
+		try ( DuplicateIdVulnerabilityHandler actualHandler = new DuplicateIdVulnerabilityHandler(collect(actual), 
+				new InstanceIdSet(()->DBMaker.memoryDB().make(), 100), new InstanceIdSet(()->DBMaker.memoryDB().make(), 100)) ) {
+			for ( int i = 0 ; i < 20000 ; i++ ) {
+				String id = random.nextInt(10)==0 ? "id"+random.nextInt(100) : getId(random, 5000);
+				expectedHandler.startStaticVulnerability(id);
+				actualHandler.startStaticVulnerability(id);
+			}
+		}
+		assertEquals(expected, actual);
+	}
+	
+	private static String getId(Random random, int bound) {
+		return DigestUtils.sha256Hex("id"+random.nextInt(bound));
+	}
+	
+	private static VulnerabilityHandler collect(List<String> ids) {
+		return id->{ ids.add(id); return null; };
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mapdb.DBMaker;
+
+import com.fortify.ssc.parser.sarif.domain.Result;
+import com.fortify.ssc.parser.sarif.domain.RunData;
+import com.fortify.ssc.parser.sarif.domain.RunDataStore;
+
+/**
+ * Verify that {@link InstanceIdDigest} and {@link VulnerabilitiesProducer} 
+ * calculate the same instance id's as the former string-based implementation.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class InstanceIdDigestTest {
+	@ParameterizedTest
+	@MethodSource("com.fortify.ssc.parser.sarif.domain.ResultDecoderTest#getSampleFiles2_1_0")
+	void testSampleInstanceIds(String file) throws Exception {
+		VulnerabilitiesProducer producer = new VulnerabilitiesProducer(null);
+		AtomicInteger count = new AtomicInteger();
+		new SarifScanDataStreamingJsonParser()
+			.handler("/runs/*", jp->{
+				try ( RunDataStore store = new RunDataStore(()->DBMaker.memoryDB().make()) ) {
+					RunData.parseRunData(store, jp, (runData, result)->{
+						ConvertedVulnerability vuln = producer.convert(runData, result);
+						if ( vuln!=null ) {
+							assertEquals(DigestUtils.sha256Hex(getLegacyInstanceIdString(runData, result)), vuln.getInstanceId());
+							count.incrementAndGet();
+						}
+					});
+				}
+			})
+			.parseInput(TestScanData.fromResource("2.1.0/"+file));
+		assertTrue(count.get()>0 || file.startsWith("spec-minimal"), "No vulnerabilities produced for "+file);
+	}
+	
+	@Test
+	void testEncoding() {
+		StringBuilder longValue = new StringBuilder();
+		for ( int i = 0 ; i < 3000 ; i++ ) { longValue.append("a\u00e9\u20ac\ud83d\ude00"); }
+		String[] values = { "", "plain", "\u00e9\u0800\uffff", "\ud83d\ude00", "\ud83d", "\ude00", "x\ud83dy", "\ude00\ud83d", longValue.toString() };
+		for ( String value : values ) {
+			assertEquals(DigestUtils.sha256Hex(value), InstanceIdDigest.start().append(value).toHex());
+		}
+		assertEquals(DigestUtils.sha256Hex("null|a"), InstanceIdDigest.start().append((String)null).append('|').append("a").toHex());
+	}
+	
+	@Test
+	void testSortedMap() {
+		Map<String, String> map = new HashMap<>();
+		assertEquals(DigestUtils.sha256Hex("{}"), InstanceIdDigest.start().appendSorted(map).toHex());
+		for ( int i = 0 ; i < 2000 ; i++ ) { map.put("key"+i, i%3==0 ? null : "value"+i); }
+		assertEquals(DigestUtils.sha256Hex(new TreeMap<>(map).toString()), InstanceIdDigest.start().appendSorted(map).toHex());
+	}
+	
+	private static String getLegacyInstanceIdString(RunData runData, Result result) {
+		if ( StringUtils.isNotBlank(result.getGuid()) ) {
+			return result.getGuid();
+		} else if ( StringUtils.isNotBlank(result.getCorrelationGuid()) ) {
+			return result.getCorrelationGuid();
+		} else if ( result.getFingerprints()!=null && result.getFingerprints().size()>0 ) {
+			return new TreeMap<>(result.getFingerprints()).toString();
+		} else {
+			String partialFingerPrints = result.getPartialFingerprints()==null?"":new TreeMap<>(result.getPartialFingerprints()).toString();
+			return String.join("|", 
+				runData.getToolName(),
+				result.resolveFullFileName(runData, "Unknown"),
+				result.resolveRuleId(runData),
+				partialFingerPrints,
+				result.getResultMessage(runData));
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mapdb.DBMaker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fortify.plugin.api.BasicVulnerabilityBuilder.Priority;
+import com.fortify.ssc.parser.sarif.domain.RunData;
+import com.fortify.ssc.parser.sarif.domain.RunDataStore;
+
+/**
+ * Verify loading of the default {@link MappingProfiles}, and conversion of 
+ * results using a {@link MappingProfile}.
+ * 
+ * @author Ruud Senden
+ *
+ */
+public class MappingProfilesTest {
+	private static final String CODEQL_RUN = "{\"version\":\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":{\"name\":\"CodeQL\",\"rules\":["
+			+ "{\"id\":\"js/xss\",\"name\":\"js/xss\",\"properties\":{\"security-severity\":\"7.8\",\"precision\":\"high\","
+			+ "\"tags\":[\"security\",\"external/cwe/cwe-079\",\"external/cwe/cwe-116\"]}},"
+			+ "{\"id\":\"js/unused\",\"defaultConfiguration\":{\"level\":\"note\"},\"properties\":{\"precision\":\"unknown\"}}]}},"
+			+ "\"results\":["
+			+ "{\"ruleId\":\"js/xss\",\"message\":{\"text\":\"XSS\"}},"
+			+ "{\"ruleId\":\"js/unused\",\"message\":{\"text\":\"Unused\"}},"
+			+ "{\"ruleId\":\"js/unused\",\"level\":\"none\",\"message\":{\"text\":\"Suppressed\"}}]}]}";
+	private static final String ESLINT_RUN = "{\"version\":\"2.1.0\",\"runs\":[{\"tool\":{\"driver\":{\"name\":\"ESLint\"}},"
+			+ "\"results\":[{\"ruleId\":\"no-unused-vars\",\"level\":\"error\",\"message\":{\"text\":\"Unused\"}}]}]}";
+	
+	@Test
+	void testDefaultProfiles() {
+		MappingProfiles profiles = new MappingProfiles();
+		profiles.start();
+		assertEquals("CodeQL", profiles.get("codeql").getName());
+		assertEquals("Semgrep", profiles.get("Semgrep OSS").getName());
+		assertEquals("gosec", profiles.get("gosec").getName());
+		assertNull(profiles.get("Fortify"));
+		assertNull(profiles.get(null));
+	}
+	
+	@Test
+	void testCodeQLProfile() throws Exception {
+		List<ConvertedVulnerability> vulns = convert(CODEQL_RUN);
+		assertEquals(2, vulns.size());
+		ConvertedVulnerability xss = vulns.get(0);
+		assertEquals(Priority.High, xss.getPriority());
+		assertEquals(3.9f, xss.getSeverity(), 0.0001f);
+		assertEquals(4.0f, xss.getConfidence());
+		assertEquals("CWE-79", xss.getSubCategory());
+		assertEquals("Js / xss: CWE-79", xss.getCategoryAndSubCategory());
+		// No mapped values for this rule, so regular conversion logic applies
+		ConvertedVulnerability unused = vulns.get(1);
+		assertEquals(Priority.Low, unused.getPriority());
+		assertEquals(2.5f, unused.getSeverity());
+		assertEquals(2.5f, unused.getConfidence());
+		assertNull(unused.getSubCategory());
+	}
+	
+	@Test
+	void testESLintProfile() throws Exception {
+		List<ConvertedVulnerability> vulns = convert(ESLINT_RUN);
+		assertEquals(1, vulns.size());
+		assertEquals(Priority.Medium, vulns.get(0).getPriority());
+		assertEquals("Code Quality", vulns.get(0).getKingdom());
+	}
+	
+	@Test
+	void testInvalidProfiles() throws Exception {
+		assertThrows(IllegalArgumentException.class, ()->compile("{\"name\":\"x\",\"toolNamePattern\":\"x\",\"fields\":{\"unknown\":{\"value\":\"x\"}}}"));
+		assertThrows(IllegalArgumentException.class, ()->compile("{\"name\":\"x\",\"toolNamePattern\":\"x\",\"fields\":{\"priority\":{\"value\":\"x\"}}}"));
+		assertThrows(IllegalArgumentException.class, ()->compile("{\"name\":\"x\",\"toolNamePattern\":\"x\",\"fields\":{\"severity\":{\"property\":\"p\",\"values\":{\"a\":\"b\"}}}}"));
+		assertThrows(IllegalArgumentException.class, ()->compile("{\"name\":\"x\",\"toolNamePattern\":\"x\",\"fields\":{\"severity\":{}}}"));
+		assertNotNull(compile("{\"name\":\"x\",\"toolNamePattern\":\"x\",\"fields\":{\"priority\":{\"value\":\"critical\"}}}"));
+	}
+	
+	private static MappingProfile compile(String definition) throws IOException {
+		return new MappingProfile(new ObjectMapper().readValue(definition, MappingProfile.Definition.class));
+	}
+	
+	static List<ConvertedVulnerability> convert(String sarif) throws Exception {
+		VulnerabilitiesProducer producer = new VulnerabilitiesProducer(null);
+		List<ConvertedVulnerability> result = new ArrayList<>();
+		new SarifScanDataStreamingJsonParser()
+			.handler("/runs/*", jp->{
+				try ( RunDataStore store = new RunDataStore(()->DBMaker.memoryDB().make()) ) {
+					RunData.parseRunData(store, jp, (runData, r)->{
+						ConvertedVulnerability vuln = producer.convert(runData, r);
+						if ( vuln!=null ) { result.add(vuln); }
+					});
+				}
+			})
+			.parseInput(TestScanData.fromString(sarif));
+		return result;
+	}
+}
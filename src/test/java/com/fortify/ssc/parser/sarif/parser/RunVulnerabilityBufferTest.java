@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.junit.jupiter.api.Test;
+
+public class RunVulnerabilityBufferTest {
+	@Test
+	void testDrainUnwrapsUncheckedIOException() throws Exception {
+		IOException error = new IOException("Quota exceeded");
+		List<ConvertedVulnerability> drained = new ArrayList<>();
+		try ( RunVulnerabilityBuffer buffer = new RunVulnerabilityBuffer(null) ) {
+			ConvertedVulnerability vulnerability = new ConvertedVulnerability();
+			buffer.add(vulnerability);
+			buffer.complete(new UncheckedIOException(error));
+			assertSame(error, assertThrows(IOException.class, ()->buffer.drain(drained::add)));
+			assertEquals(1, drained.size());
+			assertSame(vulnerability, drained.get(0));
+		}
+	}
+	
+	@Test
+	void testAddAfterClose() {
+		RunVulnerabilityBuffer buffer = new RunVulnerabilityBuffer(null);
+		buffer.close();
+		assertThrows(CancellationException.class, ()->buffer.add(new ConvertedVulnerability()));
+	}
+}
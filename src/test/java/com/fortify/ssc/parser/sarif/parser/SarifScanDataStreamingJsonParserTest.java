@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.fortify.plugin.api.ScanData;
+import com.fortify.util.io.Region;
+
+public class SarifScanDataStreamingJsonParserTest {
+	@Test
+	void testReadRegionFromCompressedInputReleasesThreads() throws Exception {
+		// Much larger than the number of chunks queued by the read-ahead thread
+		StringBuilder json = new StringBuilder("{\"runs\":[");
+		for ( int i = 0 ; i < 200000 ; i++ ) {
+			json.append(i==0 ? "" : ",").append("{\"results\":[{\"ruleId\":\"").append(i).append("\"}]}");
+		}
+		byte[] data = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+		ScanData scanData = TestScanData.fromGzippedBytes(data);
+		for ( int i = 0 ; i < 3 ; i++ ) {
+			assertArrayEquals(Arrays.copyOfRange(data, 9, 40), SarifScanDataStreamingJsonParser.readRegion(scanData, new Region(9, 40)));
+		}
+		assertEquals(0, waitForGzipThreads().size(), "Gzip threads still running: "+waitForGzipThreads());
+	}
+	
+	private static List<String> waitForGzipThreads() throws InterruptedException {
+		List<String> threads = null;
+		for ( int i = 0 ; i < 100 ; i++ ) {
+			threads = Thread.getAllStackTraces().keySet().stream()
+					.filter(Thread::isAlive).map(Thread::getName)
+					.filter(name->name.startsWith("gzip-")).collect(Collectors.toList());
+			if ( threads.isEmpty() ) { break; }
+			Thread.sleep(50);
+		}
+		return threads;
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mapdb.DB;
+import org.mapdb.Serializer;
+
+import com.fortify.ssc.parser.sarif.parser.TempStorageManager.Session;
+
+public class TempStorageManagerTest {
+	@TempDir Path tempDir;
+	private final TempStorageManager manager = new TempStorageManager();
+	
+	@AfterEach
+	void tearDown() {
+		manager.stop();
+	}
+	
+	@Test
+	void testReleasedDBIsClearedAndReused() throws Exception {
+		start(TempStorageManager.TEMP_STORAGE_FILE, 0);
+		try ( Session session = manager.openSession() ) {
+			DB db = session.get();
+			List<String> list = db.indexTreeList("list", Serializer.STRING).createOrOpen();
+			list.add("value");
+			session.release(db);
+			
+			DB reused = session.get();
+			assertSame(db, reused);
+			assertFalse(reused.isClosed());
+			assertTrue(reused.indexTreeList("list", Serializer.STRING).createOrOpen().isEmpty());
+			// Databases are not shared while in use
+			assertNotSame(reused, session.get());
+		}
+	}
+	
+	@Test
+	void testQuotaExceeded() throws Exception {
+		start(TempStorageManager.TEMP_STORAGE_FILE, 1);
+		try ( Session session = manager.openSession() ) {
+			DB db = session.get();
+			db.indexTreeList("list", Serializer.STRING).createOrOpen().add("value");
+			// The actual check is only performed once every 1024 invocations
+			for ( int i = 1 ; i < 1024 ; i++ ) {
+				session.checkQuota();
+			}
+			UncheckedIOException e = assertThrows(UncheckedIOException.class, session::checkQuota);
+			assertTrue(e.getCause().getMessage().contains(TempStorageManager.PROPERTY_MAX_TEMP_STORAGE_BYTES));
+		}
+	}
+	
+	@Test
+	void testNoQuota() throws Exception {
+		start(TempStorageManager.TEMP_STORAGE_FILE, 0);
+		try ( Session session = manager.openSession() ) {
+			session.get().indexTreeList("list", Serializer.STRING).createOrOpen().add("value");
+			for ( int i = 0 ; i < 2048 ; i++ ) {
+				session.checkQuota();
+			}
+		}
+	}
+	
+	@Test
+	void testStopClosesDBsAndRemovesDirectory() throws Exception {
+		start(TempStorageManager.TEMP_STORAGE_FILE, 0);
+		Session session = manager.openSession();
+		DB pooled = session.get();
+		DB leased = session.get();
+		session.release(pooled);
+		assertEquals(1, listTempDir().size());
+		
+		manager.stop();
+		assertTrue(pooled.isClosed());
+		assertTrue(leased.isClosed());
+		assertTrue(listTempDir().isEmpty());
+		// Databases released after stop are not pooled
+		session.close();
+	}
+	
+	@Test
+	void testMemoryStorage() throws Exception {
+		start(TempStorageManager.TEMP_STORAGE_MEMORY, 0);
+		try ( Session session = manager.openSession() ) {
+			DB db = session.get();
+			db.indexTreeList("list", Serializer.STRING).createOrOpen().add("value");
+			session.release(db);
+			assertSame(db, session.get());
+		}
+		assertTrue(listTempDir().isEmpty());
+	}
+	
+	private final void start(String storage, long maxBytes) {
+		System.setProperty(TempStorageManager.PROPERTY_TEMP_DIR, tempDir.toString());
+		System.setProperty(TempStorageManager.PROPERTY_TEMP_STORAGE, storage);
+		System.setProperty(TempStorageManager.PROPERTY_MAX_TEMP_STORAGE_BYTES, String.valueOf(maxBytes));
+		try {
+			manager.start();
+		} finally {
+			System.clearProperty(TempStorageManager.PROPERTY_TEMP_DIR);
+			System.clearProperty(TempStorageManager.PROPERTY_TEMP_STORAGE);
+			System.clearProperty(TempStorageManager.PROPERTY_MAX_TEMP_STORAGE_BYTES);
+		}
+	}
+	
+	private final List<Path> listTempDir() throws IOException {
+		try ( Stream<Path> paths = Files.list(tempDir) ) {
+			return paths.collect(Collectors.toList());
+		}
+	}
+}
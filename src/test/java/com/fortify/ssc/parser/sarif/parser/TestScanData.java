@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+import com.fortify.plugin.api.ScanData;
+import com.fortify.plugin.api.ScanEntry;
+
+/**
+ * Factory methods for creating {@link ScanData} instances in tests, 
+ * based on in-memory contents or a class path resource. Each call to
+ * one of the <code>getInputStream</code> methods returns a new stream
+ * positioned at the start of the contents.
+ * 
+ * @author Ruud Senden
+ */
+public final class TestScanData {
+	private TestScanData() {}
+	
+	/**
+	 * Create a {@link ScanData} instance for the given SARIF contents
+	 * @param sarif
+	 * @return
+	 */
+	public static ScanData fromString(String sarif) {
+		return fromBytes(sarif.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Create a {@link ScanData} instance for the given (possibly compressed) contents
+	 * @param contents
+	 * @return
+	 */
+	public static ScanData fromBytes(byte[] contents) {
+		return create(()->new ByteArrayInputStream(contents));
+	}
+	
+	/**
+	 * Create a {@link ScanData} instance for the gzip-compressed form of the given contents
+	 * @param contents
+	 * @return
+	 * @throws IOException
+	 */
+	public static ScanData fromGzippedBytes(byte[] contents) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try ( GZIPOutputStream gzip = new GZIPOutputStream(out) ) {
+			gzip.write(contents);
+		}
+		return fromBytes(out.toByteArray());
+	}
+	
+	/**
+	 * Create a {@link ScanData} instance for the given class path resource
+	 * @param resourceName
+	 * @return
+	 */
+	public static ScanData fromResource(String resourceName) {
+		return create(()->ClassLoader.getSystemResourceAsStream(resourceName));
+	}
+	
+	private static ScanData create(InputStreamSupplier supplier) {
+		return new ScanData() {
+			@Override
+			public String getSessionId() {
+				return "test";
+			}
+			
+			@Override
+			public List<ScanEntry> getScanEntries() {
+				return null;
+			}
+			
+			@Override
+			public InputStream getInputStream(Predicate<String> matcher) throws IOException {
+				return supplier.get();
+			}
+			
+			@Override
+			public InputStream getInputStream(ScanEntry scanEntry) throws IOException {
+				return supplier.get();
+			}
+		};
+	}
+	
+	@FunctionalInterface
+	private interface InputStreamSupplier {
+		InputStream get() throws IOException;
+	}
+}
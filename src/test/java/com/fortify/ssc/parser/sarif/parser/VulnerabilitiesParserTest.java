@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.ssc.parser.sarif.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.fortify.plugin.api.ScanBuilder;
+import com.fortify.plugin.api.ScanData;
+import com.fortify.plugin.api.StaticVulnerabilityBuilder;
+import com.fortify.plugin.api.VulnerabilityHandler;
+import com.fortify.ssc.parser.sarif.parser.ScanIndex.RunIndex;
+
+public class VulnerabilitiesParserTest {
+	private static final int BATCH_SIZE = 3;
+	
+	@Test
+	void testConcurrentParsingMatchesSequentialOrder() throws Exception {
+		ScanData scanData = TestScanData.fromBytes(createInput(null));
+		List<String> expected = parse(scanData, 1, 1);
+		assertEquals(4*50, expected.stream().filter(s->s.startsWith("start")).count());
+		for ( int[] threads : new int[][] {{4,4}, {4,1}, {1,4}, {2,3}} ) {
+			assertEquals(expected, parse(scanData, threads[0], threads[1]), "Threads: "+Arrays.toString(threads));
+			assertNoWorkerThreads();
+		}
+	}
+	
+	@Test
+	void testConcurrentParsingFailure() throws Exception {
+		ScanData scanData = TestScanData.fromBytes(createInput("\"level\":\"invalid\""));
+		IOException expected = assertThrows(IOException.class, ()->parse(scanData, 1, 1));
+		for ( int[] threads : new int[][] {{4,4}, {4,1}, {1,4}} ) {
+			IOException actual = assertThrows(IOException.class, ()->parse(scanData, threads[0], threads[1]));
+			assertEquals(expected.getClass(), actual.getClass());
+			assertEquals(expected.getMessage(), actual.getMessage());
+			assertNoWorkerThreads();
+		}
+	}
+	
+	@Test
+	void testCompressedInput() throws Exception {
+		byte[] input = createInput(null);
+		List<String> expected = parse(TestScanData.fromBytes(input), 1, 1);
+		ScanData scanData = TestScanData.fromGzippedBytes(input);
+		// Only property presence and counts are cached for compressed input
+		ScanIndex scanIndex = parseScan(scanData, new ScanIndexCache()).take("test");
+		assertFalse(scanIndex.isRegionsAvailable());
+		assertEquals(4, scanIndex.getRuns().size());
+		for ( RunIndex runIndex : scanIndex.getRuns() ) {
+			assertNull(runIndex.getRunRegion());
+			assertNull(runIndex.getToolRegion());
+			assertEquals(Collections.singleton("tool"), runIndex.getAuxiliaryPropertyNames());
+			assertEquals(1, runIndex.getRuleCount());
+			assertEquals(50, runIndex.getResultCount());
+		}
+		for ( int[] threads : new int[][] {{1,1}, {4,4}} ) {
+			assertEquals(expected, parse(scanData, threads[0], threads[1]), "Threads: "+Arrays.toString(threads));
+			assertNoWorkerThreads();
+		}
+	}
+	
+	private static ScanIndexCache parseScan(ScanData scanData, ScanIndexCache scanIndexCache) throws Exception {
+		ScanBuilder scanBuilder = (ScanBuilder)Proxy.newProxyInstance(VulnerabilitiesParserTest.class.getClassLoader(), 
+				new Class[] { ScanBuilder.class }, (proxy, method, args)->null);
+		new ScanParser(scanData, scanBuilder, scanIndexCache).parse();
+		return scanIndexCache;
+	}
+	
+	private static List<String> parse(ScanData scanData, int runThreads, int conversionThreads) throws Exception {
+		ScanIndexCache scanIndexCache = parseScan(scanData, new ScanIndexCache());
+		List<String> output = new ArrayList<>();
+		VulnerabilityHandler vulnerabilityHandler = instanceId->{
+			output.add("start "+instanceId);
+			return (StaticVulnerabilityBuilder)Proxy.newProxyInstance(VulnerabilitiesParserTest.class.getClassLoader(), 
+				new Class[] { StaticVulnerabilityBuilder.class }, (proxy, method, args)->{
+					output.add(method.getName()+" "+(args==null ? "" : Arrays.deepToString(args)));
+					return null;
+				});
+		};
+		new VulnerabilitiesParser(scanData, vulnerabilityHandler, scanIndexCache).parse(runThreads, conversionThreads, BATCH_SIZE);
+		return output;
+	}
+	
+	private static void assertNoWorkerThreads() throws InterruptedException {
+		List<String> threads = null;
+		// Terminated pool threads may still be reported as alive for a brief moment
+		for ( int i = 0 ; i < 20 ; i++ ) {
+			threads = Thread.getAllStackTraces().keySet().stream()
+					.filter(Thread::isAlive).map(Thread::getName)
+					.filter(name->name.startsWith("sarif-run-") || name.startsWith("sarif-convert-")).collect(Collectors.toList());
+			if ( threads.isEmpty() ) { return; }
+			Thread.sleep(50);
+		}
+		assertTrue(threads.isEmpty(), "Worker threads still running: "+threads);
+	}
+	
+	/**
+	 * Create a SARIF document with multiple runs; in some runs, results appear before
+	 * the tool property. If the given failure property is not null, this property is 
+	 * added to a result in the third run.
+	 */
+	private static byte[] createInput(String failureProperty) {
+		StringBuilder sb = new StringBuilder("{\"version\":\"2.1.0\",\"runs\":[");
+		for ( int run = 0 ; run < 4 ; run++ ) {
+			String tool = "\"tool\":{\"driver\":{\"name\":\"Tool"+run+"\",\"rules\":[{\"id\":\"rule\",\"messageStrings\":{\"m\":{\"text\":\"Message {0}\"}}}]}}";
+			sb.append(run==0 ? "{" : ",{");
+			if ( run%2==0 ) { sb.append(tool).append(','); }
+			sb.append("\"results\":[");
+			for ( int i = 0 ; i < 50 ; i++ ) {
+				sb.append(i==0 ? "{" : ",{");
+				if ( run==2 && i==40 && failureProperty!=null ) { sb.append(failureProperty).append(','); }
+				sb.append("\"ruleId\":\"rule\",\"level\":\"").append(i%3==0 ? "error" : "warning").append("\",")
+					.append("\"message\":{\"id\":\"m\",\"arguments\":[\"").append(run).append('-').append(i).append("\"]},")
+					.append("\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"src/File").append(i%7).append(".java\"}}}]}");
+			}
+			sb.append(']');
+			if ( run%2==1 ) { sb.append(',').append(tool); }
+			sb.append('}');
+		}
+		return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.collection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class OffHeapStringIntMapTest {
+	@Test
+	void testPutAndGet() {
+		OffHeapStringIntMap map = new OffHeapStringIntMap();
+		map.put("rule1", 1);
+		map.put("rule2", 2);
+		map.put("rule1", 3);
+		assertEquals(2, map.size());
+		assertEquals(3, map.get("rule1", -1));
+		assertEquals(2, map.get("rule2", -1));
+		assertEquals(-1, map.get("rule", -1));
+		assertEquals(-1, map.get("rule12", -1));
+		assertEquals(-1, map.get(null, -1));
+	}
+	
+	@Test
+	void testNonAsciiKeys() {
+		String[] keys = {"", "\u00e9t\u00e9", "\u20ac", "\ud83d\ude00", "a\ud83dz", "\ude00"};
+		OffHeapStringIntMap map = new OffHeapStringIntMap();
+		for ( int i = 0 ; i < keys.length ; i++ ) {
+			map.put(keys[i], i);
+		}
+		for ( int i = 0 ; i < keys.length ; i++ ) {
+			assertEquals(i, map.get(keys[i], -1));
+		}
+		assertEquals(-1, map.get("\u00e9t", -1));
+	}
+	
+	@Test
+	void testResize() {
+		OffHeapStringIntMap map = new OffHeapStringIntMap();
+		for ( int i = 0 ; i < 100000 ; i++ ) {
+			map.put("key-"+i, i);
+		}
+		assertEquals(100000, map.size());
+		for ( int i = 0 ; i < 100000 ; i++ ) {
+			assertEquals(i, map.get("key-"+i, -1));
+		}
+		assertEquals(-1, map.get("key-100000", -1));
+	}
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.compress;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.jupiter.api.Test;
+
+public class ParallelGzipInputStreamTest {
+	private static final byte[] DATA = createData(1024*1024);
+	
+	@Test
+	void testBgzfMembers() throws IOException {
+		assertDecompressed(createBgzf(DATA, 60000));
+	}
+	
+	@Test
+	void testSingleMember() throws IOException {
+		assertDecompressed(gzip(DATA));
+	}
+	
+	@Test
+	void testConcatenatedMembers() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(gzip(Arrays.copyOfRange(DATA, 0, 1000)));
+		out.write(gzip(Arrays.copyOfRange(DATA, 1000, DATA.length)));
+		assertDecompressed(out.toByteArray());
+	}
+	
+	@Test
+	void testUncompressed() throws IOException {
+		assertDecompressed(DATA);
+	}
+	
+	@Test
+	void testCorruptBgzfBlocks() throws IOException {
+		byte[] bgzf = createBgzf(DATA, 60000);
+		int firstBlockSize = (bgzf[16]&0xff | (bgzf[17]&0xff)<<8)+1;
+		// Uncompressed size too large or negative
+		for ( int isize : new int[] {Integer.MAX_VALUE, 65537, -1} ) {
+			byte[] input = bgzf.clone();
+			setInt(input, firstBlockSize-4, isize);
+			assertCorrupt(input);
+		}
+		// Block size smaller than header plus trailer
+		for ( int bsize : new int[] {0, 10, 18+8-2} ) {
+			byte[] input = bgzf.clone();
+			input[16] = (byte)(bsize & 0xff);
+			input[17] = (byte)((bsize >> 8) & 0xff);
+			assertCorrupt(input);
+		}
+	}
+	
+	private void assertCorrupt(byte[] input) throws IOException {
+		try ( InputStream in = CompressionHelper.decompress(new ByteArrayInputStream(input)) ) {
+			ZipException e = assertThrows(ZipException.class, ()->{ while ( in.read(new byte[8192])!=-1 ); });
+			assertEquals("Corrupt GZIP block", e.getMessage());
+		}
+	}
+	
+	private void assertDecompressed(byte[] input) throws IOException {
+		try ( InputStream in = CompressionHelper.decompress(new ByteArrayInputStream(input)) ) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ( (read = in.read(buffer))!=-1 ) {
+				out.write(buffer, 0, read);
+			}
+			assertArrayEquals(DATA, out.toByteArray());
+		}
+	}
+	
+	private static byte[] createData(int length) {
+		Random random = new Random(1);
+		byte[] result = new byte[length];
+		for ( int i = 0 ; i < length ; i++ ) {
+			result[i] = (byte)("{}[]\",:abcdefgh 0123456789".charAt(random.nextInt(26)));
+		}
+		return result;
+	}
+	
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try ( GZIPOutputStream gzip = new GZIPOutputStream(out) ) {
+			gzip.write(data);
+		}
+		return out.toByteArray();
+	}
+	
+	// Produce BGZF-style output; every member specifies its total size in a 'BC' extra field
+	private static byte[] createBgzf(byte[] data, int blockSize) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for ( int offset = 0 ; offset < data.length ; offset += blockSize ) {
+			int length = Math.min(blockSize, data.length-offset);
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			deflater.setInput(data, offset, length);
+			deflater.finish();
+			byte[] compressed = new byte[length+1024];
+			int compressedLength = deflater.deflate(compressed);
+			deflater.end();
+			CRC32 crc = new CRC32();
+			crc.update(data, offset, length);
+			int totalSize = 18+compressedLength+8;
+			out.write(new byte[] {0x1f, (byte)0x8b, 8, 4, 0, 0, 0, 0, 0, (byte)0xff, 6, 0, 'B', 'C', 2, 0}, 0, 16);
+			writeShort(out, totalSize-1);
+			out.write(compressed, 0, compressedLength);
+			writeInt(out, (int)crc.getValue());
+			writeInt(out, length);
+		}
+		return out.toByteArray();
+	}
+	
+	private static void setInt(byte[] data, int offset, int value) {
+		for ( int i = 0 ; i < 4 ; i++ ) {
+			data[offset+i] = (byte)((value >> (8*i)) & 0xff);
+		}
+	}
+	
+	private static void writeShort(ByteArrayOutputStream out, int value) {
+		out.write(value & 0xff);
+		out.write((value >> 8) & 0xff);
+	}
+	
+	private static void writeInt(ByteArrayOutputStream out, int value) {
+		writeShort(out, value & 0xffff);
+		writeShort(out, (value >> 16) & 0xffff);
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.json.skip;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class SkippingJsonInputStreamTest {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final Map<String, Set<String>> SKIPPED = new HashMap<>();
+	static {
+		SKIPPED.put("results", new HashSet<>(Arrays.asList("codeFlows", "relatedLocations")));
+		SKIPPED.put("artifacts", Collections.singleton("contents"));
+	}
+	
+	@Test
+	void testSkip() throws IOException {
+		assertFiltered(
+			"{\"results\":[{\"codeFlows\":[{\"a\":\"]}\\\"[{\"}],\"message\":{\"text\":\"x\"}},{\"relatedLocations\" : {\"b\":[1,2]}, \"codeFlows\":5}],"
+			+ "\"artifacts\":[{\"contents\":{\"text\":\"y\"},\"location\":{\"uri\":\"a\"}}],"
+			+ "\"properties\":{\"codeFlows\":[1],\"results\":[{\"contents\":[1]}]},\"code\\u0046lows\":[1]}",
+			"{\"results\":[{\"codeFlows\":[],\"message\":{\"text\":\"x\"}},{\"relatedLocations\":{},\"codeFlows\":5}],"
+			+ "\"artifacts\":[{\"contents\":{},\"location\":{\"uri\":\"a\"}}],"
+			+ "\"properties\":{\"codeFlows\":[1],\"results\":[{\"contents\":[1]}]},\"codeFlows\":[1]}");
+	}
+	
+	@Test
+	void testSkipSampleFile() throws IOException {
+		String file = "2.1.0/spec-comprehensive.sarif";
+		JsonNode expected;
+		try ( InputStream is = ClassLoader.getSystemResourceAsStream(file) ) {
+			expected = MAPPER.readTree(is);
+		}
+		for ( JsonNode run : expected.path("runs") ) {
+			for ( JsonNode result : run.path("results") ) {
+				SKIPPED.get("results").forEach(name->clear((ObjectNode)result, name));
+			}
+			for ( JsonNode artifact : run.path("artifacts") ) {
+				clear((ObjectNode)artifact, "contents");
+			}
+		}
+		try ( InputStream is = new SkippingJsonInputStream(new SingleByteInputStream(ClassLoader.getSystemResourceAsStream(file)), SKIPPED) ) {
+			assertEquals(expected, MAPPER.readTree(is));
+		}
+	}
+	
+	private void clear(ObjectNode node, String name) {
+		JsonNode value = node.get(name);
+		if ( value!=null && value.isContainerNode() ) {
+			node.set(name, value.isArray() ? MAPPER.createArrayNode() : MAPPER.createObjectNode());
+		}
+	}
+	
+	private void assertFiltered(String input, String expected) throws IOException {
+		try ( InputStream is = new SkippingJsonInputStream(new SingleByteInputStream(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), SKIPPED) ) {
+			assertEquals(MAPPER.readTree(expected), MAPPER.readTree(is));
+		}
+	}
+	
+	/**
+	 * Return at most a single byte on every read, to test buffer boundary handling
+	 */
+	private static final class SingleByteInputStream extends FilterInputStream {
+		SingleByteInputStream(InputStream in) { super(in); }
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, 1));
+		}
+	}
+}
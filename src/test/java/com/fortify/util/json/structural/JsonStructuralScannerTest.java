@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * (c) Copyright 2020 Micro Focus or one of its affiliates
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a 
+ * copy of this software and associated documentation files (the 
+ * "Software"), to deal in the Software without restriction, including without 
+ * limitation the rights to use, copy, modify, merge, publish, distribute, 
+ * sublicense, and/or sell copies of the Software, and to permit persons to 
+ * whom the Software is furnished to do so, subject to the following 
+ * conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included 
+ * in all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY 
+ * KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE 
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR 
+ * PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE 
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, 
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+ * CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN 
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS 
+ * IN THE SOFTWARE.
+ ******************************************************************************/
+package com.fortify.util.json.structural;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+public class JsonStructuralScannerTest {
+	private static final JsonFactory FACTORY = new JsonFactory();
+	private static final Set<String> PATHS = new HashSet<>(Arrays.asList(
+			"/version", "/runs/*", "/runs/*/tool/driver/rules", "/runs/*/artifacts", "/runs/*/results", "/runs/*/invocations"));
+	
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"EightBall.fpr.sarif",
+			"WebGoat5.0.xml.sarif",
+			"spec-minimal.sarif", 
+			"spec-comprehensive.sarif",
+			"github.com_microsoft_sarif-sdk_blob_master_src_Samples_Sarif.WorkItems.Sample_SampleTestFiles_Current.sarif"
+	})
+	void testScanSampleFile(String file) throws IOException {
+		try ( InputStream is = ClassLoader.getSystemResourceAsStream("2.1.0/"+file) ) {
+			assertScan(readAll(is));
+		}
+	}
+	
+	@Test
+	void testScanEscapes() throws IOException {
+		Random random = new Random(1);
+		String[] fragments = {"\\\\", "\\\"", "\\\\\\\"", "]", "}", "[{", ",", ":", "a", "\u00e9"};
+		StringBuilder sb = new StringBuilder("{\"version\" : \"2.1.0\", \"runs\":[");
+		for ( int run = 0 ; run < 20 ; run++ ) {
+			sb.append(run==0?"":",").append("{\"results\": [");
+			for ( int result = 0 ; result < random.nextInt(50) ; result++ ) {
+				sb.append(result==0?"":" , ").append("{\"message\":\"");
+				for ( int i = random.nextInt(100) ; i > 0 ; i-- ) {
+					sb.append(fragments[random.nextInt(fragments.length)]);
+				}
+				sb.append("\", \"a\\\"b\":[1,[2],{}]}");
+			}
+			sb.append("], \"invocations\": [ ], \"artifacts\":[ 1 ], \"tool\":{\"driver\":{\"rules\":[]}}}");
+		}
+		sb.append("]}");
+		assertScan(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	void testScanUnbalanced() {
+		assertThrows(IOException.class, () -> scan("{\"runs\":[{]}".getBytes(StandardCharsets.UTF_8)));
+		assertThrows(IOException.class, () -> scan("{\"runs\":[{}]".getBytes(StandardCharsets.UTF_8)));
+	}
+	
+	private void assertScan(byte[] input) throws IOException {
+		assertEquals(getExpected(input), scan(input));
+	}
+	
+	private List<String> scan(byte[] input) throws IOException {
+		List<String> result = new ArrayList<>();
+		new JsonStructuralScanner(PATHS).scan(new ChunkedInputStream(new ByteArrayInputStream(input)), (path, start, end, entries) -> 
+			result.add(path+" "+new String(input, (int)start, (int)(end-start), StandardCharsets.UTF_8).trim()+" "+entries));
+		return result;
+	}
+	
+	private List<String> getExpected(byte[] input) throws IOException {
+		List<String> result = new ArrayList<>();
+		try ( JsonParser jp = FACTORY.createParser(input) ) {
+			jp.nextToken();
+			collectExpected(jp, input, "", result);
+		}
+		return result;
+	}
+	
+	private void collectExpected(JsonParser jp, byte[] input, String path, List<String> result) throws IOException {
+		int start = (int)jp.getTokenLocation().getByteOffset();
+		int entries = 0;
+		if ( jp.currentToken()==JsonToken.START_OBJECT ) {
+			while ( jp.nextToken()==JsonToken.FIELD_NAME ) {
+				String name = jp.getCurrentName();
+				jp.nextToken();
+				collectExpected(jp, input, path+"/"+name, result);
+			}
+		} else if ( jp.currentToken()==JsonToken.START_ARRAY ) {
+			while ( jp.nextToken()!=JsonToken.END_ARRAY ) {
+				entries++;
+				collectExpected(jp, input, path+"/*", result);
+			}
+		}
+		if ( PATHS.contains(path) ) {
+			int end = jp.currentToken().isScalarValue() 
+					? start+jp.getText().length()+(jp.currentToken()==JsonToken.VALUE_STRING?2:0)
+					: (int)jp.getCurrentLocation().getByteOffset();
+			String value = new String(input, start, end-start, StandardCharsets.UTF_8);
+			result.add(path+" "+value+" "+(jp.currentToken()==JsonToken.END_ARRAY ? entries : 0));
+		}
+	}
+	
+	private byte[] readAll(InputStream is) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		for ( int read = is.read(buffer) ; read != -1 ; read = is.read(buffer) ) {
+			os.write(buffer, 0, read);
+		}
+		return os.toByteArray();
+	}
+	
+	/**
+	 * Return a varying number of bytes on every read, to test buffer boundary handling
+	 */
+	private static final class ChunkedInputStream extends FilterInputStream {
+		private final Random random = new Random(0);
+		ChunkedInputStream(InputStream in) { super(in); }
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, 1+random.nextInt(100)));
+		}
+	}
+}